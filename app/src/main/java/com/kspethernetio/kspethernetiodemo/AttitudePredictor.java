@@ -0,0 +1,248 @@
+package com.kspethernetio.kspethernetiodemo;
+
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets;
+
+/**
+ * Attitude predictor for the navball.
+ * Keeps the last VesselData attitudes and prograde, maneuver and target vectors with their
+ * timestamps and interpolates or extrapolates them to any point in time, so the navball can be
+ * drawn on every display frame while VesselData arrives at a much lower rate.
+ *
+ * Samples are timestamped on arrival, so the attitude at display time is not known yet. It is
+ * drawn one mean sample interval behind: regular samples are interpolated, only a late sample
+ * is extrapolated from the newest two.
+ *
+ * The attitude is interpolated as quaternion and the vectors as unit vectors on the sphere
+ * (slerp). The UInt16 angles wrap around at 360 degrees, interpolating on the sphere always takes
+ * the shortest way instead of turning backwards through 180 degrees.
+ *
+ * Thread safe, add() and apply() may be called on different threads.
+ */
+public class AttitudePredictor
+{
+    private static final int SAMPLES = 4;
+    private static final double MAX_EXTRAPOLATION = 1.0; //Sample intervals to extrapolate beyond the newest sample
+
+    //Ring buffer of samples
+    private long[] time = new long[SAMPLES];
+    private double[][] attitude = new double[SAMPLES][4]; //Quaternion x, y, z, w
+    private double[][] vectors = new double[SAMPLES][9]; //Unit vectors of prograde, maneuver and target
+    private int newest = 0;
+    private int count = 0;
+
+    //Prediction, reused for every frame
+    private double[] q = new double[4];
+    private double[] v = new double[9];
+    private double roll, pitch, yaw;
+    private double[] vectorPitch = new double[3];
+    private double[] vectorHeading = new double[3];
+
+    /**
+     * Add sample.
+     *
+     * @param t System.nanoTime() of the sample
+     * @param data VesselData
+     */
+    public synchronized void add(long t, DataPackets.VesselData data)
+    {
+        int i = (count == 0) ? 0 : (newest+1)%SAMPLES;
+        time[i] = t;
+        toQuaternion(angle(data.Roll), angle(data.Pitch), angle(data.Heading), attitude[i]);
+        //q and -q are the same attitude, use the one closer to the previous sample
+        if(count > 0 && dot(attitude[newest], 0, attitude[i], 0, 4) < 0)
+            for(int k=0; k<4; k++) attitude[i][k] = -attitude[i][k];
+        toVector(angle(data.ProgradePitch), angle(data.ProgradeHeading), vectors[i], 0);
+        toVector(angle(data.ManeuverPitch), angle(data.ManeuverHeading), vectors[i], 3);
+        toVector(angle(data.TargetPitch), angle(data.TargetHeading), vectors[i], 6);
+        newest = i;
+        if(count < SAMPLES) count++;
+    }
+
+    /**
+     * Remove all samples.
+     */
+    public synchronized void clear()
+    {
+        count = 0;
+    }
+
+    /**
+     * Check if there are no samples.
+     *
+     * @return True if nothing can be predicted
+     */
+    public synchronized boolean isEmpty()
+    {
+        return count == 0;
+    }
+
+    /**
+     * Set navball angles to the predicted attitude and vectors.
+     *
+     * @param navball Navball
+     * @param t System.nanoTime() of the display frame, drawn one sample interval behind
+     * @return True if the navball was changed since the last call
+     */
+    public synchronized boolean apply(Navball navball, long t)
+    {
+        if(count == 0) return false;
+        t -= interval();
+
+        //Find the samples around t, or the newest two to extrapolate
+        int b = newest;
+        int a = (count > 1) ? (b+SAMPLES-1)%SAMPLES : b;
+        if(t - time[b] < 0)
+        {
+            for(int n=1; n<count-1 && t - time[a] < 0; n++)
+            {
+                b = a;
+                a = (a+SAMPLES-1)%SAMPLES;
+            }
+        }
+        double u = (time[b] != time[a]) ? (double)(t - time[a])/(time[b] - time[a]) : 1;
+        u = Math.max(0, Math.min(u, 1+MAX_EXTRAPOLATION));
+
+        slerp(attitude[a], attitude[b], 0, 4, u, q);
+        for(int k=0; k<9; k+=3) slerp(vectors[a], vectors[b], k, 3, u, v);
+
+        //Convert back to the angles of Navball.set(): rotation matrix rpy(-roll, pitch, -yaw)
+        double x = q[0], y = q[1], z = q[2], w = q[3];
+        double m02 = 2*(x*z + y*w);
+        double r, p, h;
+        if(Math.abs(m02) < 0.999999)
+        {
+            r = Math.atan2(-2*(y*z - x*w), 1 - 2*(x*x + y*y));
+            p = -Math.asin(m02);
+            h = Math.atan2(-2*(x*y - z*w), 1 - 2*(y*y + z*z));
+        }
+        else
+        {
+            //Gimbal lock, only the sum of roll and yaw is defined
+            r = 0;
+            p = -Math.asin(Math.signum(m02));
+            h = Math.atan2(2*(x*y + z*w), 1 - 2*(x*x + z*z));
+        }
+
+        boolean changed = r != roll || p != pitch || h != yaw;
+        roll = r;
+        pitch = p;
+        yaw = h;
+        for(int k=0; k<3; k++)
+        {
+            double vp = Math.asin(Math.max(-1, Math.min(1, v[3*k+2])));
+            double vh = Math.atan2(v[3*k], v[3*k+1]);
+            changed |= vp != vectorPitch[k] || vh != vectorHeading[k];
+            vectorPitch[k] = vp;
+            vectorHeading[k] = vh;
+        }
+
+        navball.set(roll, pitch, yaw);
+        navball.setPrograde(vectorPitch[0], vectorHeading[0]);
+        navball.setManeuver(vectorPitch[1], vectorHeading[1]);
+        navball.setTarget(vectorPitch[2], vectorHeading[2]);
+        return changed;
+    }
+
+    /**
+     * Mean interval of the stored samples.
+     *
+     * @return Interval in nanoseconds, 0 if there are less than two samples
+     */
+    private long interval()
+    {
+        if(count < 2) return 0;
+        int oldest = (newest+SAMPLES-count+1)%SAMPLES;
+        return (time[newest] - time[oldest])/(count-1);
+    }
+
+    /**
+     * Convert UInt16 angle to radians.
+     *
+     * @param a Angle, 65535 is a full turn
+     * @return Angle in radians
+     */
+    private static double angle(int a)
+    {
+        return 2 * Math.PI * a / 65535.0;
+    }
+
+    /**
+     * Quaternion of the navball rotation rpy(-roll, pitch, -yaw).
+     *
+     * @param r Roll
+     * @param p Pitch
+     * @param h Yaw
+     * @param out Quaternion x, y, z, w
+     */
+    private static void toQuaternion(double r, double p, double h, double[] out)
+    {
+        double sx = Math.sin(r/2), cx = Math.cos(r/2);
+        double sy = Math.sin(-p/2), cy = Math.cos(-p/2);
+        double sz = Math.sin(h/2), cz = Math.cos(h/2);
+        double X = sx*cy, Y = cx*sy, Z = sx*sy, W = cx*cy;
+        out[0] = X*cz + Y*sz;
+        out[1] = Y*cz - X*sz;
+        out[2] = W*sz + Z*cz;
+        out[3] = W*cz - Z*sz;
+    }
+
+    /**
+     * Unit vector of a direction.
+     *
+     * @param p Pitch
+     * @param h Heading
+     * @param out Target array
+     * @param off Offset in target array
+     */
+    private static void toVector(double p, double h, double[] out, int off)
+    {
+        out[off] = Math.cos(p)*Math.sin(h);
+        out[off+1] = Math.cos(p)*Math.cos(h);
+        out[off+2] = Math.sin(p);
+    }
+
+    private static double dot(double[] a, int aOff, double[] b, int bOff, int n)
+    {
+        double d = 0;
+        for(int i=0; i<n; i++) d += a[aOff+i]*b[bOff+i];
+        return d;
+    }
+
+    /**
+     * Spherical linear interpolation of unit vectors or quaternions.
+     * Extrapolates for u greater than 1.
+     *
+     * @param a Start
+     * @param b End
+     * @param off Offset in a, b and out
+     * @param n Dimension
+     * @param u Position, 0 is a and 1 is b
+     * @param out Result
+     */
+    private static void slerp(double[] a, double[] b, int off, int n, double u, double[] out)
+    {
+        double d = Math.max(-1, Math.min(1, dot(a, off, b, off, n)));
+        double wa, wb;
+        if(d > 0.9995)
+        {
+            //Almost parallel, interpolate linear and normalize
+            wa = 1-u;
+            wb = u;
+        }
+        else
+        {
+            double theta = Math.acos(d);
+            double s = Math.sin(theta);
+            wa = Math.sin((1-u)*theta)/s;
+            wb = Math.sin(u*theta)/s;
+        }
+        double len = 0;
+        for(int i=off; i<off+n; i++)
+        {
+            out[i] = wa*a[i] + wb*b[i];
+            len += out[i]*out[i];
+        }
+        len = Math.sqrt(len);
+        if(len > 0) for(int i=off; i<off+n; i++) out[i] /= len;
+    }
+}
@@ -10,6 +10,7 @@ import android.graphics.RectF;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
 import android.util.TypedValue;
+import android.view.Choreographer;
 import android.view.View;
 import android.view.Window;
 import android.view.WindowManager;
@@ -21,7 +22,10 @@ import android.widget.ToggleButton;
 
 import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets;
 import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.KSPEthernetClient;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.PlayoutBuffer;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Semaphore;
 
 
@@ -29,7 +33,6 @@ import java.util.concurrent.Semaphore;
 //TODO Centralize all coloring in config files
 //TODO Tests on different screen sizes
 //TODO Clean compiler warnings
-//TODO Buffer incoming data packets with adaptive playout to get "smooth" data stream
 //TODO Rendering Navball is very CPU intense - Implement OpenGL rendering
 //TODO Split FlightInfo class in some smaller classes
 
@@ -43,6 +46,10 @@ public class FlightInfo extends AppCompatActivity
     Semaphore navballLock = new Semaphore(1);
     Navball navball = new Navball();
     Bitmap navballBitmap;
+    AttitudePredictor attitude = new AttitudePredictor();
+    ExecutorService navballRenderer = Executors.newSingleThreadExecutor();
+    boolean navballFrames = false; //Frame callback is posted, only accessed on the UI thread
+    boolean resumed = false; //Activity is in the foreground, only accessed on the UI thread
 
     Button buttonPower;
     Button buttonSettings;
@@ -107,6 +114,28 @@ public class FlightInfo extends AppCompatActivity
     Semaphore updateUiLock = new Semaphore(1);
     Semaphore vesselDataLock = new Semaphore(1);
     DataPackets.VesselData vesselData;
+    long vesselDataChanged = 0; //Fields changed since the last updateUi, guarded by vesselDataLock
+    boolean viewsValid = false; //Views show VesselData, only accessed on the UI thread
+    long navballChanged = 0; //Navball fields changed since the last render, only accessed on the UI thread
+    //Navball display flags of the last VesselData, only accessed on the UI thread
+    boolean navballHideVectors = true;
+    boolean navballNoManeuver = true;
+    boolean navballNoTarget = true;
+    boolean navballHideRadial = false;
+
+    //VesselData fields shown by the views
+    static final long MASK_SAS_VIEWS = DataPackets.VesselData.MASK_ActionGroups | DataPackets.VesselData.MASK_NavballSASMode |
+            DataPackets.VesselData.MASK_TargetPitch | DataPackets.VesselData.MASK_TargetHeading |
+            DataPackets.VesselData.MASK_ManeuverPitch | DataPackets.VesselData.MASK_ManeuverHeading;
+    static final long MASK_VELOCITY_VIEWS = DataPackets.VesselData.MASK_NavballSASMode | DataPackets.VesselData.MASK_VOrbit |
+            DataPackets.VesselData.MASK_Vsurf | DataPackets.VesselData.MASK_TargetV;
+    static final long MASK_MANEUVER_VIEWS = DataPackets.VesselData.MASK_MNDeltaV | DataPackets.VesselData.MASK_MNTime |
+            DataPackets.VesselData.MASK_ManeuverPitch | DataPackets.VesselData.MASK_ManeuverHeading;
+    static final long MASK_TARGET_VIEWS = DataPackets.VesselData.MASK_TargetV | DataPackets.VesselData.MASK_TargetDist |
+            DataPackets.VesselData.MASK_TargetPitch | DataPackets.VesselData.MASK_TargetHeading;
+    static final long MASK_NAVBALL = DataPackets.VesselData.MASK_Roll | DataPackets.VesselData.MASK_Pitch |
+            DataPackets.VesselData.MASK_Heading | DataPackets.VesselData.MASK_ProgradePitch |
+            DataPackets.VesselData.MASK_ProgradeHeading | MASK_MANEUVER_VIEWS | MASK_TARGET_VIEWS | MASK_VELOCITY_VIEWS;
 
 
     @Override
@@ -122,12 +151,28 @@ public class FlightInfo extends AppCompatActivity
 
         setContentView(R.layout.activity_flight_info);
 
+        navball.setRenderMode(Navball.RenderMode.Cached);
         settings = new Settings(getApplicationContext());
         Utility.initialize(getApplicationContext());
         initializeViews();
         updateViews(true);
         initializeClient();
+    }
+
+    @Override
+    protected void onResume()
+    {
+        super.onResume();
+        resumed = true;
+        startNavballFrames();
+    }
 
+    @Override
+    protected void onPause()
+    {
+        resumed = false;
+        stopNavballFrames();
+        super.onPause();
     }
 
     private void initializeClient()
@@ -135,10 +180,15 @@ public class FlightInfo extends AppCompatActivity
         if(client!=null)
         {
             client.removeEventListener(clientListener);
+            client.removeChangeListener(changeListener);
             client.destroy();
         }
         client = new KSPEthernetClient(settings.getPort(), settings.getIntervall());
+        client.setKnownHosts(settings.getKnownHosts());
+        client.setSendMode(KSPEthernetClient.SendMode.OnChange);
+        client.setPlayoutMode(PlayoutBuffer.Mode.Smooth);
         client.addEventListener(clientListener);
+        client.addChangeListener(changeListener);
         updateUi.run();
     }
     
@@ -438,6 +488,7 @@ public class FlightInfo extends AppCompatActivity
             {
                 case R.id.buttonAltitude:
                     terrainAltitude = !terrainAltitude;
+                    viewsValid = false;
                     updateUi.run();
                     break;
                 case R.id.buttonVelocity:
@@ -574,28 +625,22 @@ public class FlightInfo extends AppCompatActivity
         @Override
         public void onKSPEthernetInvalidate(KSPEthernetClient sender, DataPackets.VesselData data)
         {
-            try
-            {
-                vesselDataLock.acquire();
-                vesselData = data;
-                vesselDataLock.release();
-
-                activeActivity.runOnUiThread(updateUi);
-            }
-            catch(InterruptedException e)
-            {
-
-            }
+            //Handled by changeListener
         }
 
         @Override
         public void onKSPEthernetStateChanged(KSPEthernetClient sender, String state)
         {
+            //Remember host for a faster connect on the next start
+            if(sender.isActive() && sender.getConnectedHost() != null) settings.addKnownHost(sender.getConnectedHost());
+
             try
             {
                 vesselDataLock.acquire();
                 client.controlData.forceResync();
+                if(vesselData != null) vesselData.release();
                 vesselData=null;
+                attitude.clear();
                 vesselDataLock.release();
 
                 runOnUiThread(updateUi);
@@ -620,7 +665,9 @@ public class FlightInfo extends AppCompatActivity
                     {
                         vesselDataLock.acquire();
                         client.controlData.forceResync();
+                        if(vesselData != null) vesselData.release();
                         vesselData=null;
+                        attitude.clear();
                         vesselDataLock.release();
 
                         runOnUiThread(updateUi);
@@ -635,6 +682,39 @@ public class FlightInfo extends AppCompatActivity
                     break;
             }
         }
+
+        @Override
+        public void onKSPEthernetStale(KSPEthernetClient sender, long silence)
+        {
+            Utility.showMessage(activeActivity,"No data for "+silence+" ms, reconnecting");
+        }
+    };
+
+    private KSPEthernetClient.KSPEthernetChangeListener changeListener = new KSPEthernetClient.KSPEthernetChangeListener()
+    {
+        @Override
+        public void onKSPEthernetChanged(KSPEthernetClient sender, DataPackets.VesselData data, long changed)
+        {
+            try
+            {
+                vesselDataLock.acquire();
+                //Keep pooled data until the next packet replaced it
+                data.retain();
+                if(vesselData != null) vesselData.release();
+                vesselData = data;
+                //Timestamp on presentation, the navball is interpolated between these samples
+                attitude.add(System.nanoTime(), data);
+                //Collect changes until the UI thread picks them up
+                vesselDataChanged |= changed;
+                vesselDataLock.release();
+
+                activeActivity.runOnUiThread(updateUi);
+            }
+            catch(InterruptedException e)
+            {
+
+            }
+        }
     };
 
     Runnable updateStatus = new Runnable()
@@ -657,10 +737,14 @@ public class FlightInfo extends AppCompatActivity
                 updateStatus.run();
 
                 DataPackets.VesselData data = null;
+                long changed;
                 try
                 {
                     vesselDataLock.acquire();
                     data = vesselData;
+                    if(data != null) data.retain();
+                    changed = vesselDataChanged;
+                    vesselDataChanged = 0;
                     vesselDataLock.release();
                 }
                 catch(InterruptedException e)
@@ -672,152 +756,184 @@ public class FlightInfo extends AppCompatActivity
 
                 if(data!=null)
                 {
-                    updateViews(false);
-
-                    toggleAction1.setChecked(data.getActionGroup(0));
-                    toggleAction2.setChecked(data.getActionGroup(1));
-                    toggleAction3.setChecked(data.getActionGroup(2));
-                    toggleAction4.setChecked(data.getActionGroup(3));
-                    toggleAction5.setChecked(data.getActionGroup(4));
-
-                    toggleActionLight.setChecked(data.getLight());
-                    toggleActionBrakes.setChecked(data.getBrakes());
-                    toggleActionGears.setChecked(data.getGears());
-
-                    toggleSAS.setChecked(data.getSAS());
-                    toggleRCS.setChecked(data.getRCS());
-
-
-                    toggleSASPro.setEnabled(data.getSAS() && !(data.getNavballMode()== DataPackets.NavballMode.Target));
-                    toggleSASRet.setEnabled(data.getSAS() && !(data.getNavballMode()== DataPackets.NavballMode.Target));
-                    toggleSASNor.setEnabled(data.getSAS());
-                    toggleSASANo.setEnabled(data.getSAS());
-                    toggleSASRIn.setEnabled(data.getSAS());
-                    toggleSASROu.setEnabled(data.getSAS());
-                    toggleSASTar.setEnabled(data.getSAS() && data.isTargetSet());
-                    toggleSASAta.setEnabled(data.getSAS() && data.isTargetSet());
-                    toggleSASMan.setEnabled(data.getSAS() && data.isManeuverSet());
-                    
-                    toggleSASPro.setChecked(false);
-                    toggleSASRet.setChecked(false);
-                    toggleSASNor.setChecked(false);
-                    toggleSASANo.setChecked(false);
-                    toggleSASRIn.setChecked(false);
-                    toggleSASROu.setChecked(false);
-                    toggleSASTar.setChecked(false);
-                    toggleSASAta.setChecked(false);
-                    toggleSASMan.setChecked(false);
-                    switch(data.getSASMode())
+                    //Predict the navball on every display frame while data arrives
+                    startNavballFrames();
+
+                    //Redraw everything after the views were cleared
+                    if(!viewsValid)
                     {
-                        case Prograde:
-                            toggleSASPro.setChecked(true);
-                            break;
-                        case Retrograde:
-                            toggleSASRet.setChecked(true);
-                            break;
-                        case Normal:
-                            toggleSASNor.setChecked(true);
-                            break;
-                        case Antinormal:
-                            toggleSASANo.setChecked(true);
-                            break;
-                        case RadialIn:
-                            toggleSASRIn.setChecked(true);
-                            break;
-                        case RadialOut:
-                            toggleSASROu.setChecked(true);
-                            break;
-                        case Target:
-                            toggleSASTar.setChecked(true);
-                            break;
-                        case AntiTarget:
-                            toggleSASAta.setChecked(true);
-                            break;
-                        case Maneuver:
-                            toggleSASMan.setChecked(true);
-                            break;
-                        default:
-                            break;
+                        updateViews(false);
+                        viewsValid = true;
+                        changed = DataPackets.VesselData.MASK_ALL;
                     }
 
-                    float alt = 0;
-                    if(terrainAltitude)
+                    if((changed & DataPackets.VesselData.MASK_ActionGroups) != 0)
                     {
-                        imageAltitude.setImageDrawable(getResources().getDrawable(R.drawable.nav_altmountain));
-                        buttonAltitude.setText(DataPackets.distanceToString(data.RAlt));
+                        toggleAction1.setChecked(data.getActionGroup(0));
+                        toggleAction2.setChecked(data.getActionGroup(1));
+                        toggleAction3.setChecked(data.getActionGroup(2));
+                        toggleAction4.setChecked(data.getActionGroup(3));
+                        toggleAction5.setChecked(data.getActionGroup(4));
+
+                        toggleActionLight.setChecked(data.getLight());
+                        toggleActionBrakes.setChecked(data.getBrakes());
+                        toggleActionGears.setChecked(data.getGears());
+
+                        toggleSAS.setChecked(data.getSAS());
+                        toggleRCS.setChecked(data.getRCS());
                     }
-                    else
+
+                    if((changed & MASK_SAS_VIEWS) != 0)
                     {
-                        imageAltitude.setImageDrawable(getResources().getDrawable(R.drawable.nav_altsea));
-                        buttonAltitude.setText(DataPackets.distanceToString(data.Alt));
+                        toggleSASPro.setEnabled(data.getSAS() && !(data.getNavballMode()== DataPackets.NavballMode.Target));
+                        toggleSASRet.setEnabled(data.getSAS() && !(data.getNavballMode()== DataPackets.NavballMode.Target));
+                        toggleSASNor.setEnabled(data.getSAS());
+                        toggleSASANo.setEnabled(data.getSAS());
+                        toggleSASRIn.setEnabled(data.getSAS());
+                        toggleSASROu.setEnabled(data.getSAS());
+                        toggleSASTar.setEnabled(data.getSAS() && data.isTargetSet());
+                        toggleSASAta.setEnabled(data.getSAS() && data.isTargetSet());
+                        toggleSASMan.setEnabled(data.getSAS() && data.isManeuverSet());
+                    
+                        toggleSASPro.setChecked(false);
+                        toggleSASRet.setChecked(false);
+                        toggleSASNor.setChecked(false);
+                        toggleSASANo.setChecked(false);
+                        toggleSASRIn.setChecked(false);
+                        toggleSASROu.setChecked(false);
+                        toggleSASTar.setChecked(false);
+                        toggleSASAta.setChecked(false);
+                        toggleSASMan.setChecked(false);
+                        switch(data.getSASMode())
+                        {
+                            case Prograde:
+                                toggleSASPro.setChecked(true);
+                                break;
+                            case Retrograde:
+                                toggleSASRet.setChecked(true);
+                                break;
+                            case Normal:
+                                toggleSASNor.setChecked(true);
+                                break;
+                            case Antinormal:
+                                toggleSASANo.setChecked(true);
+                                break;
+                            case RadialIn:
+                                toggleSASRIn.setChecked(true);
+                                break;
+                            case RadialOut:
+                                toggleSASROu.setChecked(true);
+                                break;
+                            case Target:
+                                toggleSASTar.setChecked(true);
+                                break;
+                            case AntiTarget:
+                                toggleSASAta.setChecked(true);
+                                break;
+                            case Maneuver:
+                                toggleSASMan.setChecked(true);
+                                break;
+                            default:
+                                break;
+                        }
                     }
 
-
-                    switch(data.getNavballMode())
+                    if((changed & (DataPackets.VesselData.MASK_RAlt | DataPackets.VesselData.MASK_Alt)) != 0)
                     {
-                        case Orbit:
-                            buttonVelocity.setText("Orbit\n"+String.format("%.1f", data.VOrbit)+"m/s");
-                            break;
-                        case Surface:
-                            buttonVelocity.setText("Surface\n"+String.format("%.1f", data.Vsurf)+"m/s");
-                            break;
-                        case Target:
-                            buttonVelocity.setText("Target\n"+String.format("%.1f", data.TargetV)+"m/s");
-                            break;
-                        case Ignore:
-                        default:
-                            buttonVelocity.setText("Unknown");
-                            break;
+                        if(terrainAltitude)
+                        {
+                            imageAltitude.setImageDrawable(getResources().getDrawable(R.drawable.nav_altmountain));
+                            buttonAltitude.setText(DataPackets.distanceToString(data.RAlt));
+                        }
+                        else
+                        {
+                            imageAltitude.setImageDrawable(getResources().getDrawable(R.drawable.nav_altsea));
+                            buttonAltitude.setText(DataPackets.distanceToString(data.Alt));
+                        }
                     }
 
-                    if(data.isManeuverSet())
-                        buttonManeuver.setText(String.format("%.1f", data.MNDeltaV)+"m/s\nT"+DataPackets.timeToString(data.MNTime, true));
-                    else
-                        buttonManeuver.setText("No Maneuver");
-
-                    if(data.isTargetSet())
-                        buttonTarget.setText(String.format("%.1f", data.TargetV)+"m/s\n"+String.format("%.1f", data.TargetDist)+"m");
-                    else
-                        buttonTarget.setText("No Target");
-
-
-                    drawBar(imageFuelSF, data.SolidFuel / data.SolidFuelTot);
-                    drawBar(imageFuelLF, data.LiquidFuel / data.LiquidFuelTot);
-                    drawBar(imageFuelOX, data.Oxidizer / data.OxidizerTot);
-                    drawBar(imageFuelXE, data.XenonGas / data.XenonGasTot);
-                    drawBar(imageFuelMP, data.MonoProp / data.MonoPropTot);
-                    drawBar(imageFuelES, data.ECharge/ data.EChargeTot);
-
-                    //Fix flickering TAP
-                    if(data.Alt == data.AP) data.TAp=0;
-
-                    textAP.setText(DataPackets.distanceToString(data.AP));
-                    textPE.setText(DataPackets.distanceToString(data.PE));
-                    textAPT.setText("T"+DataPackets.timeToString(data.TAp, true));
-                    textPET.setText("T"+DataPackets.timeToString(data.TPe, true));
-                    textINC.setText(DataPackets.angleToString(data.inc));
-                    textECC.setText(String.format("%.4f", data.e));
-                    textPER.setText(DataPackets.timeToString(data.period, false));
+                    if((changed & MASK_VELOCITY_VIEWS) != 0)
+                    {
+                        switch(data.getNavballMode())
+                        {
+                            case Orbit:
+                                buttonVelocity.setText("Orbit\n"+String.format("%.1f", data.VOrbit)+"m/s");
+                                break;
+                            case Surface:
+                                buttonVelocity.setText("Surface\n"+String.format("%.1f", data.Vsurf)+"m/s");
+                                break;
+                            case Target:
+                                buttonVelocity.setText("Target\n"+String.format("%.1f", data.TargetV)+"m/s");
+                                break;
+                            case Ignore:
+                            default:
+                                buttonVelocity.setText("Unknown");
+                                break;
+                        }
+                    }
 
+                    if((changed & MASK_MANEUVER_VIEWS) != 0)
+                    {
+                        if(data.isManeuverSet())
+                            buttonManeuver.setText(String.format("%.1f", data.MNDeltaV)+"m/s\nT"+DataPackets.timeToString(data.MNTime, true));
+                        else
+                            buttonManeuver.setText("No Maneuver");
+                    }
 
-                    if(navballLock.tryAcquire())
+                    if((changed & MASK_TARGET_VIEWS) != 0)
                     {
-                        navball.set(2 * Math.PI * data.Roll / 65535.0,2 * Math.PI * data.Pitch / 65535.0,2 * Math.PI * data.Heading / 65535.0);
-                        navball.setPrograde(2 * Math.PI * data.ProgradePitch / 65535.0, 2 * Math.PI * data.ProgradeHeading / 65535.0);
-                        navball.setManeuver(2 * Math.PI * data.ManeuverPitch / 65535.0, 2 * Math.PI * data.ManeuverHeading / 65535.0);
-                        navball.setTarget(2 * Math.PI * data.TargetPitch / 65535.0, 2 * Math.PI * data.TargetHeading / 65535.0);
+                        if(data.isTargetSet())
+                            buttonTarget.setText(String.format("%.1f", data.TargetV)+"m/s\n"+String.format("%.1f", data.TargetDist)+"m");
+                        else
+                            buttonTarget.setText("No Target");
+                    }
 
 
-                        boolean isMoving =
+                    if((changed & (DataPackets.VesselData.MASK_SolidFuel | DataPackets.VesselData.MASK_SolidFuelTot)) != 0)
+                        drawBar(imageFuelSF, data.SolidFuel / data.SolidFuelTot);
+                    if((changed & (DataPackets.VesselData.MASK_LiquidFuel | DataPackets.VesselData.MASK_LiquidFuelTot)) != 0)
+                        drawBar(imageFuelLF, data.LiquidFuel / data.LiquidFuelTot);
+                    if((changed & (DataPackets.VesselData.MASK_Oxidizer | DataPackets.VesselData.MASK_OxidizerTot)) != 0)
+                        drawBar(imageFuelOX, data.Oxidizer / data.OxidizerTot);
+                    if((changed & (DataPackets.VesselData.MASK_XenonGas | DataPackets.VesselData.MASK_XenonGasTot)) != 0)
+                        drawBar(imageFuelXE, data.XenonGas / data.XenonGasTot);
+                    if((changed & (DataPackets.VesselData.MASK_MonoProp | DataPackets.VesselData.MASK_MonoPropTot)) != 0)
+                        drawBar(imageFuelMP, data.MonoProp / data.MonoPropTot);
+                    if((changed & (DataPackets.VesselData.MASK_ECharge | DataPackets.VesselData.MASK_EChargeTot)) != 0)
+                        drawBar(imageFuelES, data.ECharge/ data.EChargeTot);
+
+                    if((changed & DataPackets.VesselData.MASK_AP) != 0)
+                        textAP.setText(DataPackets.distanceToString(data.AP));
+                    if((changed & DataPackets.VesselData.MASK_PE) != 0)
+                        textPE.setText(DataPackets.distanceToString(data.PE));
+                    if((changed & (DataPackets.VesselData.MASK_TAp | DataPackets.VesselData.MASK_Alt | DataPackets.VesselData.MASK_AP)) != 0)
+                    {
+                        //Fix flickering TAP, the pooled VesselData itself is not modified
+                        int tap = (data.Alt == data.AP) ? 0 : data.TAp;
+                        textAPT.setText("T"+DataPackets.timeToString(tap, true));
+                    }
+                    if((changed & DataPackets.VesselData.MASK_TPe) != 0)
+                        textPET.setText("T"+DataPackets.timeToString(data.TPe, true));
+                    if((changed & DataPackets.VesselData.MASK_inc) != 0)
+                        textINC.setText(DataPackets.angleToString(data.inc));
+                    if((changed & DataPackets.VesselData.MASK_e) != 0)
+                        textECC.setText(String.format("%.4f", data.e));
+                    if((changed & DataPackets.VesselData.MASK_period) != 0)
+                        textPER.setText(DataPackets.timeToString(data.period, false));
+
+
+                    //Angles are taken from the AttitudePredictor by navballFrame, only the display
+                    //flags are kept here. Changes are kept while the navball is rendering.
+                    if((changed & MASK_NAVBALL) != 0)
+                    {
+                        navballChanged |= changed & MASK_NAVBALL;
+                        navballHideVectors = !(
                                 (data.getNavballMode() == DataPackets.NavballMode.Orbit && data.VOrbit > 0.05) ||
                                 (data.getNavballMode() == DataPackets.NavballMode.Surface && data.Vsurf > 0.05) ||
-                                (data.getNavballMode() == DataPackets.NavballMode.Target && data.Vsurf > 0.05 && data.VOrbit > 0.05);
-                        navball.hideVelocityVectors(!isMoving);
-                        navball.setManeuverDisable(!data.isManeuverSet());
-                        navball.setTargetDisable(!data.isTargetSet());
-                        navball.hideRadialNormal(data.getNavballMode() == DataPackets.NavballMode.Target);
-                        Thread t = new Thread(renderNavball);
-                        t.start();
+                                (data.getNavballMode() == DataPackets.NavballMode.Target && data.Vsurf > 0.05 && data.VOrbit > 0.05));
+                        navballNoManeuver = !data.isManeuverSet();
+                        navballNoTarget = !data.isTargetSet();
+                        navballHideRadial = data.getNavballMode() == DataPackets.NavballMode.Target;
                     }
 
 
@@ -832,8 +948,13 @@ public class FlightInfo extends AppCompatActivity
                     }
 
                 }
-                else updateViews(true);
+                else
+                {
+                    updateViews(true);
+                    viewsValid = false;
+                }
 
+                if(data != null) data.release();
                 updateUiLock.release();
             }
             catch(InterruptedException e)
@@ -842,6 +963,60 @@ public class FlightInfo extends AppCompatActivity
         }
     };
 
+    /**
+     * Start the navball frame callback if the activity is in the foreground.
+     * Must be called on the UI thread.
+     */
+    private void startNavballFrames()
+    {
+        if(!resumed || navballFrames) return;
+        navballFrames = true;
+        Choreographer.getInstance().postFrameCallback(navballFrame);
+    }
+
+    /**
+     * Stop the navball frame callback.
+     * Must be called on the UI thread.
+     */
+    private void stopNavballFrames()
+    {
+        navballFrames = false;
+        Choreographer.getInstance().removeFrameCallback(navballFrame);
+    }
+
+    /**
+     * Render the navball once per display frame.
+     * The attitude is predicted for the frame time, so the navball turns smoothly even if
+     * VesselData arrives slower than the display refresh. Nothing is rendered while neither
+     * the prediction nor the display flags change, or while the last frame is still rendering.
+     * The callback only runs while the activity is resumed and stops itself while there is
+     * no attitude to predict, updateUi starts it again with the next VesselData.
+     */
+    Choreographer.FrameCallback navballFrame = new Choreographer.FrameCallback()
+    {
+        @Override
+        public void doFrame(long frameTimeNanos)
+        {
+            if(!navballFrames) return;
+            if(navballLock.tryAcquire())
+            {
+                boolean moved = attitude.apply(navball, frameTimeNanos);
+                if(moved || navballChanged != 0)
+                {
+                    navballChanged = 0;
+                    navball.hideVelocityVectors(navballHideVectors);
+                    navball.setManeuverDisable(navballNoManeuver);
+                    navball.setTargetDisable(navballNoTarget);
+                    navball.hideRadialNormal(navballHideRadial);
+                    navballRenderer.execute(renderNavball);
+                }
+                else navballLock.release();
+            }
+            if(attitude.isEmpty() && navballChanged == 0) navballFrames = false;
+            else Choreographer.getInstance().postFrameCallback(this);
+        }
+    };
+
     Runnable renderNavball = new Runnable()
     {
         @Override
@@ -857,6 +1032,7 @@ public class FlightInfo extends AppCompatActivity
         public void run()
         {
             if(client.isActive()) imageNavball.setImageBitmap(navballBitmap);
+            else navball.discard(); //Keep the buffer on screen out of the next render
             navballLock.release();
         }
     };
@@ -882,7 +1058,10 @@ public class FlightInfo extends AppCompatActivity
     @Override
     protected void onDestroy()
     {
+        stopNavballFrames();
+        navballRenderer.shutdown();
         client.removeEventListener(clientListener);
+        client.removeChangeListener(changeListener);
         client.destroy();
         super.onDestroy();
     }
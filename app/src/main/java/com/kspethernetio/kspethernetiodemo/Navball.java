@@ -7,7 +7,9 @@ import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Paint;
 import android.graphics.Path;
+import android.graphics.PorterDuff;
 import android.graphics.Rect;
+import android.util.SparseArray;
 import android.util.TypedValue;
 
 /**
@@ -29,6 +31,34 @@ public class Navball
     private boolean hideRadialNormal = false;
     private boolean drawVectors = false;
 
+    /**
+     * Render modes.
+     * Simple creates all objects for every frame.
+     * Cached keeps two bitmaps, the decoded vector bitmaps and the sphere grid between frames
+     * and only rotates and draws the grid on each frame.
+     */
+    public enum RenderMode {Simple, Cached}
+    private RenderMode renderMode = RenderMode.Simple;
+
+    //Sphere grid in 5deg steps, row r at alpha=r*5deg, column c at beta=c*5deg
+    private static final int GRID_STEP = 5;
+    private static final int GRID_ROWS = 180/GRID_STEP+1;
+    private static final int GRID_COLS = 360/GRID_STEP+1;
+    private double[] gridX, gridY, gridZ; //Unit sphere points, created once
+    private int[] screenX, screenY; //Rotated points in px, reused every frame
+    private double[] rotZ; //Rotated z, >0 is visible
+
+    //Cached mode buffers
+    private Bitmap[] buffers = new Bitmap[2];
+    private int backBuffer = 0;
+    private Canvas canvas = null;
+    private Path path = new Path();
+    private SparseArray<Bitmap> vectorBitmaps = new SparseArray<Bitmap>();
+    private Rect vectorSource = new Rect();
+    private Rect vectorTarget = new Rect();
+    private Paint vectorPaint = new Paint();
+    private float vectorSize = 0;
+
     /**
      * Create new navball.
      * Initialize coloring.
@@ -142,15 +172,57 @@ public class Navball
         drawTarget = !b;
     }
 
+    /**
+     * Set render mode.
+     * Must not be called while rendering.
+     * @param m RenderMode
+     */
+    public void setRenderMode(RenderMode m)
+    {
+        renderMode = m;
+        if(m == RenderMode.Simple)
+        {
+            buffers[0] = buffers[1] = null;
+            canvas = null;
+            vectorBitmaps.clear();
+        }
+    }
+
+    /**
+     * Drop the bitmap of the last render() call because it was not displayed.
+     * In Cached mode the next render() draws into it again instead of the bitmap on screen.
+     * Must not be called while rendering.
+     */
+    public void discard()
+    {
+        if(renderMode == RenderMode.Cached) backBuffer ^= 1;
+    }
+
     /**
      * Render Navball bitmap.
-     * Currently very CPU intense. To be optimized.
+     * In Cached mode the returned bitmap is reused by the next but one call, so it has to be
+     * replaced on screen before rendering again.
+     * If it is not displayed, call discard().
      * @param w Wide in px
      * @param h Height in px
      * @param activeActivity Context to get ressource images
      * @return Navball bitmap
      */
     public Bitmap render(int w, int h, Activity activeActivity)
+    {
+        if(renderMode == RenderMode.Cached) return renderCached(w, h, activeActivity);
+        return renderSimple(w, h, activeActivity);
+    }
+
+    /**
+     * Render Navball into a new bitmap.
+     * Very CPU intense, every grid point and vector bitmap is created again.
+     * @param w Wide in px
+     * @param h Height in px
+     * @param activeActivity Context to get ressource images
+     * @return Navball bitmap
+     */
+    private Bitmap renderSimple(int w, int h, Activity activeActivity)
     {
         initScale(w);
 
@@ -358,6 +430,220 @@ public class Navball
         return bmp;
     }
 
+    /**
+     * Render Navball into one of two persistent bitmaps.
+     * The sphere grid is rotated once per frame, all other objects are reused.
+     * @param w Wide in px
+     * @param h Height in px
+     * @param activeActivity Context to get ressource images
+     * @return Navball bitmap
+     */
+    private Bitmap renderCached(int w, int h, Activity activeActivity)
+    {
+        initScale(w);
+        initGrid();
+
+        //Rotation Matrix for the view angle
+        Matrix3x3 view = Matrix3x3.rpy(-Math.PI/2.0, 0, -Math.PI/2.0);
+
+        //Navball rotation Matrix
+        Matrix3x3 rot = Matrix3x3.rpy(-roll, pitch, -yaw);
+        rot = view.mult(rot);
+
+        //Swap buffers, create them on size change
+        backBuffer ^= 1;
+        Bitmap bmp = buffers[backBuffer];
+        if(bmp == null || bmp.getWidth() != w || bmp.getHeight() != h)
+        {
+            bmp = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+            buffers[backBuffer] = bmp;
+            canvas = new Canvas(bmp);
+        }
+        else canvas.setBitmap(bmp);
+        canvas.drawColor(0, PorterDuff.Mode.CLEAR);
+
+        //Rotate grid
+        double m00 = rot.get(0,0), m01 = rot.get(0,1), m02 = rot.get(0,2);
+        double m10 = rot.get(1,0), m11 = rot.get(1,1), m12 = rot.get(1,2);
+        double m20 = rot.get(2,0), m21 = rot.get(2,1), m22 = rot.get(2,2);
+        for(int i=0; i<gridX.length; i++)
+        {
+            double x = gridX[i], y = gridY[i], z = gridZ[i];
+            screenX[i] = scale(m00*x + m01*y + m02*z);
+            screenY[i] = scale(m10*x + m11*y + m12*z);
+            rotZ[i] = m20*x + m21*y + m22*z;
+        }
+
+        //Draw topside and bottomside
+        for(int r=0; r<GRID_ROWS-1; r++)
+        {
+            Paint color = (r < (GRID_ROWS-1)/2) ? topSideColor : bottomSideColor;
+            for(int c=1; c<GRID_COLS; c++)
+            {
+                int a = r*GRID_COLS+c-1, b = a+GRID_COLS;
+                if(rotZ[a] > 0 && rotZ[a+1] > 0 && rotZ[b] > 0 && rotZ[b+1] > 0)
+                {
+                    path.rewind();
+                    path.moveTo(screenX[a], screenY[a]);
+                    path.lineTo(screenX[b], screenY[b]);
+                    path.lineTo(screenX[b+1], screenY[b+1]);
+                    path.lineTo(screenX[a+1], screenY[a+1]);
+                    path.close();
+                    canvas.drawPath(path, color);
+                }
+            }
+        }
+
+        //Horizontal 10deg lines
+        for(int r=0; r<GRID_ROWS; r+=10/GRID_STEP)
+            for(int c=1; c<GRID_COLS; c++)
+                drawGridLine(canvas, r*GRID_COLS+c-1, r*GRID_COLS+c, 1, lineColor);
+
+        //Vertical EastWest line at beta 0deg and 180deg
+        for(int r=1; r<GRID_ROWS; r++)
+        {
+            drawGridLine(canvas, (r-1)*GRID_COLS, r*GRID_COLS, 1, lineColor);
+            drawGridLine(canvas, (r-1)*GRID_COLS+180/GRID_STEP, r*GRID_COLS+180/GRID_STEP, 1, lineColor);
+        }
+
+        //Vertical North line at beta 90deg, South line at beta 270deg
+        for(int r=1; r<GRID_ROWS; r++)
+        {
+            drawGridLine(canvas, (r-1)*GRID_COLS+90/GRID_STEP, r*GRID_COLS+90/GRID_STEP, 4, lineColorNorth);
+            drawGridLine(canvas, (r-1)*GRID_COLS+270/GRID_STEP, r*GRID_COLS+270/GRID_STEP, 1, lineColor);
+        }
+
+        drawVectors(canvas, rot, activeActivity);
+
+        return bmp;
+    }
+
+    /**
+     * Create unit sphere grid if not done yet.
+     */
+    private void initGrid()
+    {
+        if(gridX != null) return;
+        int n = GRID_ROWS*GRID_COLS;
+        gridX = new double[n];
+        gridY = new double[n];
+        gridZ = new double[n];
+        screenX = new int[n];
+        screenY = new int[n];
+        rotZ = new double[n];
+        for(int r=0; r<GRID_ROWS; r++)
+        {
+            for(int c=0; c<GRID_COLS; c++)
+            {
+                Vector v = Vector.point(Math.PI * r*GRID_STEP/180.0, Math.PI * c*GRID_STEP/180.0);
+                gridX[r*GRID_COLS+c] = v.x;
+                gridY[r*GRID_COLS+c] = v.y;
+                gridZ[r*GRID_COLS+c] = v.z;
+            }
+        }
+    }
+
+    /**
+     * Draw line between two rotated grid points if both are visible.
+     * @param g Canvas
+     * @param a Start point index
+     * @param b Target point index
+     * @param d Line strength
+     * @param p Color
+     */
+    private void drawGridLine(Canvas g, int a, int b, int d, Paint p)
+    {
+        if(rotZ[a] <= 0 || rotZ[b] <= 0) return;
+        for(int i=0;i<d;i++)
+            for(int j=0;j<d;j++)
+                g.drawLine(screenX[a]+i-d/2, screenY[a]+j-d/2, screenX[b]+i-d/2, screenY[b]+j-d/2, p);
+    }
+
+    /**
+     * Draw orbital, maneuver and target vectors and the center marker.
+     * Vector bitmaps are decoded once and reused.
+     * @param g Canvas
+     * @param rot Navball rotation
+     * @param activeActivity Context to load drawable ressource
+     */
+    private void drawVectors(Canvas g, Matrix3x3 rot, Activity activeActivity)
+    {
+        Vector progradeVect = Vector.point(Math.PI/2-progradepitch,Math.PI/2+progradeyaw);
+        Vector progradeVectRot = rot.mult(progradeVect);
+        Vector radialinVect = Vector.point(-progradepitch,Math.PI/2+progradeyaw);
+        Vector radialinVectRot = rot.mult(radialinVect);
+        Vector antinormalVectRot = rot.mult(progradeVect.crossproduct(radialinVect));
+
+        if(drawVectors)
+        {
+            drawCachedVector(g, progradeVectRot, 1, R.drawable.vect_prograde, activeActivity);
+            drawCachedVector(g, progradeVectRot, -1, R.drawable.vect_retrograde, activeActivity);
+        }
+        if(!hideRadialNormal && drawVectors)
+        {
+            drawCachedVector(g, antinormalVectRot, -1, R.drawable.vect_normal, activeActivity);
+            drawCachedVector(g, antinormalVectRot, 1, R.drawable.vect_antinormal, activeActivity);
+            drawCachedVector(g, radialinVectRot, 1, R.drawable.vect_radialin, activeActivity);
+            drawCachedVector(g, radialinVectRot, -1, R.drawable.vect_radialout, activeActivity);
+        }
+
+        //Draw Maneuver
+        if(drawManeuver)
+        {
+            Vector maneuverVectRot = rot.mult(Vector.point(Math.PI/2-maneuverpitch,Math.PI/2+maneuveryaw));
+            drawCachedVector(g, maneuverVectRot, 1, R.drawable.vect_maneuver, activeActivity);
+        }
+
+        //Draw Target
+        if(drawTarget)
+        {
+            Vector targetVectRot = rot.mult(Vector.point(Math.PI/2-targetpitch,Math.PI/2+targetyaw));
+            drawCachedVector(g, targetVectRot, 1, R.drawable.vect_target, activeActivity);
+            drawCachedVector(g, targetVectRot, -1, R.drawable.vect_targetr, activeActivity);
+        }
+
+        //Center marker
+        int x0 = scale(-0.5), x1 = scale(-0.2), xc = scale(0), x2 = scale(0.2), x3 = scale(0.5);
+        int yc = scale(0), y1 = scale(0.2);
+        for(int i=0;i<3;i++)
+        {
+            for(int j=0;j<3;j++)
+            {
+                g.drawLine(x0+i-1, yc+j-1, x1+i-1, yc+j-1, orange);
+                g.drawLine(xc+i-1, y1+j-1, x1+i-1, yc+j-1, orange);
+                g.drawLine(xc+i-1, y1+j-1, x2+i-1, yc+j-1, orange);
+                g.drawLine(x3+i-1, yc+j-1, x2+i-1, yc+j-1, orange);
+            }
+        }
+        int r = (int)(10.0*3.0/8.0);
+        g.drawCircle(xc-r, yc-r, r, orange);
+    }
+
+    /**
+     * Draw vector bitmap on canvas, decode the bitmap on first use.
+     * @param g Canvas
+     * @param v Position
+     * @param sign 1 to draw at v, -1 to draw at -v
+     * @param drawable Drawable ID
+     * @param activeActivity Context to load drawable ressource
+     */
+    private void drawCachedVector(Canvas g, Vector v, int sign, int drawable, Activity activeActivity)
+    {
+        if(sign*v.z <= 0.05) return;
+        Bitmap bmp = vectorBitmaps.get(drawable);
+        if(bmp == null)
+        {
+            bmp = BitmapFactory.decodeResource(activeActivity.getResources(), drawable);
+            vectorBitmaps.put(drawable, bmp);
+            vectorSize = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, 36, activeActivity.getResources().getDisplayMetrics());
+        }
+        vectorSource.set(0, 0, bmp.getWidth(), bmp.getHeight());
+        int x = scale(sign*v.x);
+        int y = scale(sign*v.y);
+        vectorTarget.set((int) (x - vectorSize / 2), (int) (y - vectorSize / 2), (int) (x + vectorSize / 2), (int) (y + vectorSize / 2));
+        g.drawBitmap(bmp, vectorSource, vectorTarget, vectorPaint);
+    }
+
     /**
      * Draw vector bitmap on canvas.
      * @param g Canvas
@@ -12,12 +12,19 @@ import android.widget.LinearLayout;
 import android.widget.ScrollView;
 import android.widget.TextView;
 
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.KSPEthernetClient;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Stores settings in SharedPreferences
  */
 public class Settings
 {
     private final static String settingsFile = "KSPEthernetIO";
+    private final static int maxKnownHosts = 4;
     private SharedPreferences sharedPreferences;
 
     public Settings(Context application)
@@ -52,6 +59,61 @@ public class Settings
         sharedPreferences.edit().putString("action"+Integer.toString(n), name).apply();
     }
 
+
+    /**
+     * Get hosts of previous connections, most recent first.
+     * @return Known hosts
+     */
+    public List<KSPEthernetClient.KnownHost> getKnownHosts()
+    {
+        List<KSPEthernetClient.KnownHost> hosts = new ArrayList<KSPEthernetClient.KnownHost>();
+        for(int i=0; i<maxKnownHosts; i++)
+        {
+            //Format: address;port;M1;M2;lastSeen
+            String s = sharedPreferences.getString("knownHost"+Integer.toString(i), null);
+            if(s == null) break;
+            try
+            {
+                String[] f = s.split(";");
+                hosts.add(new KSPEthernetClient.KnownHost(InetAddress.getByName(f[0]),
+                        Integer.parseInt(f[1]), Short.parseShort(f[2]), Short.parseShort(f[3]),
+                        Long.parseLong(f[4])));
+            }
+            catch(Exception e)
+            {
+                //Skip broken entry
+            }
+        }
+        return hosts;
+    }
+
+    /**
+     * Store host of a connection.
+     * The host is moved to the front of the list, the oldest host is removed if the list is full.
+     * @param host Connected host
+     */
+    public void addKnownHost(KSPEthernetClient.KnownHost host)
+    {
+        List<KSPEthernetClient.KnownHost> hosts = getKnownHosts();
+        for(int i=0; i<hosts.size(); i++)
+        {
+            if(hosts.get(i).isSameHost(host)) hosts.remove(i--);
+        }
+        hosts.add(0, host);
+
+        SharedPreferences.Editor editor = sharedPreferences.edit();
+        for(int i=0; i<maxKnownHosts; i++)
+        {
+            if(i < hosts.size())
+            {
+                KSPEthernetClient.KnownHost h = hosts.get(i);
+                editor.putString("knownHost"+Integer.toString(i), h.address.getHostAddress()+";"+h.port+";"+h.M1+";"+h.M2+";"+h.lastSeen);
+            }
+            else editor.remove("knownHost"+Integer.toString(i));
+        }
+        editor.apply();
+    }
+
     /**
      * Show setting dialog. Trigger callback if settings changed
      * @param activeActivity Parent activity for the dialog
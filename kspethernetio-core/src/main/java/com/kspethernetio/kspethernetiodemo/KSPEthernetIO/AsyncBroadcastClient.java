@@ -1,117 +1,154 @@
 package com.kspethernetio.kspethernetiodemo.KSPEthernetIO;
 
+import java.io.IOException;
 import java.net.DatagramPacket;
-import java.net.DatagramSocket;
-import java.net.InetAddress;
-import java.net.SocketTimeoutException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.Events.AbstractEvent;
 import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.Events.EventProvider;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.NioSelector.ChannelHandler;
 
 /**
  * Async UDP broadcast listener.
  * Listens on specified port for broadcast messages and provides events if a broadcast packet was
  * received.
+ *
+ * Uses a non-blocking DatagramChannel on a NioSelector. All events are delivered on the
+ * selector thread.
  */
 public class AsyncBroadcastClient extends EventProvider
 {
-	private DatagramSocket socket = null;
+	private NioSelector selector;
+	private DatagramChannel channel = null; //Only accessed on selector thread
+	private SelectionKey key = null;
+	private boolean opened = false; //Only accessed on selector thread
 	private int port;
 	
 	private AtomicBoolean active = new AtomicBoolean(false); //Thread safe active state
-	private AtomicBoolean cancel = new AtomicBoolean(false); //Thread safe cancel signal
 	
 	private AsyncBroadcastClient sender; //Contains 'this' to access from child thread
 
+	private ByteBuffer receiveBuffer = ByteBuffer.allocate(1024);
+
 
 	/**
 	 * Create new broadcast client listening on specific port.
 	 *
 	 * @param port Port
+	 * @param selector Selector running the channel
 	 */
-	public AsyncBroadcastClient(int port)
+	public AsyncBroadcastClient(int port, NioSelector selector)
 	{
 		super();
 		this.port = port;
+		this.selector = selector;
 		sender = this;
 	}
 
 	/**
 	 * Start listening.
-	 * Starts background thread listening for broadcasts.
+	 * Registers a DatagramChannel on the selector.
 	 * Triggers a 'Started' event.
 	 * If not successful also triggers a 'Canceled' event.
 	 */
 	public void startReceiveBroadcast()
 	{
-		Thread t = new Thread(tWaitForBroadcast);
-		
-		t.start();
+		//If already waiting for a Broadcast do nothing
+		if(active.getAndSet(true)) return;
+		selector.execute(open);
 	}
 
 	/**
-	 * Background thread listening for broadcasts.
-	 * Can be stopped by setting cancel = true.
-	 * Delievers events on Start, Stop and data receive
+	 * Open channel.
+	 * Runs on selector thread.
 	 */
-	private Runnable tWaitForBroadcast = new Runnable()
+	private Runnable open = new Runnable()
 	{
 		@Override
 		public void run()
 		{
-			//If already waiting for a Broadcast do nothing
-			if(active.getAndSet(true)) return;
-			
-			cancel.set(false);
-			Exception exception = null;
-
+			opened = true;
 			notifyEvent(new BroadcastEvent(sender, BroadcastEvent.BroadcastEventType.Started));
-			
+
 			//Try to open the socket
 			try
 			{
-				socket = new DatagramSocket(port, InetAddress.getByName("0.0.0.0"));
-				socket.setSoTimeout(10);
+				channel = DatagramChannel.open();
+				channel.socket().bind(new InetSocketAddress(port));
+				channel.configureBlocking(false);
+				key = selector.register(channel, SelectionKey.OP_READ, handler);
 			}
-			catch(Exception e)
+			catch(IOException e)
 			{
-				exception = e;
-
-				cancel.set(true);
+				close(e, false);
 			}
-			
-			//If socket was opened wait for data or error
-			while(!cancel.get())
+		}
+	};
+
+	/**
+	 * Channel ready handler.
+	 * Delievers events on data receive
+	 */
+	private ChannelHandler handler = new ChannelHandler()
+	{
+		@Override
+		public void onSelected(SelectionKey k)
+		{
+			try
 			{
-				try
+				//Read all pending datagrams
+				while(true)
 				{
-					DatagramPacket packet = new DatagramPacket(new byte[1024], 1024);
-					socket.receive(packet);
-										
+					receiveBuffer.clear();
+					SocketAddress address = channel.receive(receiveBuffer);
+					if(address == null) break;
+
+					byte[] data = new byte[receiveBuffer.position()];
+					System.arraycopy(receiveBuffer.array(), 0, data, 0, data.length);
+					DatagramPacket packet = new DatagramPacket(data, data.length);
+					packet.setSocketAddress(address);
+
 					notifyEvent(new BroadcastEvent(sender, BroadcastEvent.BroadcastEventType.Received, packet));
+					if(channel == null) break;
 				}
-				catch(SocketTimeoutException e)
-				{
-					//Check for user cancel
-				}
-				catch(Exception e)
-				{
-					exception = e;
-				}
 			}
-			
-			//Canceled
-			if(socket!=null) socket.close();
-			socket = null;
-			cancel.set(false);
-			active.set(false);	
-			
-			notifyEvent(new BroadcastEvent(sender, BroadcastEvent.BroadcastEventType.Canceled, exception));
-			return;
+			catch(IOException e)
+			{
+				close(e, false);
+			}
 		}
 	};
 
+	/**
+	 * Close channel and trigger Canceled event.
+	 * Runs on selector thread.
+	 *
+	 * @param exception Exception or null on user cancel
+	 * @param user True on user cancel, active state was already reset
+	 */
+	private void close(Exception exception, boolean user)
+	{
+		if(!opened) return;
+		opened = false;
+
+		if(key != null) key.cancel();
+		key = null;
+		if(channel != null)
+		{
+			try { channel.close(); }
+			catch(IOException e) {}
+		}
+		channel = null;
+		if(!user) active.set(false);
+
+		notifyEvent(new BroadcastEvent(sender, BroadcastEvent.BroadcastEventType.Canceled, exception));
+	}
+
 	/**
 	 * Check if broadcast client is active.
 	 *
@@ -127,15 +164,29 @@ public class AsyncBroadcastClient extends EventProvider
 	 */
 	public void cancelReceiveBroadcast()
 	{
-		if(isActive()) cancel.set(true);
+		if(active.getAndSet(false)) selector.execute(cancel);
 	}
 
+	/**
+	 * User cancel.
+	 * Runs on selector thread.
+	 */
+	private Runnable cancel = new Runnable()
+	{
+		@Override
+		public void run()
+		{
+			close(null, true);
+		}
+	};
+
 	/**
 	 * Broadcast events
 	 */
 	public static class BroadcastEvent extends AbstractEvent
 	{
 		public enum BroadcastEventType {Received, Started, Canceled}
+		private static final BroadcastEventType[] types = BroadcastEventType.values();
 
 		/**
 		 * Create BroadcastEvent with DatagramPacket.
@@ -179,7 +230,7 @@ public class AsyncBroadcastClient extends EventProvider
 		 */
 		public BroadcastEventType getType()
 		{
-			return BroadcastEventType.values()[id];
+			return types[id];
 		}
 
 		/**
@@ -0,0 +1,611 @@
+package com.kspethernetio.kspethernetiodemo.KSPEthernetIO;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.FrameDecoder;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.FrameDecoder.FrameListener;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.Events.AbstractEvent;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.Events.EventProvider;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.Events.ListenerList;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.NioSelector.ChannelHandler;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.NioSelector.Timer;
+
+/**
+ * Async TCP client.
+ * Connects to TCP server and provides events on data receive.
+ * The received stream is split into packets, each Received event contains exactly one packet.
+ *
+ * Uses a non-blocking SocketChannel on a NioSelector. All events are delivered on the
+ * selector thread.
+ */
+public class AsyncTcpClient extends EventProvider
+{
+	private static final int CONNECT_TIMEOUT = 1000; //Connect timeout in milliseconds
+
+	private NioSelector selector;
+	private SocketChannel channel = null; //Only accessed on selector thread
+	private SelectionKey key = null;
+	private boolean opened = false; //Only accessed on selector thread
+	private Timer connectTimer = null;
+	private InetSocketAddress server;
+	
+	private AtomicLong active = new AtomicLong(0); //Thread safe generation of the active connection, 0 if not active
+	private AtomicLong generations = new AtomicLong(0); //Last generation handed out by startReceiveData()
+	private long connection = 0; //Generation of the open channel, only accessed on selector thread
+	
+	public AsyncTcpClient sender; //Contains 'this' to access from child thread
+
+	private FrameDecoder decoder = new FrameDecoder(); //Splits the TCP stream into packets
+	private ByteBuffer readBuffer = ByteBuffer.allocate(1024);
+
+	//Typed listeners, called without creating events
+	private ListenerList<TcpListener> tcpListeners = new ListenerList<TcpListener>(new TcpListener[0]);
+
+	//Data queued by sendData(), written on the selector thread
+	private ConcurrentLinkedQueue<OutFrame> sendQueue = new ConcurrentLinkedQueue<OutFrame>();
+	//Newest data of sendLatest(), written after the queue
+	private AtomicReference<OutFrame> latest = new AtomicReference<OutFrame>(null);
+	private OutFrame writing = null; //Partially written frame, only accessed on selector thread
+
+	//Send statistics
+	private AtomicLong coalescedFrames = new AtomicLong(0);
+	private volatile long lastQueueLatency = 0; //Nanoseconds
+	private volatile long maxQueueLatency = 0; //Nanoseconds
+
+	//Receive statistics, recorded on the selector thread
+	private volatile LinkMetrics linkMetrics = null;
+	private long countedResyncs = 0; //Decoder resyncs already passed to linkMetrics
+	private long countedRejects = 0; //Decoder checksum errors already passed to linkMetrics
+
+    /**
+     * Create new TCP client for specific host.
+     *
+     * @param address Host address
+     * @param port Host port
+     * @param selector Selector running the connection
+     */
+	public AsyncTcpClient(InetAddress address, int port, NioSelector selector)
+	{
+		super();
+		server = new InetSocketAddress(address, port);
+		this.selector = selector;
+		sender = this;
+	}
+
+    /**
+     * Try to connect to host.
+     * Triggers Connected event on success.
+     * Trigger Disconnected event on failure.
+     */
+	public void startReceiveData()
+	{
+		//If already connected do nothing
+		long generation = generations.incrementAndGet();
+		if(!active.compareAndSet(0, generation)) return;
+		selector.execute(new Connect(generation));
+	}
+
+    /**
+     * Try to send data to connected host.
+     * The data is queued and written by the selector thread. Queued data is never dropped
+     * while the connection is open.
+     *
+     * @param data Data to send
+     */
+	public void sendData(byte[] data)
+	{
+		if(isActive())
+		{
+			sendQueue.add(new OutFrame(data));
+			selector.execute(flush);
+		}
+	}
+
+    /**
+     * Try to send state data to connected host.
+     * Only the newest data is kept: if the previous data was not written yet it is replaced.
+     * Written after all data queued by sendData().
+     *
+     * @param data Data to send
+     */
+	public void sendLatest(byte[] data)
+	{
+		if(isActive())
+		{
+			if(latest.getAndSet(new OutFrame(data)) != null) coalescedFrames.incrementAndGet();
+			selector.execute(flush);
+		}
+	}
+
+    /**
+     * Try to send state data to connected host.
+     * Like sendLatest(byte[]), but a frame that must be kept, e.g. because it carries a one-shot
+     * command, is queued like sendData() and is never replaced. It still replaces the previous
+     * data of sendLatest() if that was not written yet.
+     *
+     * @param data Data to send
+     * @param keep True if the data must not be replaced by newer data
+     */
+	public void sendLatest(byte[] data, boolean keep)
+	{
+		if(!keep)
+		{
+			sendLatest(data);
+			return;
+		}
+		if(isActive())
+		{
+			//Older state must not be written after this frame
+			if(latest.getAndSet(null) != null) coalescedFrames.incrementAndGet();
+			sendQueue.add(new OutFrame(data));
+			selector.execute(flush);
+		}
+	}
+
+    /**
+     * Get number of sendLatest() frames replaced before they were written.
+     *
+     * @return Coalesced frames
+     */
+	public long getCoalescedFrames()
+	{
+		return coalescedFrames.get();
+	}
+
+    /**
+     * Get time the last written frame waited before it was completely written.
+     *
+     * @return Queue latency in nanoseconds
+     */
+	public long getQueueLatency()
+	{
+		return lastQueueLatency;
+	}
+
+    /**
+     * Get maximum time a frame waited before it was completely written.
+     *
+     * @return Maximum queue latency in nanoseconds
+     */
+	public long getMaxQueueLatency()
+	{
+		return maxQueueLatency;
+	}
+
+    /**
+     * Set statistics to record received bytes, decoder resyncs and rejected frames.
+     *
+     * @param metrics LinkMetrics or null
+     */
+	public void setLinkMetrics(LinkMetrics metrics)
+	{
+		linkMetrics = metrics;
+	}
+
+    /**
+     * Open channel and start connecting.
+     * Runs on selector thread.
+     */
+	private class Connect implements Runnable
+	{
+		private final long generation;
+
+		Connect(long generation)
+		{
+			this.generation = generation;
+		}
+
+		@Override
+		public void run()
+		{
+			connection = generation;
+			opened = true;
+			decoder.reset();
+			try
+			{
+				channel = SocketChannel.open();
+				channel.configureBlocking(false);
+				channel.socket().setTcpNoDelay(true); // Don't buffer small packets
+				channel.socket().setReceiveBufferSize(1024);
+				channel.socket().setSendBufferSize(1024);
+				if(channel.connect(server)) connected();
+				else
+				{
+					key = selector.register(channel, SelectionKey.OP_CONNECT, handler);
+					connectTimer = selector.schedule(connectTimeout, CONNECT_TIMEOUT);
+				}
+			}
+			catch(IOException e)
+			{
+				close(e, false);
+			}
+		}
+	}
+
+	/**
+	 * Cancel connect attempt after timeout.
+	 */
+	private Runnable connectTimeout = new Runnable()
+	{
+		@Override
+		public void run()
+		{
+			connectTimer = null;
+			close(new IOException("Connect timed out"), false);
+		}
+	};
+
+	/**
+	 * Write queued data.
+	 * Runs on selector thread.
+	 */
+	private Runnable flush = new Runnable()
+	{
+		@Override
+		public void run()
+		{
+			if(key == null || !key.isValid() || (key.interestOps() & SelectionKey.OP_CONNECT) != 0) return;
+			try
+			{
+				while(true)
+				{
+					if(writing == null) writing = sendQueue.poll();
+					if(writing == null) writing = latest.getAndSet(null);
+					if(writing == null) break;
+					channel.write(writing.data);
+					if(writing.data.hasRemaining()) break;
+
+					long latency = System.nanoTime() - writing.queued;
+					lastQueueLatency = latency;
+					if(latency > maxQueueLatency) maxQueueLatency = latency;
+					writing = null;
+				}
+				//Wait until the socket accepts more data
+				if(writing == null) key.interestOps(SelectionKey.OP_READ);
+				else key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+			}
+			catch(IOException e)
+			{
+				close(e, false);
+			}
+		}
+	};
+
+	/**
+	 * Channel ready handler.
+	 * Delievers events on Connect, Disconnect and data receive
+	 */
+	private ChannelHandler handler = new ChannelHandler()
+	{
+		@Override
+		public void onSelected(SelectionKey k)
+		{
+			try
+			{
+				if(k.isConnectable())
+				{
+					if(channel.finishConnect()) connected();
+					return;
+				}
+				if(k.isWritable()) flush.run();
+				if(k.isValid() && k.isReadable())
+				{
+					readBuffer.clear();
+					int n = channel.read(readBuffer);
+					if(n>0)
+					{
+						decoder.decode(readBuffer.array(), 0, n, frameListener);
+						LinkMetrics m = linkMetrics;
+						long r = decoder.getResyncs();
+						long c = decoder.getChecksumErrors();
+						if(m != null) m.onRead(n, r - countedResyncs, c - countedRejects);
+						countedResyncs = r;
+						countedRejects = c;
+					}
+					else if(n<0) close(null, false);
+				}
+			}
+			catch(IOException e)
+			{
+				close(e, false);
+			}
+		}
+	};
+
+	/**
+	 * Connection established.
+	 *
+	 * @throws IOException Register error
+	 */
+	private void connected() throws IOException
+	{
+		if(connectTimer != null) connectTimer.cancel();
+		connectTimer = null;
+		if(key == null) key = selector.register(channel, SelectionKey.OP_READ, handler);
+		else key.interestOps(SelectionKey.OP_READ);
+		notifyConnected();
+		flush.run();
+	}
+
+	/**
+	 * Close channel and trigger Disconnected event.
+	 * Runs on selector thread.
+	 *
+	 * @param exception Exception or null on user cancel
+	 * @param user True on user cancel, active state was already reset
+	 */
+	private void close(Exception exception, boolean user)
+	{
+		if(!opened) return;
+		opened = false;
+
+		if(connectTimer != null) connectTimer.cancel();
+		connectTimer = null;
+		if(key != null) key.cancel();
+		key = null;
+		if(channel != null)
+		{
+			try { channel.close(); }
+			catch(IOException e) {}
+		}
+		channel = null;
+		sendQueue.clear();
+		latest.set(null);
+		writing = null;
+		//A newer connection may already have been started, it stays active
+		if(!user) active.compareAndSet(connection, 0);
+
+		notifyDisconnected(exception);
+	}
+
+	/**
+	 * Notify listeners about an established connection.
+	 */
+	protected void notifyConnected()
+	{
+		for(TcpListener l : tcpListeners.get()) l.onConnected(this);
+		if(hasEventListeners()) notifyEvent(new TcpEvent(sender, TcpEvent.TcpEventType.Connected));
+	}
+
+	/**
+	 * Notify listeners about a closed connection.
+	 *
+	 * @param exception Exception or null on user cancel
+	 */
+	protected void notifyDisconnected(Exception exception)
+	{
+		for(TcpListener l : tcpListeners.get()) l.onDisconnected(this, exception);
+		if(hasEventListeners()) notifyEvent(new TcpEvent(sender, TcpEvent.TcpEventType.Disconnected, exception));
+	}
+
+	/**
+	 * Notify listeners about a received packet.
+	 * TcpListeners get the packet in place, a copy is only made for Received events.
+	 *
+	 * @param frame Buffer containing the packet
+	 * @param off Offset of the packet header
+	 * @param len Packet length
+	 */
+	protected void notifyReceived(byte[] frame, int off, int len)
+	{
+		for(TcpListener l : tcpListeners.get()) l.onReceived(this, frame, off, len);
+		if(!hasEventListeners()) return;
+		byte[] rec = new byte[len];
+		System.arraycopy(frame, off, rec, 0, len);
+		notifyEvent(new TcpEvent(sender, TcpEvent.TcpEventType.Received, rec));
+	}
+
+	/**
+	 * Frame waiting to be written.
+	 */
+	private static class OutFrame
+	{
+		final ByteBuffer data;
+		final long queued = System.nanoTime();
+
+		OutFrame(byte[] data)
+		{
+			this.data = ByteBuffer.wrap(data);
+		}
+	}
+
+    /**
+     * Deliver every complete packet found in the TCP stream.
+     */
+	private FrameListener frameListener = new FrameListener()
+	{
+		@Override
+		public void onFrame(byte[] frame, int off, int len)
+		{
+			notifyReceived(frame, off, len);
+		}
+	};
+
+	/**
+	 * Add TcpListener.
+	 *
+	 * @param l TcpListener
+	 */
+	public void addTcpListener(TcpListener l)
+	{
+		tcpListeners.add(l);
+	}
+
+	/**
+	 * Remove TcpListener.
+	 *
+	 * @param l TcpListener
+	 */
+	public void removeTcpListener(TcpListener l)
+	{
+		tcpListeners.remove(l);
+	}
+
+	/**
+	 * Typed listener for TCP client events.
+	 * Alternative to TcpEvents, nothing is allocated per received packet.
+	 * All functions are called on the selector thread.
+	 */
+	public interface TcpListener
+	{
+		/**
+		 * Connection established.
+		 *
+		 * @param client AsyncTcpClient
+		 */
+		void onConnected(AsyncTcpClient client);
+
+		/**
+		 * Connection closed.
+		 *
+		 * @param client AsyncTcpClient
+		 * @param e Exception or null on user cancel
+		 */
+		void onDisconnected(AsyncTcpClient client, Exception e);
+
+		/**
+		 * Packet received.
+		 * The buffer is reused after the call returns, copy the packet to keep it.
+		 *
+		 * @param client AsyncTcpClient
+		 * @param packet Buffer containing the packet
+		 * @param off Offset of the packet header
+		 * @param len Packet length
+		 */
+		void onReceived(AsyncTcpClient client, byte[] packet, int off, int len);
+	}
+
+    /**
+     * Get host address.
+     *
+     * @return Host address
+     */
+	public InetAddress getAddress()
+	{
+		return server.getAddress();
+	}
+
+    /**
+     * Get host port.
+     *
+     * @return Host port
+     */
+	public int getPort()
+	{
+		return server.getPort();
+	}
+
+    /**
+     * Check if TCP client is active.
+     *
+     * @return True if active
+     */
+    public boolean isActive()
+	{
+		return active.get() != 0;
+	}
+
+    /**
+     * Cancel listening.
+     */
+	public void cancelReceiveData()
+	{
+		if(active.getAndSet(0) != 0) selector.execute(cancel);
+	}
+
+	/**
+	 * User cancel.
+	 * Runs on selector thread.
+	 */
+	private Runnable cancel = new Runnable()
+	{
+		@Override
+		public void run()
+		{
+			close(null, true);
+		}
+	};
+
+    /**
+     * TCP client events.
+     */
+	public static class TcpEvent extends AbstractEvent
+	{
+		public enum TcpEventType {Connected, Disconnected, Received}
+		private static final TcpEventType[] types = TcpEventType.values();
+
+        /**
+         * New TcpEvent with received data.
+         *
+         * @param sender AsyncTcpClient
+         * @param t TcpEventType
+         * @param arg Byte array
+         */
+		public TcpEvent(AsyncTcpClient sender, TcpEventType t, byte[] arg)
+		{
+			super(sender, t.ordinal(), arg);
+		}
+
+        /**
+         * New TcpEvent with Exception.
+         *
+         * @param sender AsyncTcpClient
+         * @param t TcpEventType
+         * @param arg Exception
+         */
+		public TcpEvent(AsyncTcpClient sender, TcpEventType t, Exception arg)
+		{
+			super(sender, t.ordinal(), arg);
+		}
+
+        /**
+         * New TcpEvent without argument.
+         *
+         * @param sender AsyncTcpClient
+         * @param t TcpEventType
+         */
+		public TcpEvent(AsyncTcpClient sender, TcpEventType t)
+		{
+			super(sender, t.ordinal(), null);
+		}
+
+        /**
+         * Get event type.
+         *
+         * @return TcpEventType
+         */
+		public TcpEventType getType()
+		{
+			return types[id];
+		}
+
+        /**
+         * Get data of received data event.
+         *
+         * @return Byte array
+         */
+		public byte[] getData()
+		{
+			return (byte[])arg;
+		}
+
+        /**
+         * Get exception of disconnect event.
+         * Return null on user cancel.
+         *
+         * @return Exception or null
+         */
+		public Exception getException()
+		{
+			return (Exception)arg;
+		}
+	}
+}
@@ -0,0 +1,1968 @@
+package com.kspethernetio.kspethernetiodemo.KSPEthernetIO;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Contains data packet structures and functions to convert between structs and byte arrays.
+ * Slighly modified version of zitronen-git/KSPSerialIO 0.19.1
+ * Angles changed to UInt16 like in some other forks of the original code.
+ *
+ * Because Java does not support unsigned data types all unsigned types from the host data packets
+ * are converted to the next bigger data type:
+ *  byte -> short
+ *  Uint16 -> int
+ *  Uint32 -> long
+ *
+ *  Also contains some helper functions for data handling.
+ */
+public class DataPackets
+{
+	public final static int MaxPayloadSize = 255;
+    public final static byte HSPid = 0, VDid = 1, SPid = 2, CPid = 101; //hard coded values for packet IDS
+
+
+    public enum SASMode {Off, Regular, Prograde, Retrograde, Normal, Antinormal, RadialIn, RadialOut, Target, AntiTarget, Maneuver, Unknown}
+    public enum NavballMode {Ignore, Target, Orbit, Surface, Unkonwn}
+    public enum UiMode {Stage, Docking, Map}
+    public enum CamMode {Auto, Free, Orbital, Chase, Locked}
+    public enum HostState {Undefined, Disconnected, InFlight, NotInFlight}
+
+    /**
+     * Convert time in seconds to String of format XXyXXXdXXhXXmXXs
+     *
+     * @param t Time in seconds
+     * @return String of format XXyXXXdXXhXXmXXs
+     */
+    public static String timeToString(long t, boolean showPlusMinus)
+    {
+        String ret = "";
+        if(t>0 && showPlusMinus) ret+="-";
+        else if(showPlusMinus)
+        {
+            t*=-1;
+            ret+="+";
+        }
+
+        long y=0,d=0,h=0,m=0,s=0;
+        y=t/(60*60*24*365);
+        t%=(60*60*24*365);
+        d=t/(60*60*24);
+        t%=(60*60*24);
+        h=t/(60*60);
+        t%=(60*60);
+        m=t/60;
+        s=t%60;
+
+        if(y>0) ret+=y+"y";
+        if(y>0 || d>0) ret+=d+"d";
+        if(y>0 || d>0 || h>0) ret+=h+"h";
+        if(y>0 || d>0 || h>0 || m>0) ret+=m+"m";
+        ret+=s+"s";
+
+        return ret;
+    }
+
+    /**
+     * Convert angle String of format XX.X°
+     *
+     * @param a Angle
+     * @return String of format XXyXXXdXXhXXmXXs
+     */
+    public static String angleToString(float a)
+    {
+        return String.format("%.1f", a) + "°";
+    }
+
+    /**
+     * Convert distance in meters to String of format XXX[.]X(m|k|M)
+     *
+     * @param d Distance in meters
+     * @return String of format XXX[.]X(m|k|M)
+     */
+    public static String distanceToString(float d)
+    {
+        String ret = "";
+        if(d<0) ret += "<0m";
+        else if(d<100) ret += String.format("%.1f", d) + "m";
+        else if(d<300000) ret += String.format("%.0f", d) + "m";
+        else if(d<300000000) ret += String.format("%.0f", d/1000) + "k";
+        else ret += String.format("%.0f", d/1000000) + "M";
+        return ret;
+    }
+
+    /**
+     * Unidirectional data from KSPEthernetIO to client.
+     */
+    public static class VesselData
+    {
+        public short id;              //1
+        public float AP;             //2
+        public float PE;             //3
+        public float SemiMajorAxis;  //4
+        public float SemiMinorAxis;  //5
+        public float VVI;            //6
+        public float e;              //7
+        public float inc;            //8
+        public float G;              //9
+        public int TAp;              //10
+        public int TPe;              //11
+        public float TrueAnomaly;    //12
+        public float Density;        //13
+        public int period;           //14
+        public float RAlt;           //15
+        public float Alt;            //16
+        public float Vsurf;          //17
+        public float Lat;            //18
+        public float Lon;            //19
+        public float LiquidFuelTot;  //20
+        public float LiquidFuel;     //21
+        public float OxidizerTot;    //22
+        public float Oxidizer;       //23
+        public float EChargeTot;     //24
+        public float ECharge;        //25
+        public float MonoPropTot;    //26
+        public float MonoProp;       //27
+        public float IntakeAirTot;   //28
+        public float IntakeAir;      //29
+        public float SolidFuelTot;   //30
+        public float SolidFuel;      //31
+        public float XenonGasTot;    //32
+        public float XenonGas;       //33
+        public float LiquidFuelTotS; //34
+        public float LiquidFuelS;    //35
+        public float OxidizerTotS;   //36
+        public float OxidizerS;      //37
+        public long MissionTime;     //38
+        public float deltaTime;      //39
+        public float VOrbit;         //40
+        public long MNTime;          //41
+        public float MNDeltaV;       //42
+        public int Pitch;            //43
+        public int Roll;             //44
+        public int Heading;          //45
+        public int ActionGroups;     //46  state bit order:SAS, RCS, Light, Gear, Brakes, Abort, Custom01 - 10
+        public short SOINumber;      //47  SOI Number (decimal format: sun-planet-moon e.g. 130 = kerbin, 131 = mun)
+        public short MaxOverHeat;    //48  Max part overheat (% percent)
+        public float MachNumber;     //49
+        public float IAS;            //50  Indicated Air Speed
+        public short CurrentStage;   //51  Current stage number
+        public short TotalStage;     //52  TotalNumber of stages
+        public float TargetDist;     //53  Distance to targeted vessel (m)
+        public float TargetV;        //54  Target vessel relative velocity (m/s)
+        public short NavballSASMode; //55  Combined byte for nav_navballbackground vect_target mode and SAS mode
+                                     // First four bits indicate AutoPilot mode:
+                                     // 0 SAS is off  //1 = Regular Stability Assist //2 = Prograde
+                                     // 3 = RetroGrade //4 = Normal //5 = Antinormal //6 = Radial In
+                                     // 7 = Radial Out //8 = Target //9 = Anti-Target //10 = Maneuver node
+                                     // Last 4 bits set nav_navballbackground mode. (0=ignore,1=ORBIT,2=SURFACE,3=TARGET)
+        public int ProgradePitch;    //56 Pitch   Of the Prograde Vector;  int_16 ranging from (-0x8000(-360 degrees) to 0x7FFF(359.99ish degrees));
+        public int ProgradeHeading;  //57 Heading Of the Prograde Vector;  see above for range   (Prograde vector depends on nav_navballbackground mode, eg Surface/Orbit/Target)
+        public int ManeuverPitch;    //58 Pitch   Of the Maneuver Vector;  see above for range;  (0 if no Maneuver node)
+        public int ManeuverHeading;  //59 Heading Of the Maneuver Vector;  see above for range;  (0 if no Maneuver node)
+        public int TargetPitch;      //60 Pitch   Of the Target   Vector;  see above for range;  (0 if no Target)
+        public int TargetHeading;    //61 Heading Of the Target   Vector;  see above for range;  (0 if no Target)
+        public int NormalHeading;    //62 Heading Of the Prograde Vector;  see above for range;  (Pitch of the Heading Vector is always 0)
+        public short vesselSync;     //63 Current sync value, changed on every vessel change - has to be mirrored into ControlPacket
+
+        public long received = 0;    //System.nanoTime() of arrival, set by the PacketHandler. Not part of the packet
+
+        //Payload layout, byte offset of each field relative to the payload start
+        private static final int
+                OFF_id = 0,
+                OFF_AP = 1,
+                OFF_PE = 5,
+                OFF_SemiMajorAxis = 9,
+                OFF_SemiMinorAxis = 13,
+                OFF_VVI = 17,
+                OFF_e = 21,
+                OFF_inc = 25,
+                OFF_G = 29,
+                OFF_TAp = 33,
+                OFF_TPe = 37,
+                OFF_TrueAnomaly = 41,
+                OFF_Density = 45,
+                OFF_period = 49,
+                OFF_RAlt = 53,
+                OFF_Alt = 57,
+                OFF_Vsurf = 61,
+                OFF_Lat = 65,
+                OFF_Lon = 69,
+                OFF_LiquidFuelTot = 73,
+                OFF_LiquidFuel = 77,
+                OFF_OxidizerTot = 81,
+                OFF_Oxidizer = 85,
+                OFF_EChargeTot = 89,
+                OFF_ECharge = 93,
+                OFF_MonoPropTot = 97,
+                OFF_MonoProp = 101,
+                OFF_IntakeAirTot = 105,
+                OFF_IntakeAir = 109,
+                OFF_SolidFuelTot = 113,
+                OFF_SolidFuel = 117,
+                OFF_XenonGasTot = 121,
+                OFF_XenonGas = 125,
+                OFF_LiquidFuelTotS = 129,
+                OFF_LiquidFuelS = 133,
+                OFF_OxidizerTotS = 137,
+                OFF_OxidizerS = 141,
+                OFF_MissionTime = 145,
+                OFF_deltaTime = 149,
+                OFF_VOrbit = 153,
+                OFF_MNTime = 157,
+                OFF_MNDeltaV = 161,
+                OFF_Pitch = 165,
+                OFF_Roll = 167,
+                OFF_Heading = 169,
+                OFF_ActionGroups = 171,
+                OFF_SOINumber = 173,
+                OFF_MaxOverHeat = 174,
+                OFF_MachNumber = 175,
+                OFF_IAS = 179,
+                OFF_CurrentStage = 183,
+                OFF_TotalStage = 184,
+                OFF_TargetDist = 185,
+                OFF_TargetV = 189,
+                OFF_NavballSASMode = 193,
+                OFF_ProgradePitch = 194,
+                OFF_ProgradeHeading = 196,
+                OFF_ManeuverPitch = 198,
+                OFF_ManeuverHeading = 200,
+                OFF_TargetPitch = 202,
+                OFF_TargetHeading = 204,
+                OFF_NormalHeading = 206,
+                OFF_vesselSync = 208;
+        public static final int PayloadSize = 209;
+
+        //Change mask, one bit per field in packet order, see changedFields()
+        public static final long
+                MASK_id = 1L<<0,
+                MASK_AP = 1L<<1,
+                MASK_PE = 1L<<2,
+                MASK_SemiMajorAxis = 1L<<3,
+                MASK_SemiMinorAxis = 1L<<4,
+                MASK_VVI = 1L<<5,
+                MASK_e = 1L<<6,
+                MASK_inc = 1L<<7,
+                MASK_G = 1L<<8,
+                MASK_TAp = 1L<<9,
+                MASK_TPe = 1L<<10,
+                MASK_TrueAnomaly = 1L<<11,
+                MASK_Density = 1L<<12,
+                MASK_period = 1L<<13,
+                MASK_RAlt = 1L<<14,
+                MASK_Alt = 1L<<15,
+                MASK_Vsurf = 1L<<16,
+                MASK_Lat = 1L<<17,
+                MASK_Lon = 1L<<18,
+                MASK_LiquidFuelTot = 1L<<19,
+                MASK_LiquidFuel = 1L<<20,
+                MASK_OxidizerTot = 1L<<21,
+                MASK_Oxidizer = 1L<<22,
+                MASK_EChargeTot = 1L<<23,
+                MASK_ECharge = 1L<<24,
+                MASK_MonoPropTot = 1L<<25,
+                MASK_MonoProp = 1L<<26,
+                MASK_IntakeAirTot = 1L<<27,
+                MASK_IntakeAir = 1L<<28,
+                MASK_SolidFuelTot = 1L<<29,
+                MASK_SolidFuel = 1L<<30,
+                MASK_XenonGasTot = 1L<<31,
+                MASK_XenonGas = 1L<<32,
+                MASK_LiquidFuelTotS = 1L<<33,
+                MASK_LiquidFuelS = 1L<<34,
+                MASK_OxidizerTotS = 1L<<35,
+                MASK_OxidizerS = 1L<<36,
+                MASK_MissionTime = 1L<<37,
+                MASK_deltaTime = 1L<<38,
+                MASK_VOrbit = 1L<<39,
+                MASK_MNTime = 1L<<40,
+                MASK_MNDeltaV = 1L<<41,
+                MASK_Pitch = 1L<<42,
+                MASK_Roll = 1L<<43,
+                MASK_Heading = 1L<<44,
+                MASK_ActionGroups = 1L<<45,
+                MASK_SOINumber = 1L<<46,
+                MASK_MaxOverHeat = 1L<<47,
+                MASK_MachNumber = 1L<<48,
+                MASK_IAS = 1L<<49,
+                MASK_CurrentStage = 1L<<50,
+                MASK_TotalStage = 1L<<51,
+                MASK_TargetDist = 1L<<52,
+                MASK_TargetV = 1L<<53,
+                MASK_NavballSASMode = 1L<<54,
+                MASK_ProgradePitch = 1L<<55,
+                MASK_ProgradeHeading = 1L<<56,
+                MASK_ManeuverPitch = 1L<<57,
+                MASK_ManeuverHeading = 1L<<58,
+                MASK_TargetPitch = 1L<<59,
+                MASK_TargetHeading = 1L<<60,
+                MASK_NormalHeading = 1L<<61,
+                MASK_vesselSync = 1L<<62;
+        public static final long MASK_ALL = (1L<<63)-1;
+
+        /**
+         * Return if target is set.
+         * TODO Transfer target set bit in data packet
+         * @return True if target is set
+         */
+        public boolean isTargetSet()
+        {
+            return !(TargetHeading == 0 && TargetPitch == 0);
+        }
+
+        /**
+         * Return if maneuver node is set.
+         * TODO Transfer maneuver node set bit in data packet
+         * @return True if maneuver node is set
+         */
+        public boolean isManeuverSet()
+        {
+            return !(ManeuverHeading == 0 && ManeuverPitch == 0);
+        }
+
+        /**
+         * Get Navball mode.
+         *
+         * @return Navball mode enum
+         */
+        public NavballMode getNavballMode()
+        {
+            switch((NavballSASMode&0b11110000)>>4)
+            {
+                case 0:
+                    return NavballMode.Ignore;
+                case 1:
+                    return NavballMode.Orbit;
+                case 2:
+                    return NavballMode.Surface;
+                case 3:
+                    return NavballMode.Target;
+                default:
+                    return NavballMode.Unkonwn;
+            }
+        }
+
+        /**
+         * Get SAS mode.
+         *
+         * @return SAS mode enum
+         */
+        public SASMode getSASMode()
+        {
+            switch(NavballSASMode&0b1111)
+            {
+                case 0:
+                    return SASMode.Off;
+                case 1:
+                    return SASMode.Regular;
+                case 2:
+                    return  SASMode.Prograde;
+                case 3:
+                    return  SASMode.Retrograde;
+                case 4:
+                    return  SASMode.Normal;
+                case 5:
+                    return  SASMode.Antinormal;
+                case 6:
+                    return  SASMode.RadialIn;
+                case 7:
+                    return  SASMode.RadialOut;
+                case 8:
+                    return  SASMode.Target;
+                case 9:
+                    return  SASMode.AntiTarget;
+                case 10:
+                    return SASMode.Maneuver;
+                default:
+                    return  SASMode.Unknown;
+            }
+        }
+
+        /**
+         * Get action group state.
+         *
+         * @param n Action group 0-9
+         * @return True if action group is set. False if out of range.
+         */
+        public boolean getActionGroup(int n)
+        {
+            if(n<0 || n>9) return false;
+            return (ActionGroups & (1<<(n+6)))!=0;
+        }
+
+        /**
+         * Get SAS state.         *
+         * @return True if SAS is on
+         */
+        public boolean getSAS()
+        {
+            return (ActionGroups & (1<<(0)))!=0;
+        }
+        /**
+         * Get RCS state.         *
+         * @return True if RCS is on
+         */
+        public boolean getRCS()
+        {
+            return (ActionGroups & (1<<(1)))!=0;
+        }
+        /**
+         * Get Light state.         *
+         * @return True if light is on
+         */
+        public boolean getLight()
+        {
+            return (ActionGroups & (1<<(2)))!=0;
+        }
+        /**
+         * Get gears state.         *
+         * @return True if gears extracted
+         */
+        public boolean getGears()
+        {
+            return (ActionGroups & (1<<(3)))!=0;
+        }
+        /**
+         * Get brakes state.         *
+         * @return True if brakes are on
+         */
+        public boolean getBrakes()
+        {
+            return (ActionGroups & (1<<(4)))!=0;
+        }
+        /**
+         * Get abort state.         *
+         * @return True on abort
+         */
+        public boolean getAbort()
+        {
+            return (ActionGroups & (1<<(5)))!=0;
+        }
+
+        //Pool handling, see VesselDataPool
+        private VesselDataPool pool = null;
+        private int refs = 0;
+
+        //Wrapper of the last decoded byte array, reused as long as the array does not change
+        private ByteBuffer wrapper = null;
+
+        /**
+         * Keep VesselData from a VesselDataPool beyond the listener callback.
+         * Every retain() has to be followed by a release().
+         * Does nothing if the VesselData is not part of a pool.
+         */
+        public void retain()
+        {
+            if(pool != null) pool.retain(this);
+        }
+
+        /**
+         * Give VesselData back to its VesselDataPool.
+         * The object must not be used after the last reference was released.
+         * Does nothing if the VesselData is not part of a pool.
+         */
+        public void release()
+        {
+            if(pool != null) pool.release(this);
+        }
+
+        /**
+         * Convert byte array starting with packet ID to VesselData object.
+         *
+         * @param packet Data array
+         * @return VesselData
+         * @throws PacketException Packet read error
+         */
+        public static VesselData fromPacket(byte[] packet) throws PacketException
+        {
+            VesselData VDP = new VesselData();
+            decodeInto(packet, 0, packet.length, VDP);
+            return VDP;
+        }
+
+        /**
+         * Decode packet into an existing VesselData object.
+         * Header and checksum are validated in place, no data is copied and nothing is allocated
+         * as long as the same buffer is decoded into the same target.
+         *
+         * @param buf Buffer containing the packet
+         * @param off Offset of the packet header
+         * @param len Packet length
+         * @param target VesselData to fill
+         * @throws PacketException Packet read error, target is left unchanged
+         */
+        public static void decodeInto(byte[] buf, int off, int len, VesselData target) throws PacketException
+        {
+            ByteBuffer b = target.wrapper;
+            if(b == null || b.array() != buf)
+            {
+                b = ByteBuffer.wrap(buf).order(ByteOrder.LITTLE_ENDIAN);
+                target.wrapper = b;
+            }
+            decodeInto(b, off, len, target);
+        }
+
+        /**
+         * Decode packet into an existing VesselData object.
+         * All fields are read with absolute getters, the buffer position is not changed.
+         *
+         * @param buf Little endian buffer containing the packet
+         * @param off Offset of the packet header
+         * @param len Packet length
+         * @param target VesselData to fill
+         * @throws PacketException Packet read error, target is left unchanged
+         */
+        public static void decodeInto(ByteBuffer buf, int off, int len, VesselData target) throws PacketException
+        {
+            if(checkPacket(buf, off, len) < PayloadSize) throw new PacketException("Payload too short!", PacketException.Reason.Length);
+            int p = off+3;
+            VesselData VDP = target;
+
+            VDP.id = (short)(buf.get(p+OFF_id)&0xFF);
+            VDP.AP = buf.getFloat(p+OFF_AP);
+            VDP.PE = buf.getFloat(p+OFF_PE);
+            VDP.SemiMajorAxis = buf.getFloat(p+OFF_SemiMajorAxis);
+            VDP.SemiMinorAxis = buf.getFloat(p+OFF_SemiMinorAxis);
+            VDP.VVI = buf.getFloat(p+OFF_VVI);
+            VDP.e = buf.getFloat(p+OFF_e);
+            VDP.inc = buf.getFloat(p+OFF_inc);
+            VDP.G = buf.getFloat(p+OFF_G);
+            VDP.TAp = buf.getInt(p+OFF_TAp);
+            VDP.TPe = buf.getInt(p+OFF_TPe);
+            VDP.TrueAnomaly = buf.getFloat(p+OFF_TrueAnomaly);
+            VDP.Density = buf.getFloat(p+OFF_Density);
+            VDP.period = buf.getInt(p+OFF_period);
+            VDP.RAlt = buf.getFloat(p+OFF_RAlt);
+            VDP.Alt = buf.getFloat(p+OFF_Alt);
+            VDP.Vsurf = buf.getFloat(p+OFF_Vsurf);
+            VDP.Lat = buf.getFloat(p+OFF_Lat);
+            VDP.Lon = buf.getFloat(p+OFF_Lon);
+            VDP.LiquidFuelTot = buf.getFloat(p+OFF_LiquidFuelTot);
+            VDP.LiquidFuel = buf.getFloat(p+OFF_LiquidFuel);
+            VDP.OxidizerTot = buf.getFloat(p+OFF_OxidizerTot);
+            VDP.Oxidizer = buf.getFloat(p+OFF_Oxidizer);
+            VDP.EChargeTot = buf.getFloat(p+OFF_EChargeTot);
+            VDP.ECharge = buf.getFloat(p+OFF_ECharge);
+            VDP.MonoPropTot = buf.getFloat(p+OFF_MonoPropTot);
+            VDP.MonoProp = buf.getFloat(p+OFF_MonoProp);
+            VDP.IntakeAirTot = buf.getFloat(p+OFF_IntakeAirTot);
+            VDP.IntakeAir = buf.getFloat(p+OFF_IntakeAir);
+            VDP.SolidFuelTot = buf.getFloat(p+OFF_SolidFuelTot);
+            VDP.SolidFuel = buf.getFloat(p+OFF_SolidFuel);
+            VDP.XenonGasTot = buf.getFloat(p+OFF_XenonGasTot);
+            VDP.XenonGas = buf.getFloat(p+OFF_XenonGas);
+            VDP.LiquidFuelTotS = buf.getFloat(p+OFF_LiquidFuelTotS);
+            VDP.LiquidFuelS = buf.getFloat(p+OFF_LiquidFuelS);
+            VDP.OxidizerTotS = buf.getFloat(p+OFF_OxidizerTotS);
+            VDP.OxidizerS = buf.getFloat(p+OFF_OxidizerS);
+            VDP.MissionTime = buf.getInt(p+OFF_MissionTime)&0xFFFFFFFFL;
+            VDP.deltaTime = buf.getFloat(p+OFF_deltaTime);
+            VDP.VOrbit = buf.getFloat(p+OFF_VOrbit);
+            VDP.MNTime = buf.getInt(p+OFF_MNTime)&0xFFFFFFFFL;
+            VDP.MNDeltaV = buf.getFloat(p+OFF_MNDeltaV);
+            VDP.Pitch = buf.getShort(p+OFF_Pitch)&0xFFFF;
+            VDP.Roll = buf.getShort(p+OFF_Roll)&0xFFFF;
+            VDP.Heading = buf.getShort(p+OFF_Heading)&0xFFFF;
+            VDP.ActionGroups = buf.getShort(p+OFF_ActionGroups)&0xFFFF;
+            VDP.SOINumber = (short)(buf.get(p+OFF_SOINumber)&0xFF);
+            VDP.MaxOverHeat = (short)(buf.get(p+OFF_MaxOverHeat)&0xFF);
+            VDP.MachNumber = buf.getFloat(p+OFF_MachNumber);
+            VDP.IAS = buf.getFloat(p+OFF_IAS);
+            VDP.CurrentStage = (short)(buf.get(p+OFF_CurrentStage)&0xFF);
+            VDP.TotalStage = (short)(buf.get(p+OFF_TotalStage)&0xFF);
+            VDP.TargetDist = buf.getFloat(p+OFF_TargetDist);
+            VDP.TargetV = buf.getFloat(p+OFF_TargetV);
+            VDP.NavballSASMode = (short)(buf.get(p+OFF_NavballSASMode)&0xFF);
+            VDP.ProgradePitch = buf.getShort(p+OFF_ProgradePitch)&0xFFFF;
+            VDP.ProgradeHeading = buf.getShort(p+OFF_ProgradeHeading)&0xFFFF;
+            VDP.ManeuverPitch = buf.getShort(p+OFF_ManeuverPitch)&0xFFFF;
+            VDP.ManeuverHeading = buf.getShort(p+OFF_ManeuverHeading)&0xFFFF;
+            VDP.TargetPitch = buf.getShort(p+OFF_TargetPitch)&0xFFFF;
+            VDP.TargetHeading = buf.getShort(p+OFF_TargetHeading)&0xFFFF;
+            VDP.NormalHeading = buf.getShort(p+OFF_NormalHeading)&0xFFFF;
+            VDP.vesselSync = (short)(buf.get(p+OFF_vesselSync)&0xFF);
+        }
+
+        /**
+         * Compare with the previous VesselData.
+         * Floats are compared by their bit pattern, so NaN equals NaN and 0.0 differs from -0.0.
+         *
+         * @param previous Previous VesselData or null
+         * @return Change mask with a MASK_ bit set for every changed field, MASK_ALL if previous is null
+         */
+        public long changedFields(VesselData previous)
+        {
+            if(previous == null) return MASK_ALL;
+            long m = 0;
+            if(id != previous.id) m |= MASK_id;
+            if(Float.floatToIntBits(AP) != Float.floatToIntBits(previous.AP)) m |= MASK_AP;
+            if(Float.floatToIntBits(PE) != Float.floatToIntBits(previous.PE)) m |= MASK_PE;
+            if(Float.floatToIntBits(SemiMajorAxis) != Float.floatToIntBits(previous.SemiMajorAxis)) m |= MASK_SemiMajorAxis;
+            if(Float.floatToIntBits(SemiMinorAxis) != Float.floatToIntBits(previous.SemiMinorAxis)) m |= MASK_SemiMinorAxis;
+            if(Float.floatToIntBits(VVI) != Float.floatToIntBits(previous.VVI)) m |= MASK_VVI;
+            if(Float.floatToIntBits(e) != Float.floatToIntBits(previous.e)) m |= MASK_e;
+            if(Float.floatToIntBits(inc) != Float.floatToIntBits(previous.inc)) m |= MASK_inc;
+            if(Float.floatToIntBits(G) != Float.floatToIntBits(previous.G)) m |= MASK_G;
+            if(TAp != previous.TAp) m |= MASK_TAp;
+            if(TPe != previous.TPe) m |= MASK_TPe;
+            if(Float.floatToIntBits(TrueAnomaly) != Float.floatToIntBits(previous.TrueAnomaly)) m |= MASK_TrueAnomaly;
+            if(Float.floatToIntBits(Density) != Float.floatToIntBits(previous.Density)) m |= MASK_Density;
+            if(period != previous.period) m |= MASK_period;
+            if(Float.floatToIntBits(RAlt) != Float.floatToIntBits(previous.RAlt)) m |= MASK_RAlt;
+            if(Float.floatToIntBits(Alt) != Float.floatToIntBits(previous.Alt)) m |= MASK_Alt;
+            if(Float.floatToIntBits(Vsurf) != Float.floatToIntBits(previous.Vsurf)) m |= MASK_Vsurf;
+            if(Float.floatToIntBits(Lat) != Float.floatToIntBits(previous.Lat)) m |= MASK_Lat;
+            if(Float.floatToIntBits(Lon) != Float.floatToIntBits(previous.Lon)) m |= MASK_Lon;
+            if(Float.floatToIntBits(LiquidFuelTot) != Float.floatToIntBits(previous.LiquidFuelTot)) m |= MASK_LiquidFuelTot;
+            if(Float.floatToIntBits(LiquidFuel) != Float.floatToIntBits(previous.LiquidFuel)) m |= MASK_LiquidFuel;
+            if(Float.floatToIntBits(OxidizerTot) != Float.floatToIntBits(previous.OxidizerTot)) m |= MASK_OxidizerTot;
+            if(Float.floatToIntBits(Oxidizer) != Float.floatToIntBits(previous.Oxidizer)) m |= MASK_Oxidizer;
+            if(Float.floatToIntBits(EChargeTot) != Float.floatToIntBits(previous.EChargeTot)) m |= MASK_EChargeTot;
+            if(Float.floatToIntBits(ECharge) != Float.floatToIntBits(previous.ECharge)) m |= MASK_ECharge;
+            if(Float.floatToIntBits(MonoPropTot) != Float.floatToIntBits(previous.MonoPropTot)) m |= MASK_MonoPropTot;
+            if(Float.floatToIntBits(MonoProp) != Float.floatToIntBits(previous.MonoProp)) m |= MASK_MonoProp;
+            if(Float.floatToIntBits(IntakeAirTot) != Float.floatToIntBits(previous.IntakeAirTot)) m |= MASK_IntakeAirTot;
+            if(Float.floatToIntBits(IntakeAir) != Float.floatToIntBits(previous.IntakeAir)) m |= MASK_IntakeAir;
+            if(Float.floatToIntBits(SolidFuelTot) != Float.floatToIntBits(previous.SolidFuelTot)) m |= MASK_SolidFuelTot;
+            if(Float.floatToIntBits(SolidFuel) != Float.floatToIntBits(previous.SolidFuel)) m |= MASK_SolidFuel;
+            if(Float.floatToIntBits(XenonGasTot) != Float.floatToIntBits(previous.XenonGasTot)) m |= MASK_XenonGasTot;
+            if(Float.floatToIntBits(XenonGas) != Float.floatToIntBits(previous.XenonGas)) m |= MASK_XenonGas;
+            if(Float.floatToIntBits(LiquidFuelTotS) != Float.floatToIntBits(previous.LiquidFuelTotS)) m |= MASK_LiquidFuelTotS;
+            if(Float.floatToIntBits(LiquidFuelS) != Float.floatToIntBits(previous.LiquidFuelS)) m |= MASK_LiquidFuelS;
+            if(Float.floatToIntBits(OxidizerTotS) != Float.floatToIntBits(previous.OxidizerTotS)) m |= MASK_OxidizerTotS;
+            if(Float.floatToIntBits(OxidizerS) != Float.floatToIntBits(previous.OxidizerS)) m |= MASK_OxidizerS;
+            if(MissionTime != previous.MissionTime) m |= MASK_MissionTime;
+            if(Float.floatToIntBits(deltaTime) != Float.floatToIntBits(previous.deltaTime)) m |= MASK_deltaTime;
+            if(Float.floatToIntBits(VOrbit) != Float.floatToIntBits(previous.VOrbit)) m |= MASK_VOrbit;
+            if(MNTime != previous.MNTime) m |= MASK_MNTime;
+            if(Float.floatToIntBits(MNDeltaV) != Float.floatToIntBits(previous.MNDeltaV)) m |= MASK_MNDeltaV;
+            if(Pitch != previous.Pitch) m |= MASK_Pitch;
+            if(Roll != previous.Roll) m |= MASK_Roll;
+            if(Heading != previous.Heading) m |= MASK_Heading;
+            if(ActionGroups != previous.ActionGroups) m |= MASK_ActionGroups;
+            if(SOINumber != previous.SOINumber) m |= MASK_SOINumber;
+            if(MaxOverHeat != previous.MaxOverHeat) m |= MASK_MaxOverHeat;
+            if(Float.floatToIntBits(MachNumber) != Float.floatToIntBits(previous.MachNumber)) m |= MASK_MachNumber;
+            if(Float.floatToIntBits(IAS) != Float.floatToIntBits(previous.IAS)) m |= MASK_IAS;
+            if(CurrentStage != previous.CurrentStage) m |= MASK_CurrentStage;
+            if(TotalStage != previous.TotalStage) m |= MASK_TotalStage;
+            if(Float.floatToIntBits(TargetDist) != Float.floatToIntBits(previous.TargetDist)) m |= MASK_TargetDist;
+            if(Float.floatToIntBits(TargetV) != Float.floatToIntBits(previous.TargetV)) m |= MASK_TargetV;
+            if(NavballSASMode != previous.NavballSASMode) m |= MASK_NavballSASMode;
+            if(ProgradePitch != previous.ProgradePitch) m |= MASK_ProgradePitch;
+            if(ProgradeHeading != previous.ProgradeHeading) m |= MASK_ProgradeHeading;
+            if(ManeuverPitch != previous.ManeuverPitch) m |= MASK_ManeuverPitch;
+            if(ManeuverHeading != previous.ManeuverHeading) m |= MASK_ManeuverHeading;
+            if(TargetPitch != previous.TargetPitch) m |= MASK_TargetPitch;
+            if(TargetHeading != previous.TargetHeading) m |= MASK_TargetHeading;
+            if(NormalHeading != previous.NormalHeading) m |= MASK_NormalHeading;
+            if(vesselSync != previous.vesselSync) m |= MASK_vesselSync;
+            return m;
+        }
+
+        /**
+         * Convert VesselData to byte array.
+         *
+         * @return Data byte array
+         * @throws PacketException Packet write error
+         */
+        public byte[] toPacket() throws PacketException
+        {
+            byte[] packet = new byte[PayloadSize+4];
+            encodeTo(ByteBuffer.wrap(packet));
+            return packet;
+        }
+
+        /**
+         * Write VesselData packet at the current buffer position and advance the position.
+         * The byte order of the buffer is set to little endian.
+         *
+         * @param buf Target buffer
+         * @throws PacketException Not enough space in buffer
+         */
+        public void encodeTo(ByteBuffer buf) throws PacketException
+        {
+            ByteBuffer b = startPacket(buf, PayloadSize);
+            int p = b.position()+3;
+
+            b.put(p+OFF_id, (byte)id);
+            b.putFloat(p+OFF_AP, AP);
+            b.putFloat(p+OFF_PE, PE);
+            b.putFloat(p+OFF_SemiMajorAxis, SemiMajorAxis);
+            b.putFloat(p+OFF_SemiMinorAxis, SemiMinorAxis);
+            b.putFloat(p+OFF_VVI, VVI);
+            b.putFloat(p+OFF_e, e);
+            b.putFloat(p+OFF_inc, inc);
+            b.putFloat(p+OFF_G, G);
+            b.putInt(p+OFF_TAp, TAp);
+            b.putInt(p+OFF_TPe, TPe);
+            b.putFloat(p+OFF_TrueAnomaly, TrueAnomaly);
+            b.putFloat(p+OFF_Density, Density);
+            b.putInt(p+OFF_period, period);
+            b.putFloat(p+OFF_RAlt, RAlt);
+            b.putFloat(p+OFF_Alt, Alt);
+            b.putFloat(p+OFF_Vsurf, Vsurf);
+            b.putFloat(p+OFF_Lat, Lat);
+            b.putFloat(p+OFF_Lon, Lon);
+            b.putFloat(p+OFF_LiquidFuelTot, LiquidFuelTot);
+            b.putFloat(p+OFF_LiquidFuel, LiquidFuel);
+            b.putFloat(p+OFF_OxidizerTot, OxidizerTot);
+            b.putFloat(p+OFF_Oxidizer, Oxidizer);
+            b.putFloat(p+OFF_EChargeTot, EChargeTot);
+            b.putFloat(p+OFF_ECharge, ECharge);
+            b.putFloat(p+OFF_MonoPropTot, MonoPropTot);
+            b.putFloat(p+OFF_MonoProp, MonoProp);
+            b.putFloat(p+OFF_IntakeAirTot, IntakeAirTot);
+            b.putFloat(p+OFF_IntakeAir, IntakeAir);
+            b.putFloat(p+OFF_SolidFuelTot, SolidFuelTot);
+            b.putFloat(p+OFF_SolidFuel, SolidFuel);
+            b.putFloat(p+OFF_XenonGasTot, XenonGasTot);
+            b.putFloat(p+OFF_XenonGas, XenonGas);
+            b.putFloat(p+OFF_LiquidFuelTotS, LiquidFuelTotS);
+            b.putFloat(p+OFF_LiquidFuelS, LiquidFuelS);
+            b.putFloat(p+OFF_OxidizerTotS, OxidizerTotS);
+            b.putFloat(p+OFF_OxidizerS, OxidizerS);
+            b.putInt(p+OFF_MissionTime, (int)MissionTime);
+            b.putFloat(p+OFF_deltaTime, deltaTime);
+            b.putFloat(p+OFF_VOrbit, VOrbit);
+            b.putInt(p+OFF_MNTime, (int)MNTime);
+            b.putFloat(p+OFF_MNDeltaV, MNDeltaV);
+            b.putShort(p+OFF_Pitch, (short)Pitch);
+            b.putShort(p+OFF_Roll, (short)Roll);
+            b.putShort(p+OFF_Heading, (short)Heading);
+            b.putShort(p+OFF_ActionGroups, (short)ActionGroups);
+            b.put(p+OFF_SOINumber, (byte)SOINumber);
+            b.put(p+OFF_MaxOverHeat, (byte)MaxOverHeat);
+            b.putFloat(p+OFF_MachNumber, MachNumber);
+            b.putFloat(p+OFF_IAS, IAS);
+            b.put(p+OFF_CurrentStage, (byte)CurrentStage);
+            b.put(p+OFF_TotalStage, (byte)TotalStage);
+            b.putFloat(p+OFF_TargetDist, TargetDist);
+            b.putFloat(p+OFF_TargetV, TargetV);
+            b.put(p+OFF_NavballSASMode, (byte)NavballSASMode);
+            b.putShort(p+OFF_ProgradePitch, (short)ProgradePitch);
+            b.putShort(p+OFF_ProgradeHeading, (short)ProgradeHeading);
+            b.putShort(p+OFF_ManeuverPitch, (short)ManeuverPitch);
+            b.putShort(p+OFF_ManeuverHeading, (short)ManeuverHeading);
+            b.putShort(p+OFF_TargetPitch, (short)TargetPitch);
+            b.putShort(p+OFF_TargetHeading, (short)TargetHeading);
+            b.putShort(p+OFF_NormalHeading, (short)NormalHeading);
+            b.put(p+OFF_vesselSync, (byte)vesselSync);
+
+            finishPacket(b, PayloadSize);
+        }
+
+        /**
+         * Convert to String.
+         * TODO VesselData.toString not implemented yet. Do if very bored some time.
+         *
+         * @return String representing the VesselData
+         */
+        public String toString()
+        {
+        	String str = "VDP{"+"}";
+        	return str;
+        }
+    }
+
+    /**
+     * Get the packet id from packet data array.
+     * @param packet Packet data
+     * @return Packet ID or -1
+     */
+    public static int getPacketID(byte[] packet)
+    {
+        return getPacketID(packet, 0, packet.length);
+    }
+
+    /**
+     * Get the packet id of a packet inside a buffer.
+     * @param buf Buffer containing the packet
+     * @param off Offset of the packet header
+     * @param len Packet length
+     * @return Packet ID or -1
+     */
+    public static int getPacketID(byte[] buf, int off, int len)
+    {
+        if(len<4) return -1;
+        return buf[off+3];
+    }
+
+    /**
+     * Bidirectional handshake data.
+     * Also contains the InetAddress of the sender.
+     */
+    public static class HandshakePacket
+    {
+        public short id = HSPid;
+        public short M1;
+        public short M2;
+        public short state;
+
+        //Wrapper for the sender InetAddress, has to be set manually after receive
+        //TODO Set InetAddress in contructor
+        public InetAddress sender = null;
+
+        //Payload layout
+        private static final int OFF_id = 0, OFF_M1 = 1, OFF_M2 = 2, OFF_state = 3;
+        public static final int PayloadSize = 4;
+
+        /**
+         * Convert byte array starting with packet ID to VesselData object.
+         *
+         * @param packet Data array
+         * @return HandshakePacket
+         * @throws PacketException Packet read error
+         */
+        public static HandshakePacket fromPacket(byte[] packet) throws PacketException
+        {
+            return fromPacket(ByteBuffer.wrap(packet).order(ByteOrder.LITTLE_ENDIAN), 0, packet.length);
+        }
+
+        /**
+         * Convert packet in buffer to HandshakePacket object.
+         *
+         * @param buf Little endian buffer containing the packet
+         * @param off Offset of the packet header
+         * @param len Packet length
+         * @return HandshakePacket
+         * @throws PacketException Packet read error
+         */
+        public static HandshakePacket fromPacket(ByteBuffer buf, int off, int len) throws PacketException
+        {
+            if(checkPacket(buf, off, len) < PayloadSize) throw new PacketException("Payload too short!", PacketException.Reason.Length);
+            int p = off+3;
+            HandshakePacket HP = new HandshakePacket();
+            HP.id = (short)(buf.get(p+OFF_id)&0xFF);
+            HP.M1 = (short)(buf.get(p+OFF_M1)&0xFF);
+            HP.M2 = (short)(buf.get(p+OFF_M2)&0xFF);
+            HP.state = (short)(buf.get(p+OFF_state)&0xFF);
+            return HP;
+        }
+
+        /**
+         * Convert HandshakePacket to byte array.
+         *
+         * @return Data byte array
+         * @throws PacketException Packet write error
+         */
+        public byte[] toPacket() throws PacketException
+        {
+            byte[] packet = new byte[PayloadSize+4];
+            encodeTo(ByteBuffer.wrap(packet));
+            return packet;
+        }
+
+        /**
+         * Write HandshakePacket at the current buffer position and advance the position.
+         * The byte order of the buffer is set to little endian.
+         *
+         * @param buf Target buffer
+         * @throws PacketException Not enough space in buffer
+         */
+        public void encodeTo(ByteBuffer buf) throws PacketException
+        {
+            ByteBuffer b = startPacket(buf, PayloadSize);
+            int p = b.position()+3;
+            b.put(p+OFF_id, (byte)id);
+            b.put(p+OFF_M1, (byte)M1);
+            b.put(p+OFF_M2, (byte)M2);
+            b.put(p+OFF_state, (byte)state);
+            finishPacket(b, PayloadSize);
+        }
+
+        /**
+         * Convert to String.
+         *
+         * @return String representing the HandshakePacket
+         */
+        public String toString()
+        {
+        	String str = "HP{"+M1+","+M2+","+ state +"}";
+        	return str;
+        }
+
+        /**
+         * Get the host state.
+         * @return Host state
+         */
+        public HostState getState()
+        {
+            switch(state)
+            {
+                case 1:
+                    return HostState.InFlight;
+                case 2:
+                    return HostState.NotInFlight;
+                default:
+                    return HostState.Undefined;
+            }
+        }
+    }
+
+    /**
+     * Unidirectional state data.
+     * Contains current host state.
+     */
+    public static class StatusPacket
+    {
+        public short id = SPid;
+        public short state;
+
+        //Payload layout
+        private static final int OFF_id = 0, OFF_state = 1;
+        public static final int PayloadSize = 2;
+
+        /**
+         * Convert byte array starting with packet ID to VesselData object.
+         *
+         * @param packet Data array
+         * @return StatusPacket
+         * @throws PacketException Packet read error
+         */
+        public static StatusPacket fromPacket(byte[] packet) throws PacketException
+        {
+            return fromPacket(ByteBuffer.wrap(packet).order(ByteOrder.LITTLE_ENDIAN), 0, packet.length);
+        }
+
+        /**
+         * Convert packet in buffer to StatusPacket object.
+         *
+         * @param buf Little endian buffer containing the packet
+         * @param off Offset of the packet header
+         * @param len Packet length
+         * @return StatusPacket
+         * @throws PacketException Packet read error
+         */
+        public static StatusPacket fromPacket(ByteBuffer buf, int off, int len) throws PacketException
+        {
+            if(checkPacket(buf, off, len) < PayloadSize) throw new PacketException("Payload too short!", PacketException.Reason.Length);
+            int p = off+3;
+            StatusPacket SP = new StatusPacket();
+            SP.id = (short)(buf.get(p+OFF_id)&0xFF);
+            SP.state = (short)(buf.get(p+OFF_state)&0xFF);
+            return SP;
+        }
+
+        /**
+         * Convert StatusPacket to byte array.
+         *
+         * @return Data byte array
+         * @throws PacketException Packet write error
+         */
+        public byte[] toPacket() throws PacketException
+        {
+            byte[] packet = new byte[PayloadSize+4];
+            encodeTo(ByteBuffer.wrap(packet));
+            return packet;
+        }
+
+        /**
+         * Write StatusPacket at the current buffer position and advance the position.
+         * The byte order of the buffer is set to little endian.
+         *
+         * @param buf Target buffer
+         * @throws PacketException Not enough space in buffer
+         */
+        public void encodeTo(ByteBuffer buf) throws PacketException
+        {
+            ByteBuffer b = startPacket(buf, PayloadSize);
+            int p = b.position()+3;
+            b.put(p+OFF_id, (byte)id);
+            b.put(p+OFF_state, (byte)state);
+            finishPacket(b, PayloadSize);
+        }
+
+        /**
+         * Convert to String.
+         *
+         * @return String representing the StatusPacket
+         */
+        public String toString()
+        {
+            String str = "SP{"+ state +"}";
+            return str;
+        }
+
+        /**
+         * Get the host state.
+         * @return Host state
+         */
+        public HostState getState()
+        {
+            switch(state)
+            {
+                case 1:
+                    return HostState.InFlight;
+                case 2:
+                    return HostState.NotInFlight;
+                default:
+                    return HostState.Undefined;
+            }
+        }
+    }
+
+    /**
+     * Unidirectional data from client to KSPEthernetIO.
+     */
+    public static class ControlPacket
+    {
+        public short id = CPid;
+        public short MainControls;                      //SAS RCS Lights Gear Brakes Precision Abort Stage
+        public short Mode;                              //0 = stage, 1 = docking, 2 = map (Bit 0-3)
+                                                        //Camera Mode 0:Auto 1:Free 2:Orbital 3:Chase 4:Locked (Bit 4-7)
+        public boolean[] ControlGroup = new boolean[16];//control groups 1-10 in 2 bytes
+        public short NavballSASMode;                    //AutoPilot mode (See above for AutoPilot modes)(Ignored if the equal to zero or out of bounds (>10)) //Navball mode
+        public short AdditionalControlByte1;            //Bit 0: Open Menu
+        public short Pitch;                             //-1000 -> 1000
+        public short Roll;                              //-1000 -> 1000
+        public short Yaw;                               //-1000 -> 1000
+        public short TX;                                //-1000 -> 1000
+        public short TY;                                //-1000 -> 1000
+        public short TZ;                                //-1000 -> 1000
+        public short WheelSteer;                        //-1000 -> 1000
+        public short Throttle;                          // 0 -> 1000
+        public short WheelThrottle;                     // 0 -> 1000
+        public short vesselSync;                        // Mirror from host to control active vessel
+
+        //Payload layout
+        private static final int
+                OFF_id = 0,
+                OFF_MainControls = 1,
+                OFF_Mode = 2,
+                OFF_ControlGroup = 3,
+                OFF_NavballSASMode = 5,
+                OFF_AdditionalControlByte1 = 6,
+                OFF_Pitch = 7,
+                OFF_Roll = 9,
+                OFF_Yaw = 11,
+                OFF_TX = 13,
+                OFF_TY = 15,
+                OFF_TZ = 17,
+                OFF_WheelSteer = 19,
+                OFF_Throttle = 21,
+                OFF_WheelThrottle = 23,
+                OFF_vesselSync = 25;
+        public static final int PayloadSize = 26;
+        //MainControls bits that trigger a one-shot action: Abort Stage
+        private static final int TRIGGER_BITS = 0b11;
+
+        private volatile ChangeListener changeListener = null;
+
+        /**
+         * ControlPacket change listener.
+         * Called on the thread that modified the packet.
+         */
+        public interface ChangeListener
+        {
+            void onControlPacketChanged(ControlPacket packet);
+        }
+
+        /**
+         * Set listener that is called whenever a setter modified the packet.
+         *
+         * @param l ChangeListener or null
+         */
+        public void setChangeListener(ChangeListener l)
+        {
+            changeListener = l;
+        }
+
+        /**
+         * Notify the change listener.
+         * Called by all setters, call it after writing a field directly.
+         */
+        public void changed()
+        {
+            ChangeListener l = changeListener;
+            if(l != null) l.onControlPacketChanged(this);
+        }
+
+
+        /**
+         * Synchronize some data after a vessel change.
+         * Sets vesselSync value.
+         * Has to be called after vessel change to control new vessel.
+         * @param data Data received from the new vessel
+         */
+        public void syncNewVessel(VesselData data)
+        {
+            for(int i=0;i<10;i++)
+                setActionGroup(i, data.getActionGroup(i));
+            setLight(data.getLight());
+            setGears(data.getGears());
+            setBrakes(data.getBrakes());
+            setRCS(data.getRCS());
+            setSAS(data.getSAS());
+            setSASMode(data.getSASMode());
+
+            AdditionalControlByte1 = 0;
+            Mode = 0;
+
+            vesselSync = data.vesselSync;
+            changed();
+        }
+
+        /**
+         * Force to resync the control data after next vessel change.
+         * Is calles on flight end or connection loss.
+         */
+        public void forceResync()
+        {
+            vesselSync = 0;
+            changed();
+        }
+
+        /**
+         * Check if active vessel has changed since last call of syncNewVessel()
+         * @param data Current vessel data
+         * @return True if active vessel has changed since last syncNewVessel()
+         */
+        public boolean hasVesselChanged(VesselData data)
+        {
+            return vesselSync != data.vesselSync;
+        }
+
+        /**
+         * Toggle Map view
+         */
+        public void toggleMap()
+        {
+            AdditionalControlByte1^=0b00000010;
+            changed();
+        }
+
+        /**
+         * Toggle Menu
+         */
+        public void toggleMenu()
+        {
+            AdditionalControlByte1^=0b00000001;
+            changed();
+        }
+
+        /**
+         * Set camera mode.
+         *
+         * @param m CamMode enum
+         */
+        public void setCamMode(CamMode m)
+        {
+            Mode &= 0b1111;
+            switch(m)
+            {
+                case Auto:
+                    Mode|=0<<4;
+                    break;
+                case Free:
+                    Mode|=1<<4;
+                    break;
+                case Orbital:
+                    Mode|=2<<4;
+                    break;
+                case Chase:
+                    Mode|=3<<4;
+                    break;
+                case Locked:
+                    Mode|=4<<4;
+                    break;
+                default:
+                    break;
+            }
+            changed();
+        }
+
+        /**
+         * Rotate through all camera modes.
+         */
+        public void rotateCamMode()
+        {
+            int tmp = (Mode & ~0b1111)>>4;
+            Mode&=0b1111;
+            tmp++;
+            if(tmp>4) tmp=0;
+            Mode|=tmp<<4;
+            changed();
+        }
+
+        /**
+         * Set UI mode.
+         *
+         * @param m UiMode enum
+         */
+        public void setUiMode(UiMode m)
+        {
+            Mode &= ~0b1111;
+            switch(m)
+            {
+                case Stage:
+                    Mode|=0;
+                    break;
+                case Docking:
+                    Mode|=1;
+                    break;
+                case Map:
+                    Mode|=2;
+                    break;
+                default:
+                    break;
+            }
+            changed();
+        }
+
+        /**
+         * Rotate through all Ui modes
+         */
+        public void rotateUiMode()
+        {
+            int tmp = Mode & 0b1111;
+            Mode&=~0b1111;
+            tmp++;
+            if(tmp>2) tmp=0;
+            Mode|=tmp;
+            changed();
+        }
+
+        /**
+         * Set Navball mode.
+         *
+         * @param m NavballMode enum
+         */
+        public void setNavballMode(NavballMode m)
+        {
+            NavballSASMode&=~0b11110000;
+            switch(m)
+            {
+                case Orbit:
+                    NavballSASMode |= (1<<4);
+                    break;
+                case Surface:
+                    NavballSASMode |= (2<<4);
+                    break;
+                case Target:
+                    NavballSASMode |= (3<<4);
+                    break;
+                case Ignore:
+                default:
+                    break;
+            }
+            changed();
+        }
+
+        /**
+         * Rotate through Navball mode.
+         * Enter Target mode only if target is set.
+         *
+         * @param isTargetSet True to enable enter target mode
+         */
+        public void rotateNavballMode(boolean isTargetSet)
+        {
+            int curMode = (NavballSASMode&0b11110000)>>4;
+            if(curMode==0 || curMode==1) setNavballMode(NavballMode.Surface); // is in Orbit
+            else if(curMode == 2 && isTargetSet) setNavballMode(NavballMode.Target); // is in Surface
+            else setNavballMode(NavballMode.Orbit); // is in Surface or Target
+        }
+
+        /**
+         * Set SAS mode.
+         *
+         * @param m SAS mode enum
+         */
+        public void setSASMode(SASMode m)
+        {
+            NavballSASMode&=~0b1111;
+            switch(m)
+            {
+                case Regular:
+                    NavballSASMode|=1;
+                    break;
+                case Prograde:
+                    NavballSASMode|=2;
+                    break;
+                case Retrograde:
+                    NavballSASMode|=3;
+                    break;
+                case Normal:
+                    NavballSASMode|=4;
+                    break;
+                case Antinormal:
+                    NavballSASMode|=5;
+                    break;
+                case RadialIn:
+                    NavballSASMode|=6;
+                    break;
+                case RadialOut:
+                    NavballSASMode|=7;
+                    break;
+                case Target:
+                    NavballSASMode|=8;
+                    break;
+                case AntiTarget:
+                    NavballSASMode|=9;
+                    break;
+                case Maneuver:
+                    NavballSASMode|=10;
+                    break;
+                case Off:
+                case Unknown:
+                default:
+                    break;
+            }
+            changed();
+        }
+
+        /**
+         * Set action group.
+         *
+         * @param n Action group 0-9
+         * @param b Activate/Deactivate
+         */
+        public void setActionGroup(int n, boolean b)
+        {
+            ControlGroup[n+1]=b;
+            changed();
+        }
+
+        /**
+         * Set SAS.
+         *
+         * @param b True to activate SAS
+         */
+        public void setSAS(boolean b)
+        {
+            setMainControls(1<<7, b);
+            changed();
+        }
+
+        /**
+         * Set RCS.
+         *
+         * @param b True to activate RCS
+         */
+        public void setRCS(boolean b)
+        {
+            setMainControls(1<<6, b);
+            changed();
+        }
+
+        /**
+         * Set light.
+         *
+         * @param b True to activate light
+         */
+        public void setLight(boolean b)
+        {
+            setMainControls(1<<5, b);
+            changed();
+        }
+
+        /**
+         * Set gears.
+         *
+         * @param b True to extract gears
+         */
+        public void setGears(boolean b)
+        {
+            setMainControls(1<<4, b);
+            changed();
+        }
+
+        /**
+         * Set brakes.
+         *
+         * @param b True to activate brakes
+         */
+        public void setBrakes(boolean b)
+        {
+            setMainControls(1<<3, b);
+            changed();
+        }
+
+        /**
+         * Set precision mode.
+         *
+         * @param b True to activate precision control mode
+         */
+        public void setPrecision(boolean b)
+        {
+            setMainControls(1<<2, b);
+            changed();
+        }
+
+        /**
+         * Trigger abort.
+         * Is automatically reset after next packet sent.
+         */
+        public void setAbort()
+        {
+            setMainControls(1<<1, true);
+            changed();
+        }
+
+        /**
+         * Trigger staging.
+         * Is automatically reset after next packet sent.
+         */
+        public void setStage()
+        {
+            setMainControls(1<<0, true);
+            changed();
+        }
+
+        /**
+         * Reset abort.
+         * The client resets only sent triggers with resetTriggers().
+         */
+        public void resetAbort()
+        {
+            setMainControls(1<<1, false);
+        }
+
+        /**
+         * Reset staging.
+         * The client resets only sent triggers with resetTriggers().
+         */
+        public void resetStage()
+        {
+            setMainControls(1<<0, false);
+        }
+
+        /**
+         * Reset abort and staging if they were set in a sent packet.
+         * A trigger set after the packet was encoded is kept for the next packet.
+         *
+         * @param packet Sent packet starting with the packet header
+         */
+        public void resetTriggers(byte[] packet)
+        {
+            setMainControls(packet[3+OFF_MainControls] & TRIGGER_BITS, false);
+        }
+
+        /**
+         * Set or clear MainControls bits.
+         * Synchronized with encodeTo(), the bits are modified from the UI thread while the packet is sent.
+         *
+         * @param mask Bits to modify
+         * @param b True to set, false to clear the bits
+         */
+        private synchronized void setMainControls(int mask, boolean b)
+        {
+            if(b) MainControls |= mask;
+            else MainControls &= ~mask;
+        }
+
+        /**
+         * Check if an encoded ControlPacket triggers abort or staging.
+         * Such a packet must be sent, it must not be replaced by a newer one.
+         *
+         * @param packet Packet starting with the packet header
+         * @return True if abort or stage is set
+         */
+        public static boolean hasTriggers(byte[] packet)
+        {
+            return (packet[3+OFF_MainControls] & TRIGGER_BITS) != 0;
+        }
+
+        /**
+         * Convert byte array starting with packet header to ControlPacket object.
+         *
+         * @param packet Data array
+         * @return ControlPacket
+         * @throws PacketException Packet read error
+         */
+        public static ControlPacket fromPacket(byte[] packet) throws PacketException
+        {
+            return fromPacket(ByteBuffer.wrap(packet).order(ByteOrder.LITTLE_ENDIAN), 0, packet.length);
+        }
+
+        /**
+         * Convert packet in buffer to ControlPacket object.
+         *
+         * @param buf Little endian buffer containing the packet
+         * @param off Offset of the packet header
+         * @param len Packet length
+         * @return ControlPacket
+         * @throws PacketException Packet read error
+         */
+        public static ControlPacket fromPacket(ByteBuffer buf, int off, int len) throws PacketException
+        {
+            if(checkPacket(buf, off, len) < PayloadSize) throw new PacketException("Payload too short!", PacketException.Reason.Length);
+            int p = off+3;
+            ControlPacket CP = new ControlPacket();
+            int cg = buf.getShort(p+OFF_ControlGroup)&0xFFFF;
+            for(int i=0; i<16; i++) CP.ControlGroup[i] = (cg & (1<<i)) != 0;
+            CP.id = (short)(buf.get(p+OFF_id)&0xFF);
+            CP.MainControls = (short)(buf.get(p+OFF_MainControls)&0xFF);
+            CP.Mode = (short)(buf.get(p+OFF_Mode)&0xFF);
+            CP.NavballSASMode = (short)(buf.get(p+OFF_NavballSASMode)&0xFF);
+            CP.AdditionalControlByte1 = (short)(buf.get(p+OFF_AdditionalControlByte1)&0xFF);
+            CP.Pitch = buf.getShort(p+OFF_Pitch);
+            CP.Roll = buf.getShort(p+OFF_Roll);
+            CP.Yaw = buf.getShort(p+OFF_Yaw);
+            CP.TX = buf.getShort(p+OFF_TX);
+            CP.TY = buf.getShort(p+OFF_TY);
+            CP.TZ = buf.getShort(p+OFF_TZ);
+            CP.WheelSteer = buf.getShort(p+OFF_WheelSteer);
+            CP.Throttle = buf.getShort(p+OFF_Throttle);
+            CP.WheelThrottle = buf.getShort(p+OFF_WheelThrottle);
+            CP.vesselSync = (short)(buf.get(p+OFF_vesselSync)&0xFF);
+            return CP;
+        }
+
+        /**
+         * Convert ControlPacket to byte array.
+         *
+         * @return Data byte array
+         * @throws PacketException Packet write error
+         */
+        public byte[] toPacket() throws PacketException
+        {
+            byte[] packet = new byte[PayloadSize+4];
+            encodeTo(ByteBuffer.wrap(packet));
+            return packet;
+        }
+
+        /**
+         * Write ControlPacket at the current buffer position and advance the position.
+         * The byte order of the buffer is set to little endian.
+         *
+         * @param buf Target buffer
+         * @throws PacketException Not enough space in buffer
+         */
+        public synchronized void encodeTo(ByteBuffer buf) throws PacketException
+        {
+            ByteBuffer b = startPacket(buf, PayloadSize);
+            int p = b.position()+3;
+            int cg = 0;
+            for(int i=0; i<16; i++) if(ControlGroup[i]) cg|=(1<<i);
+            b.put(p+OFF_id, (byte)id);
+            b.put(p+OFF_MainControls, (byte)MainControls);
+            b.put(p+OFF_Mode, (byte)Mode);
+            b.putShort(p+OFF_ControlGroup, (short)cg);
+            b.put(p+OFF_NavballSASMode, (byte)NavballSASMode);
+            b.put(p+OFF_AdditionalControlByte1, (byte)AdditionalControlByte1);
+            b.putShort(p+OFF_Pitch, Pitch);
+            b.putShort(p+OFF_Roll, Roll);
+            b.putShort(p+OFF_Yaw, Yaw);
+            b.putShort(p+OFF_TX, TX);
+            b.putShort(p+OFF_TY, TY);
+            b.putShort(p+OFF_TZ, TZ);
+            b.putShort(p+OFF_WheelSteer, WheelSteer);
+            b.putShort(p+OFF_Throttle, Throttle);
+            b.putShort(p+OFF_WheelThrottle, WheelThrottle);
+            b.put(p+OFF_vesselSync, (byte)vesselSync);
+            finishPacket(b, PayloadSize);
+        }
+
+        /**
+         * Convert to String.
+         *
+         * @return String representing the ControlPacket
+         */
+        public String toString()
+        {
+            int cg = 0;
+            for(int i=0; i<16; i++) if(ControlGroup[i]) cg|=(1<<i);
+            String str = "CP{"+Integer.toBinaryString(MainControls|0x100).substring(1)+","+Mode+","+
+                    Integer.toHexString(cg)+","+NavballSASMode+","+AdditionalControlByte1+","+
+                    Pitch+","+Roll+","+Yaw+","+TX+","+TY+","+TZ+","+WheelSteer+","+
+                    Throttle+","+WheelThrottle+","+vesselSync+"}";
+            return str;
+        }
+    }
+
+    /**
+     * Get payload of KSPEthernetIO data packet.
+     *
+     * Packet structure:
+     * Packet = [header][size][payload][checksum];
+     * Header = [Header1=0xBE][Header2=0xEF]
+     * size   = [payload.length (0-255)]
+     *
+     * @param packet Data packet
+     * @return Byte array with payload
+     * @throws PacketException Packet read error
+     */
+    public static byte[] getPayload(byte[] packet) throws PacketException
+    {
+        int size = checkPacket(packet, 0, packet.length);
+        byte[] payload = new byte[size];
+        System.arraycopy(packet, 3, payload, 0, size);
+        return payload;
+    }
+
+    /**
+     * Validate header and checksum of KSPEthernetIO data packet in place.
+     * The payload starts at off+3.
+     *
+     * @param packet Buffer containing the packet
+     * @param off Offset of the packet header
+     * @param len Packet length
+     * @return Payload length
+     * @throws PacketException Packet read error
+     */
+    public static int checkPacket(byte[] packet, int off, int len) throws PacketException
+    {
+    	if(len < 4) throw new PacketException("Packet too short!", PacketException.Reason.Length);
+    	if(len > 255+4) throw new PacketException("Packet too long!", PacketException.Reason.Length);
+    	if(packet[off]!=(byte)0xbe || packet[off+1]!=(byte)0xef) throw new PacketException("Wrong packet header!", PacketException.Reason.Header);
+
+        int size = len - 4;
+        byte checksum = (byte)size;
+        byte checksumReceived = packet[off+len-1];
+
+        for(int i=0; i<size; i++) checksum ^= packet[off+3+i];
+    	if(checksum != checksumReceived) throw new PacketException("Packet checksum error!", PacketException.Reason.Checksum);
+
+        return size;
+    }
+
+    /**
+     * Validate header and checksum of KSPEthernetIO data packet in place.
+     * The payload starts at off+3. The buffer position is not changed.
+     *
+     * @param buf Buffer containing the packet
+     * @param off Offset of the packet header
+     * @param len Packet length
+     * @return Payload length
+     * @throws PacketException Packet read error
+     */
+    public static int checkPacket(ByteBuffer buf, int off, int len) throws PacketException
+    {
+        if(buf.hasArray()) return checkPacket(buf.array(), buf.arrayOffset()+off, len);
+
+        if(len < 4) throw new PacketException("Packet too short!", PacketException.Reason.Length);
+        if(len > 255+4) throw new PacketException("Packet too long!", PacketException.Reason.Length);
+        if(buf.get(off)!=(byte)0xbe || buf.get(off+1)!=(byte)0xef) throw new PacketException("Wrong packet header!", PacketException.Reason.Header);
+
+        int size = len - 4;
+        byte checksum = (byte)size;
+        for(int i=0; i<size; i++) checksum ^= buf.get(off+3+i);
+        if(checksum != buf.get(off+len-1)) throw new PacketException("Packet checksum error!", PacketException.Reason.Checksum);
+
+        return size;
+    }
+
+    /**
+     * Prepare buffer to write a packet at the current position.
+     *
+     * @param buf Target buffer
+     * @param size Payload length
+     * @return Target buffer in little endian byte order
+     * @throws PacketException Not enough space in buffer
+     */
+    private static ByteBuffer startPacket(ByteBuffer buf, int size) throws PacketException
+    {
+        if(buf.remaining() < size+4) throw new PacketException("Buffer too short!");
+        return buf.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Write header, size and checksum around the payload at position+3 and advance the position.
+     *
+     * @param buf Target buffer with written payload
+     * @param size Payload length
+     */
+    private static void finishPacket(ByteBuffer buf, int size)
+    {
+        int off = buf.position();
+        byte checksum = (byte)size;
+        for(int i=0; i<size; i++) checksum ^= buf.get(off+3+i);
+        buf.put(off, (byte)0xbe);
+        buf.put(off+1, (byte)0xef);
+        buf.put(off+2, (byte)size);
+        buf.put(off+3+size, checksum);
+        buf.position(off+size+4);
+    }
+
+    /**
+     * Pool of reusable VesselData objects.
+     * The receiver obtains a VesselData, fills it and hands it to the listeners. Each VesselData
+     * is reference counted and returns to the pool when the last reference is released.
+     * If the pool is empty a new VesselData is allocated, so a missing release() only costs
+     * an allocation.
+     */
+    public static class VesselDataPool
+    {
+        private final VesselData[] free;
+        private int size = 0;
+
+        /**
+         * Create new pool.
+         *
+         * @param capacity Maximum number of idle VesselData objects kept in the pool
+         */
+        public VesselDataPool(int capacity)
+        {
+            free = new VesselData[capacity];
+        }
+
+        /**
+         * Get VesselData from pool with one reference held by the caller.
+         *
+         * @return VesselData
+         */
+        public synchronized VesselData obtain()
+        {
+            VesselData data;
+            if(size > 0)
+            {
+                data = free[--size];
+                free[size] = null;
+            }
+            else data = new VesselData();
+            data.pool = this;
+            data.refs = 1;
+            return data;
+        }
+
+        private synchronized void retain(VesselData data)
+        {
+            data.refs++;
+        }
+
+        private synchronized void release(VesselData data)
+        {
+            if(data.refs <= 0) return;
+            data.refs--;
+            if(data.refs == 0 && size < free.length) free[size++] = data;
+        }
+    }
+
+    /**
+     * Create packet from payload.
+     *
+     * Packet structure:
+     * Packet = [header][size][payload][checksum];
+     * Header = [Header1=0xBE][Header2=0xEF]
+     * size   = [payload.length (0-255)]
+     *
+     * @param payload Payload data
+     * @return Data packet
+     * @throws PacketException Packet write error
+     */
+    public static byte[] fromPayload(byte[] payload) throws PacketException
+    { 
+    	if(payload.length <= 0) throw new PacketException("Payload too short!", PacketException.Reason.Length);
+    	if(payload.length > 255) throw new PacketException("Payload too long!", PacketException.Reason.Length);
+    	
+        short size = (short)(payload.length);
+        byte checksum = (byte)size;
+    	byte[] packet = new byte[payload.length+4];
+        
+    	packet[0] = (byte)0xbe;
+    	packet[1] = (byte)0xef;
+    	packet[2] = (byte)size;
+    	
+        for(int i=0; i<size; i++)
+        {
+        	packet[3+i] = payload[i];
+        	checksum ^= payload[i];
+        }
+    	packet[packet.length-1] = checksum;
+        
+        return packet;
+    }
+
+    /**
+     * Stream frame decoder.
+     * TCP does not preserve packet boundaries, so a single read may contain several packets
+     * or only a part of one. The decoder buffers the incoming byte stream, resynchronizes on the
+     * packet header and emits every complete packet with a valid checksum exactly once.
+     * After a checksum error the search for a header continues right after the rejected header.
+     *
+     * Packet structure:
+     * Packet = [header][size][payload][checksum];
+     * Header = [Header1=0xBE][Header2=0xEF]
+     * size   = [payload.length (0-255)]
+     */
+    public static class FrameDecoder
+    {
+        private static final int HEADER = 0, HEADER2 = 1, SIZE = 2, DATA = 3;
+
+        private byte[] frame = new byte[MaxPayloadSize+4];
+        private int frameLength = 0; //Bytes of the current frame already received
+        private int frameSize = 0; //Expected size of the current frame
+        private int state = HEADER;
+        private long resyncs = 0;
+        private long checksumErrors = 0;
+
+        //Bytes of a rejected frame to search again for a header, processed before further input
+        private byte[] pending = new byte[MaxPayloadSize+4];
+        private byte[] spare = new byte[MaxPayloadSize+4];
+        private int pendingPos = 0;
+        private int pendingLength = 0;
+
+        /**
+         * Frame listener.
+         * Called once for every complete frame.
+         */
+        public interface FrameListener
+        {
+            void onFrame(byte[] frame, int off, int len);
+        }
+
+        /**
+         * Append received data to the stream and emit all completed frames.
+         * The frame array passed to the listener is reused, copy it if it has to be kept.
+         *
+         * @param data Received data
+         * @param off Offset of the first received byte
+         * @param len Number of received bytes
+         * @param l Listener for completed frames
+         */
+        public void decode(byte[] data, int off, int len, FrameListener l)
+        {
+            for(int i=off; i<off+len; i++)
+            {
+                put(data[i], l);
+                while(pendingPos < pendingLength) put(pending[pendingPos++], l);
+            }
+        }
+
+        /**
+         * Process the next byte of the stream.
+         *
+         * @param b Byte
+         * @param l Listener for completed frames
+         */
+        private void put(byte b, FrameListener l)
+        {
+            switch(state)
+            {
+                case HEADER:
+                    if(b == (byte)0xbe)
+                    {
+                        frame[0] = b;
+                        state = HEADER2;
+                    }
+                    else resyncs++;
+                    break;
+                case HEADER2:
+                    if(b == (byte)0xef)
+                    {
+                        frame[1] = b;
+                        state = SIZE;
+                    }
+                    else
+                    {
+                        //Skip corrupted header
+                        resyncs++;
+                        if(b != (byte)0xbe) state = HEADER;
+                    }
+                    break;
+                case SIZE:
+                    frame[2] = b;
+                    frameSize = (b&0xFF)+4;
+                    frameLength = 3;
+                    state = DATA;
+                    break;
+                case DATA:
+                    frame[frameLength++] = b;
+                    if(frameLength == frameSize)
+                    {
+                        state = HEADER;
+                        byte checksum = frame[2];
+                        for(int i=3; i<frameSize-1; i++) checksum ^= frame[i];
+                        if(checksum == frame[frameSize-1]) l.onFrame(frame, 0, frameSize);
+                        else rescan();
+                    }
+                    break;
+            }
+        }
+
+        /**
+         * Reject the current frame and search for a header again, starting after the header
+         * of the rejected frame.
+         * A corrupted size byte or a false header in noise would otherwise swallow the
+         * following frames.
+         */
+        private void rescan()
+        {
+            checksumErrors++;
+            resyncs += 2;
+            //The rejected frame consists of the last consumed bytes, so the remaining pending
+            //bytes always fit behind it
+            int n = frameSize-2;
+            int rest = pendingLength-pendingPos;
+            System.arraycopy(frame, 2, spare, 0, n);
+            System.arraycopy(pending, pendingPos, spare, n, rest);
+            byte[] t = pending;
+            pending = spare;
+            spare = t;
+            pendingPos = 0;
+            pendingLength = n+rest;
+        }
+
+        /**
+         * Drop partially received frame, e.g. after a reconnect.
+         */
+        public void reset()
+        {
+            state = HEADER;
+            frameLength = 0;
+            pendingPos = 0;
+            pendingLength = 0;
+        }
+
+        /**
+         * Get number of bytes skipped while searching for a packet header.
+         *
+         * @return Number of skipped bytes
+         */
+        public long getResyncs()
+        {
+            return resyncs;
+        }
+
+        /**
+         * Get number of frames rejected because of a checksum error.
+         *
+         * @return Number of rejected frames
+         */
+        public long getChecksumErrors()
+        {
+            return checksumErrors;
+        }
+    }
+
+    /**
+     * Packet exception.
+     *  - Payload too long
+     *  - Payload too short
+     *  - Wrong packet header
+     *  - Checksum error
+     */
+    public static class PacketException extends Exception
+    {
+        /**
+         * Cause of a packet error.
+         */
+        public enum Reason {Other, Length, Header, Checksum}
+
+        private final Reason reason;
+
+    	public PacketException(String message)
+    	{
+    		this(message, Reason.Other);
+    	}
+
+        public PacketException(String message, Reason reason)
+        {
+            super(message);
+            this.reason = reason;
+        }
+
+        /**
+         * Get cause of the error.
+         *
+         * @return Reason
+         */
+        public Reason getReason()
+        {
+            return reason;
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package com.kspethernetio.kspethernetiodemo.KSPEthernetIO;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * General Purpose event system.
@@ -12,6 +11,8 @@ import java.util.List;
  *
  * The provider can hold any number of EventListener.
  * If the provider notifies an event the onEvent function of the listeners is called.
+ *
+ * Listeners may be added and removed from any thread, also from within onEvent.
  */
 public class Events
 {
@@ -28,7 +29,7 @@ public class Events
      */
     public static abstract class EventProvider
     {
-        List<EventListener> listeners = new ArrayList<EventListener>();
+        ListenerList<EventListener> listeners = new ListenerList<EventListener>(new EventListener[0]);
 
         /**
          * Add event listener.
@@ -50,13 +51,92 @@ public class Events
             listeners.remove(l);
         }
 
+        /**
+         * Check if any event listener is registered.
+         * Allows providers to skip creating events nobody receives.
+         *
+         * @return True if at least one listener is registered
+         */
+        boolean hasEventListeners()
+        {
+            return listeners.get().length != 0;
+        }
+
         /**
          * Notify all listeners
          * @param event Event
          */
         void notifyEvent(AbstractEvent event)
         {
-            for(EventListener l : listeners) l.onEvent(event);
+            for(EventListener l : listeners.get()) l.onEvent(event);
+        }
+    }
+
+    /**
+     * Copy-on-write listener list.
+     * Adding and removing listeners copies the listener array, notifying iterates over the
+     * current array without locking or allocation. A listener removed while an event is
+     * dispatched may still receive this event.
+     *
+     * @param <T> Listener type
+     */
+    public static class ListenerList<T>
+    {
+        private volatile T[] listeners;
+
+        /**
+         * Create an empty listener list.
+         *
+         * @param empty Empty array of the listener type
+         */
+        public ListenerList(T[] empty)
+        {
+            listeners = empty;
+        }
+
+        /**
+         * Add listener.
+         * A listener can be added multiple times and is notified once per add.
+         *
+         * @param l Listener
+         */
+        public synchronized void add(T l)
+        {
+            T[] ls = Arrays.copyOf(listeners, listeners.length+1);
+            ls[ls.length-1] = l;
+            listeners = ls;
+        }
+
+        /**
+         * Remove listener.
+         * Removes the first occurrence of the listener.
+         *
+         * @param l Listener
+         */
+        public synchronized void remove(T l)
+        {
+            T[] ls = listeners;
+            for(int i=0; i<ls.length; i++)
+            {
+                if(ls[i] == l || (l != null && l.equals(ls[i])))
+                {
+                    T[] n = Arrays.copyOf(ls, ls.length-1);
+                    System.arraycopy(ls, i+1, n, i, ls.length-i-1);
+                    listeners = n;
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Get current listeners.
+         * The returned array must not be modified.
+         *
+         * @return Listener snapshot
+         */
+        public T[] get()
+        {
+            return listeners;
         }
     }
 
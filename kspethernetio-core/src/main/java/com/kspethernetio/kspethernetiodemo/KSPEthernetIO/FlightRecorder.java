@@ -0,0 +1,495 @@
+package com.kspethernetio.kspethernetiodemo.KSPEthernetIO;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Locale;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Append-only binary recorder for received frames and sent ControlPackets.
+ *
+ * Records are copied into a preallocated ring buffer on the calling thread and written to
+ * memory-mapped segment files by a background thread, so recording never allocates and never
+ * waits for the disk. If the writer falls behind and the ring buffer is full, records are
+ * dropped and counted instead of blocking the socket thread.
+ *
+ * Segments are named "name-00000.kspr", "name-00001.kspr" and so on and are rolled when the
+ * next record does not fit. All values are little endian.
+ *  - Segment header (32 bytes): magic, version, segment number, reserved,
+ *    System.currentTimeMillis() and System.nanoTime() at segment start
+ *  - Record: type (1 byte), data length (2 bytes), System.nanoTime() (8 bytes), data
+ *  - A record type of 0 marks the end of the segment, the rest of the file is zero
+ */
+public class FlightRecorder implements Closeable
+{
+	public static final int MAGIC = 0x5250534B; //"KSPR"
+	public static final int VERSION = 1;
+	public static final int SEGMENT_HEADER = 32;
+	public static final int RECORD_HEADER = 11;
+	public static final String EXTENSION = ".kspr";
+
+	public static final byte END = 0;
+	public static final byte RECEIVED = 1; //Frame received from the host
+	public static final byte SENT = 2; //ControlPacket sent to the host
+
+	public static final int DEFAULT_SEGMENT_SIZE = 16*1024*1024;
+	private static final int RING_SIZE = 256*1024; //Power of two
+	private static final long FLUSH_INTERVAL = 100000000L; //Writer wakeup in nanoseconds
+
+	private final File directory;
+	private final String name;
+	private final int segmentSize;
+
+	//Ring buffer, written by the producers under the lock and read by the writer thread
+	private final byte[] ring = new byte[RING_SIZE];
+	private final Object lock = new Object();
+	private volatile long head = 0; //Read position, only changed by the writer
+	private volatile long tail = 0; //Write position, only changed under lock
+	private volatile boolean closed = false;
+
+	//Writer state, only accessed by the writer thread
+	private final Thread writer;
+	private MappedByteBuffer segment = null;
+	private int segmentNumber = -1;
+
+	//Statistics
+	private volatile long records = 0;
+	private volatile long dropped = 0;
+	private volatile long written = 0;
+	private volatile IOException exception = null;
+
+	/**
+	 * Create recorder with the default segment size and start the writer thread.
+	 *
+	 * @param directory Directory of the segment files
+	 * @param name Segment file name prefix, existing segments of this name are overwritten
+	 * @throws IOException First segment could not be created
+	 */
+	public FlightRecorder(File directory, String name) throws IOException
+	{
+		this(directory, name, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Create recorder and start the writer thread.
+	 *
+	 * @param directory Directory of the segment files
+	 * @param name Segment file name prefix, existing segments of this name are overwritten
+	 * @param segmentSize Segment file size in bytes
+	 * @throws IOException First segment could not be created
+	 */
+	public FlightRecorder(File directory, String name, int segmentSize) throws IOException
+	{
+		if(segmentSize < SEGMENT_HEADER + RECORD_HEADER + 0xFFFF + 1)
+			throw new IllegalArgumentException("Segment size too small");
+		this.directory = directory;
+		this.name = name;
+		this.segmentSize = segmentSize;
+		//Remove all segments of an older recording, the reader would continue with them
+		for(int i=0; getSegmentFile(directory, name, i).delete(); i++);
+		roll();
+		writer = new Thread(write, "FlightRecorder");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Record a received frame with the current time.
+	 *
+	 * @param frame Buffer containing the frame
+	 * @param off Offset of the frame header
+	 * @param len Frame length
+	 */
+	public void received(byte[] frame, int off, int len)
+	{
+		record(RECEIVED, System.nanoTime(), frame, off, len);
+	}
+
+	/**
+	 * Record a sent frame with the current time.
+	 *
+	 * @param frame Frame
+	 */
+	public void sent(byte[] frame)
+	{
+		record(SENT, System.nanoTime(), frame, 0, frame.length);
+	}
+
+	/**
+	 * Append a record.
+	 * Never blocks on disk, the record is dropped if the ring buffer is full.
+	 * May be called from any thread.
+	 *
+	 * @param type Record type
+	 * @param time System.nanoTime()
+	 * @param data Buffer containing the data
+	 * @param off Data offset
+	 * @param len Data length, at most 65535
+	 */
+	public void record(byte type, long time, byte[] data, int off, int len)
+	{
+		int size = RECORD_HEADER + len;
+		long t;
+		synchronized(lock)
+		{
+			t = tail;
+			if(closed || len > 0xFFFF || t + size - head > RING_SIZE)
+			{
+				dropped++;
+				return;
+			}
+			put(t, type);
+			put(t+1, (byte)len);
+			put(t+2, (byte)(len >> 8));
+			for(int i=0; i<8; i++) put(t+3+i, (byte)(time >> (8*i)));
+			int p = (int)((t + RECORD_HEADER) & (RING_SIZE-1));
+			int first = Math.min(len, RING_SIZE - p);
+			System.arraycopy(data, off, ring, p, first);
+			System.arraycopy(data, off+first, ring, 0, len-first);
+			t += size;
+			tail = t;
+			records++;
+		}
+		//Wake the writer early if the ring buffer fills up
+		if(t - head > RING_SIZE/2) LockSupport.unpark(writer);
+	}
+
+	private void put(long pos, byte b)
+	{
+		ring[(int)(pos & (RING_SIZE-1))] = b;
+	}
+
+	private int get(long pos)
+	{
+		return ring[(int)(pos & (RING_SIZE-1))] & 0xFF;
+	}
+
+	/**
+	 * Move records from the ring buffer to the segment files.
+	 */
+	private Runnable write = new Runnable()
+	{
+		@Override
+		public void run()
+		{
+			while(true)
+			{
+				boolean stop = closed;
+				long t = tail;
+				long h = head;
+				try
+				{
+					while(h != t)
+					{
+						int len = get(h+1) | (get(h+2) << 8);
+						int size = RECORD_HEADER + len;
+						if(segment == null || segment.remaining() < size) roll();
+						int p = (int)(h & (RING_SIZE-1));
+						int first = Math.min(size, RING_SIZE - p);
+						segment.put(ring, p, first);
+						segment.put(ring, 0, size-first);
+						h += size;
+						head = h;
+						written += size;
+					}
+				}
+				catch(IOException e)
+				{
+					//Keep draining the ring buffer, but nothing is written anymore
+					exception = e;
+					segment = null;
+					head = t;
+				}
+				if(stop) break;
+				LockSupport.parkNanos(FLUSH_INTERVAL);
+			}
+			if(segment != null) segment.force();
+			segment = null;
+		}
+	};
+
+	/**
+	 * Finish the current segment and map the next one.
+	 *
+	 * @throws IOException Segment could not be created
+	 */
+	private void roll() throws IOException
+	{
+		if(segment != null) segment.force();
+		segment = null;
+		if(exception != null) throw exception;
+
+		segmentNumber++;
+		RandomAccessFile file = new RandomAccessFile(getSegmentFile(directory, name, segmentNumber), "rw");
+		try
+		{
+			file.setLength(0); //Drop old content, the new segment is zero-filled
+			MappedByteBuffer b = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+			b.order(ByteOrder.LITTLE_ENDIAN);
+			b.putInt(MAGIC);
+			b.putInt(VERSION);
+			b.putInt(segmentNumber);
+			b.putInt(0);
+			b.putLong(System.currentTimeMillis());
+			b.putLong(System.nanoTime());
+			segment = b;
+		}
+		finally
+		{
+			file.close(); //The mapping stays valid
+		}
+	}
+
+	/**
+	 * Stop recording.
+	 * Waits until all recorded data is written.
+	 */
+	@Override
+	public void close()
+	{
+		synchronized(lock)
+		{
+			if(closed) return;
+			closed = true;
+		}
+		LockSupport.unpark(writer);
+		boolean interrupted = false;
+		while(writer.isAlive())
+		{
+			try
+			{
+				writer.join();
+			}
+			catch(InterruptedException e)
+			{
+				interrupted = true;
+			}
+		}
+		if(interrupted) Thread.currentThread().interrupt();
+	}
+
+	/**
+	 * Get number of recorded records.
+	 *
+	 * @return Records accepted by record()
+	 */
+	public long getRecords()
+	{
+		return records;
+	}
+
+	/**
+	 * Get number of dropped records.
+	 *
+	 * @return Records dropped because the ring buffer was full or the recorder was closed
+	 */
+	public long getDropped()
+	{
+		return dropped;
+	}
+
+	/**
+	 * Get number of bytes written to the segment files, excluding segment headers.
+	 *
+	 * @return Written bytes
+	 */
+	public long getWritten()
+	{
+		return written;
+	}
+
+	/**
+	 * Get write error.
+	 * After an error nothing is written anymore.
+	 *
+	 * @return IOException or null
+	 */
+	public IOException getException()
+	{
+		return exception;
+	}
+
+	/**
+	 * Get file of a segment.
+	 *
+	 * @param directory Directory of the segment files
+	 * @param name Segment file name prefix
+	 * @param number Segment number
+	 * @return Segment file
+	 */
+	public static File getSegmentFile(File directory, String name, int number)
+	{
+		return new File(directory, name + String.format(Locale.US, "-%05d", number) + EXTENSION);
+	}
+
+	/**
+	 * Sequential reader of recorded segments.
+	 * Reads the records of all segments of a recording in order.
+	 * Not thread safe.
+	 */
+	public static class Reader implements Closeable
+	{
+		private final File directory;
+		private final String name;
+		private int segmentNumber = -1;
+		private MappedByteBuffer segment = null;
+
+		//Segment clock
+		private long wallClock;
+		private long startTime;
+
+		//Current record
+		private byte type = END;
+		private long time = 0;
+		private int length = 0;
+		private final byte[] data = new byte[0xFFFF];
+
+		/**
+		 * Open recording.
+		 *
+		 * @param directory Directory of the segment files
+		 * @param name Segment file name prefix
+		 * @throws IOException First segment missing or invalid
+		 */
+		public Reader(File directory, String name) throws IOException
+		{
+			this.directory = directory;
+			this.name = name;
+			if(!nextSegment()) throw new IOException("No recording "+name+" in "+directory);
+		}
+
+		/**
+		 * Read the next record.
+		 *
+		 * @return False at the end of the recording
+		 * @throws IOException Segment invalid
+		 */
+		public boolean next() throws IOException
+		{
+			while(segment != null)
+			{
+				if(segment.remaining() >= RECORD_HEADER)
+				{
+					byte t = segment.get();
+					if(t != END)
+					{
+						int len = segment.getShort() & 0xFFFF;
+						if(segment.remaining() < 8 + len) throw new IOException("Truncated record in segment "+segmentNumber);
+						time = segment.getLong();
+						segment.get(data, 0, len);
+						type = t;
+						length = len;
+						return true;
+					}
+				}
+				if(!nextSegment()) segment = null;
+			}
+			type = END;
+			length = 0;
+			return false;
+		}
+
+		/**
+		 * Map the next segment.
+		 *
+		 * @return False if there is no next segment
+		 * @throws IOException Segment invalid
+		 */
+		private boolean nextSegment() throws IOException
+		{
+			File f = getSegmentFile(directory, name, segmentNumber+1);
+			if(!f.exists()) return false;
+			segmentNumber++;
+			RandomAccessFile file = new RandomAccessFile(f, "r");
+			try
+			{
+				MappedByteBuffer b = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+				b.order(ByteOrder.LITTLE_ENDIAN);
+				if(b.remaining() < SEGMENT_HEADER || b.getInt() != MAGIC) throw new IOException("Invalid segment "+f);
+				if(b.getInt() != VERSION) throw new IOException("Unsupported segment version "+f);
+				b.getInt();
+				b.getInt();
+				wallClock = b.getLong();
+				startTime = b.getLong();
+				segment = b;
+			}
+			finally
+			{
+				file.close();
+			}
+			return true;
+		}
+
+		/**
+		 * Get type of the current record.
+		 *
+		 * @return RECEIVED, SENT or END after the last record
+		 */
+		public byte getType()
+		{
+			return type;
+		}
+
+		/**
+		 * Get time of the current record.
+		 *
+		 * @return System.nanoTime() of the recording device
+		 */
+		public long getTime()
+		{
+			return time;
+		}
+
+		/**
+		 * Get time of the current record as wall clock time.
+		 *
+		 * @return Milliseconds since epoch
+		 */
+		public long getWallClock()
+		{
+			return wallClock + (time - startTime)/1000000L;
+		}
+
+		/**
+		 * Get data of the current record.
+		 * The buffer is reused by the next call of next().
+		 *
+		 * @return Buffer starting with the data
+		 */
+		public byte[] getData()
+		{
+			return data;
+		}
+
+		/**
+		 * Get data length of the current record.
+		 *
+		 * @return Data length
+		 */
+		public int getLength()
+		{
+			return length;
+		}
+
+		/**
+		 * Get number of the current segment.
+		 *
+		 * @return Segment number
+		 */
+		public int getSegment()
+		{
+			return segmentNumber;
+		}
+
+		@Override
+		public void close()
+		{
+			segment = null;
+		}
+	}
+}
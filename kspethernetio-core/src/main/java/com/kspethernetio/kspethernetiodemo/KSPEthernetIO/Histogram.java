@@ -0,0 +1,152 @@
+package com.kspethernetio.kspethernetiodemo.KSPEthernetIO;
+
+/**
+ * Log-bucketed histogram of non-negative long values, e.g. durations in nanoseconds.
+ *
+ * Every power of two is split into SUB_BUCKETS linear buckets, so percentiles are exact for
+ * small values and within 1/SUB_BUCKETS of the true value otherwise. The maximum is exact.
+ * Recording does not allocate, all methods are thread safe.
+ */
+public class Histogram
+{
+	private static final int SUB_BITS = 3;
+	private static final int SUB_BUCKETS = 1<<SUB_BITS;
+	private static final int BUCKETS = (64-SUB_BITS)*SUB_BUCKETS;
+
+	private final long[] counts = new long[BUCKETS];
+	private long count = 0;
+	private long sum = 0;
+	private long max = 0;
+
+	/**
+	 * Add value.
+	 * Negative values are recorded as 0.
+	 *
+	 * @param value Value
+	 */
+	public synchronized void record(long value)
+	{
+		if(value < 0) value = 0;
+		counts[bucket(value)]++;
+		count++;
+		sum += value;
+		if(value > max) max = value;
+	}
+
+	/**
+	 * Remove all values.
+	 */
+	public synchronized void reset()
+	{
+		for(int i=0; i<BUCKETS; i++) counts[i] = 0;
+		count = 0;
+		sum = 0;
+		max = 0;
+	}
+
+	/**
+	 * Create a copy of the current values.
+	 *
+	 * @return Histogram
+	 */
+	public synchronized Histogram copy()
+	{
+		Histogram h = new Histogram();
+		System.arraycopy(counts, 0, h.counts, 0, BUCKETS);
+		h.count = count;
+		h.sum = sum;
+		h.max = max;
+		return h;
+	}
+
+	/**
+	 * Get number of recorded values.
+	 *
+	 * @return Count
+	 */
+	public synchronized long getCount()
+	{
+		return count;
+	}
+
+	/**
+	 * Get largest recorded value.
+	 *
+	 * @return Maximum or 0 if empty
+	 */
+	public synchronized long getMax()
+	{
+		return max;
+	}
+
+	/**
+	 * Get average of all recorded values.
+	 *
+	 * @return Mean or 0 if empty
+	 */
+	public synchronized long getMean()
+	{
+		return (count > 0) ? sum/count : 0;
+	}
+
+	/**
+	 * Get value below or at which the given share of all values lies.
+	 * Returns the middle of the matching bucket, but never more than the maximum.
+	 *
+	 * @param p Percentile 0-100, e.g. 99 for p99
+	 * @return Value or 0 if empty
+	 */
+	public synchronized long getPercentile(double p)
+	{
+		if(count == 0) return 0;
+		long rank = (long)Math.ceil(count*p/100.0);
+		if(rank < 1) rank = 1;
+		long n = 0;
+		for(int i=0; i<BUCKETS; i++)
+		{
+			n += counts[i];
+			if(n >= rank)
+			{
+				long low = lowerBound(i);
+				long mid = low + (lowerBound(i+1) - 1 - low)/2;
+				return Math.min(mid, max);
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * Get bucket of value.
+	 *
+	 * @param value Non-negative value
+	 * @return Bucket index
+	 */
+	private static int bucket(long value)
+	{
+		if(value < SUB_BUCKETS) return (int)value;
+		int e = 63 - Long.numberOfLeadingZeros(value);
+		int m = (int)(value >>> (e-SUB_BITS)) & (SUB_BUCKETS-1);
+		return (e-SUB_BITS+1)*SUB_BUCKETS + m;
+	}
+
+	/**
+	 * Get smallest value of a bucket.
+	 *
+	 * @param i Bucket index, BUCKETS for the end of the last bucket
+	 * @return Lower bound
+	 */
+	private static long lowerBound(int i)
+	{
+		if(i < SUB_BUCKETS) return i;
+		if(i >= BUCKETS) return Long.MAX_VALUE;
+		int e = i/SUB_BUCKETS + SUB_BITS - 1;
+		long m = i%SUB_BUCKETS;
+		return (SUB_BUCKETS + m) << (e-SUB_BITS);
+	}
+
+	@Override
+	public String toString()
+	{
+		return "n="+getCount()+" p50="+getPercentile(50)+" p99="+getPercentile(99)+" max="+getMax();
+	}
+}
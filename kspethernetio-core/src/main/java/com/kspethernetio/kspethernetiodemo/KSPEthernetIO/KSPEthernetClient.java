@@ -0,0 +1,1583 @@
+package com.kspethernetio.kspethernetiodemo.KSPEthernetIO;
+
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.AsyncBroadcastClient.BroadcastEvent;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.AsyncTcpClient.TcpEvent;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.ControlPacket;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.HandshakePacket;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.PacketException;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.VesselData;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.VesselDataPool;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.HostState;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.Events.AbstractEvent;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.Events.EventProvider;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.Events.ListenerList;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.PacketHandler.PacketEvent;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.Statemachine.State;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.Statemachine.StatemachineListener;
+
+/**
+ * KSPEthernetClient
+ *
+ * Handles all communication with KSPEthernetIO host.
+ * Contains a statemachine that initializes the client, waits for user start command,
+ * manages handshake with host and tries to keep connection alive.
+ *
+ * Provides various events for all KSPEthernetListener.
+ *
+ * @author Josh Perske
+ */
+public class KSPEthernetClient
+{
+	private static final int VESSEL_DATA_POOL_SIZE = 8; //Idle VesselData objects kept for reuse
+	private static final int RECONNECT_ATTEMPTS = 5; //Direct reconnects before falling back to broadcast
+	private static final int RECONNECT_BASE_DELAY = 50; //First reconnect backoff in milliseconds
+	private static final int RECONNECT_MAX_DELAY = 2000; //Maximum reconnect backoff in milliseconds
+	private static final int MIN_SEND_INTERVAL = 10; //Minimum ControlPacket interval in OnChange mode in milliseconds
+	private static final int HEARTBEAT_INTERVAL = 500; //Unchanged ControlPacket interval in OnChange mode in milliseconds
+	private static final int HANDSHAKE_TIMEOUT = 1000; //Time to wait for the first packet after a handshake in milliseconds
+	private static final int HANDSHAKE_ATTEMPTS = 3; //Handshakes sent before the connection is restarted
+	private static final int STALE_FACTOR = 5; //Missed VesselData periods until the connection is stale
+	private static final int MIN_STALE_TIMEOUT = 250; //Minimum time without VesselData until the connection is stale in milliseconds
+	private static final int ECHO_TIMEOUT = 1000; //Time to wait for a control change to show up in VesselData in milliseconds
+	private static final int ECHO_BITS = 0b11111000; //MainControls bits reported back in VesselData: SAS RCS Lights Gear Brakes
+	private static final int PLAYOUT_MIN_DELAY = 5; //Minimum playout delay in milliseconds
+
+	//Statemachine controller is used to send commands to the statemachine
+	//The commands are received in the active state.
+	private Statemachine sm = new Statemachine("KSPEthernetClient"); //No tick, timed states use scheduleStep()
+	private StatemachineController smc = new StatemachineController(sm);
+
+	//Runs all sockets of the client on a single thread
+	private NioSelector selector = new NioSelector("KSPEthernetClient IO");
+
+	//All initialized and used in Statemachine
+	private AsyncBroadcastClient broadcastClient = null;
+	private volatile AsyncTcpClient tcpClient = null; //Read by metric getters from any thread
+	private PacketHandler packetHandler = null;
+	private InetAddress host = null;
+	private int hostPort; //TCP port of host
+	private short hostM1, hostM2; //Handshake values of host
+
+	//Hosts of previous connections, probed while waiting for a broadcast
+	private volatile KnownHost[] knownHosts = new KnownHost[0];
+	private List<AsyncTcpClient> probes = new ArrayList<AsyncTcpClient>();
+	private List<KnownHost> probeHosts = new ArrayList<KnownHost>();
+	private volatile KnownHost connectedHost = null;
+
+	//Content of controlData is frequently sent to connected host
+	//vesselData contains last received VesselData
+	//Received VesselData is recycled by the pool after all listeners released it
+	public ControlPacket controlData = new ControlPacket();
+	private VesselData vesselData = new VesselData();
+	private VesselDataPool vesselDataPool = new VesselDataPool(VESSEL_DATA_POOL_SIZE);
+
+	//Current host state
+	private HostState hostState = HostState.Disconnected;
+
+	private int port; //Host port
+	private int refresh; //Data send refresh rate
+
+	//ControlPacket send mode, only used by the Statemachine thread
+	private volatile SendMode sendMode = SendMode.Periodic;
+	private volatile int minSendInterval = MIN_SEND_INTERVAL;
+	private volatile int heartbeatInterval = HEARTBEAT_INTERVAL;
+	private byte[] controlFrame = new byte[ControlPacket.PayloadSize+4]; //Encoded controlData, compared to the last sent packet
+	private ByteBuffer controlBuffer = ByteBuffer.wrap(controlFrame);
+	private volatile long sentControlPackets = 0;
+	private Histogram sendJitter = new Histogram(); //Deviation of scheduled send intervals in nanoseconds
+
+	//Reconnect to the last host without waiting for a broadcast
+	private int reconnectAttempts = RECONNECT_ATTEMPTS;
+	private int reconnectFailures = 0;
+	private Random reconnectJitter = new Random();
+	private long disconnectedAt = 0; //System.nanoTime() when the active connection was lost, 0 if connected
+	private volatile long reconnectTime = -1; //Time from connection loss to active state in milliseconds
+
+	//Handshake is encoded once and confirmed by the first packet of the host
+	private byte[] handshakePacket = null;
+	private volatile int handshakeTimeout = HANDSHAKE_TIMEOUT;
+	private volatile int handshakeAttempts = HANDSHAKE_ATTEMPTS;
+	private volatile long handshakeRtt = -1; //Time from handshake to first host packet in nanoseconds
+
+	//Liveness of the active connection
+	private volatile int staleFactor = STALE_FACTOR;
+	private volatile long dataPeriod = -1; //Smoothed VesselData inter-arrival time in nanoseconds
+	private volatile long rtt = -1; //Smoothed round-trip time of control changes in nanoseconds
+
+	//Optional playout buffer between PacketHandler and listeners, only used by the Statemachine thread
+	private volatile PlayoutBuffer.Mode playoutMode = null;
+	private volatile int playoutMinDelay = PLAYOUT_MIN_DELAY;
+	private PlayoutBuffer playoutBuffer = new PlayoutBuffer(PlayoutBuffer.Mode.LowLatency, PLAYOUT_MIN_DELAY);
+
+	//Receive statistics of all connections
+	private LinkMetrics linkMetrics = new LinkMetrics();
+
+	//Optional recorder of received frames and sent ControlPackets
+	private volatile FlightRecorder recorder = null;
+
+	//Recording replayed instead of connecting to a host
+	private volatile ReplayClient replay = null;
+
+	/**
+	 * Start initialize KSPEthernetClient.
+	 * Fully initialized if isInitialized() returns true.
+	 * May take a few milliseconds after constructor was called.
+	 *
+	 * @param port Host port
+	 * @param refresh Data send refresh rate
+	 */
+	public KSPEthernetClient(int port, int refresh)
+	{
+		this.port = port;
+		this.refresh = refresh;
+
+		//Connect StatemachineController to Statemachine
+		smc.addEventListener(sm);
+
+		//Keep only the latest VesselData if the Statemachine falls behind
+		sm.setCoalescingPolicy(vesselDataCoalescing);
+
+		//Wake up the Statemachine to send changed controlData immediately
+		controlData.setChangeListener(controlChangeListener);
+
+		//Add StatemachineListener to notify KSPEthernetListener on State change
+		sm.addStatemachineListener(new StatemachineListener()
+		{			
+			@Override
+			public void statemachineStopped(Statemachine sm) { }
+			@Override
+			public void statemachineStateChanged(Statemachine sm, State os, State ns) { notifyStateChanged(ns); }
+			@Override
+			public void statemachineStarted(Statemachine sm) { }
+			@Override
+			public void statemachineFinished(Statemachine sm) { }
+		});
+
+		//Start Statemachine in State 0
+		sm.start(S0_Initialize);
+	}
+
+	/**
+	 * Start searching for host.
+	 * It may take a few milliseconds until isActive() returns true.
+	 */
+	public void start()
+	{
+		if(sm.isActive()) smc.notifyEvent(StartCommand);
+	}
+
+	/**
+	 * Stop client.
+	 * It may take a few milliseconds until isStopped() returns true.
+	 */
+	public void stop()
+	{
+		if(sm.isActive()) smc.notifyEvent(StopCommand);		
+	}
+
+	/**
+	 * Stop all background threads to prepare KSPEthernetClient for garbage collection.
+	 * KSPEthernetClient object is not longer usable after call.
+	 */
+	public void destroy()
+	{
+		if(sm != null && sm.isActive()) sm.stop();
+		if(broadcastClient != null && broadcastClient.isActive()) broadcastClient.cancelReceiveBroadcast();
+		if(tcpClient != null && tcpClient.isActive()) tcpClient.cancelReceiveData();
+		selector.close();
+	}
+
+	/**
+	 * Restart active client.
+	 */
+	public void reset()
+	{
+		if(sm.isActive()) smc.notifyEvent(ResetCommand);		
+	}
+
+	/**
+	 * Enable or disable VesselData coalescing.
+	 * If enabled and received VesselData queues up, only the latest VesselData is passed to the
+	 * listeners. Enabled by default.
+	 *
+	 * @param enable True to keep only the latest VesselData
+	 */
+	public void setVesselDataCoalescing(boolean enable)
+	{
+		if(enable) sm.setCoalescingPolicy(vesselDataCoalescing);
+		else sm.setCoalescingPolicy(releaseDropped);
+	}
+
+	/**
+	 * Get number of events waiting for the Statemachine.
+	 *
+	 * @return Event queue depth
+	 */
+	public int getEventQueueDepth()
+	{
+		return sm.getEventQueueDepth();
+	}
+
+	/**
+	 * Get number of events dropped because the Statemachine event queue was full.
+	 *
+	 * @return Dropped events
+	 */
+	public long getDroppedEvents()
+	{
+		return sm.getDroppedEvents();
+	}
+
+	/**
+	 * Get number of VesselData packets replaced by newer VesselData before they were handled.
+	 *
+	 * @return Coalesced VesselData packets
+	 */
+	public long getCoalescedEvents()
+	{
+		return sm.getCoalescedEvents();
+	}
+
+	/**
+	 * Get number of ControlPackets of the current connection that were replaced by a newer
+	 * ControlPacket before they could be written.
+	 *
+	 * @return Coalesced ControlPackets
+	 */
+	public long getCoalescedControlPackets()
+	{
+		AsyncTcpClient c = tcpClient;
+		return (c != null) ? c.getCoalescedFrames() : 0;
+	}
+
+	/**
+	 * Get time the last packet waited in the send queue of the current connection.
+	 *
+	 * @return Send queue latency in nanoseconds
+	 */
+	public long getSendQueueLatency()
+	{
+		AsyncTcpClient c = tcpClient;
+		return (c != null) ? c.getQueueLatency() : 0;
+	}
+
+	/**
+	 * Get maximum time a packet waited in the send queue of the current connection.
+	 *
+	 * @return Maximum send queue latency in nanoseconds
+	 */
+	public long getMaxSendQueueLatency()
+	{
+		AsyncTcpClient c = tcpClient;
+		return (c != null) ? c.getMaxQueueLatency() : 0;
+	}
+
+	/**
+	 * ControlPacket send mode.
+	 * Periodic sends controlData at the refresh rate passed to the constructor.
+	 * OnChange sends controlData as soon as it changes, but not faster than the minimum send
+	 * interval, and repeats unchanged controlData at the heartbeat interval only.
+	 */
+	public enum SendMode {Periodic, OnChange}
+
+	/**
+	 * Set ControlPacket send mode.
+	 * OnChange mode is only woken up immediately by the ControlPacket setters, fields written
+	 * directly require a call of ControlPacket.changed() or are sent with the next timer tick.
+	 *
+	 * @param mode SendMode, Periodic by default
+	 */
+	public void setSendMode(SendMode mode)
+	{
+		sendMode = mode;
+	}
+
+	/**
+	 * Set minimum time between two ControlPackets in OnChange mode.
+	 * Limits the send rate if controlData changes continuously.
+	 *
+	 * @param ms Minimum send interval in milliseconds
+	 */
+	public void setMinSendInterval(int ms)
+	{
+		minSendInterval = ms;
+	}
+
+	/**
+	 * Set time after which unchanged controlData is sent again in OnChange mode.
+	 *
+	 * @param ms Heartbeat interval in milliseconds
+	 */
+	public void setHeartbeatInterval(int ms)
+	{
+		heartbeatInterval = ms;
+	}
+
+	/**
+	 * Get number of ControlPackets passed to the connections since the client was created.
+	 *
+	 * @return Sent ControlPackets
+	 */
+	public long getSentControlPackets()
+	{
+		return sentControlPackets;
+	}
+
+	/**
+	 * Get jitter of the ControlPacket send interval.
+	 * Contains the deviation of every interval between two scheduled sends from the refresh
+	 * rate in Periodic mode or from the heartbeat interval in OnChange mode.
+	 * Sends caused by changed controlData are not scheduled and not included.
+	 *
+	 * @return Copy of the send jitter histogram in nanoseconds
+	 */
+	public Histogram getSendJitter()
+	{
+		return sendJitter.copy();
+	}
+
+	/**
+	 * Clear send jitter histogram.
+	 */
+	public void resetSendJitter()
+	{
+		sendJitter.reset();
+	}
+
+	/**
+	 * Set time to wait for the first packet of the host after a handshake.
+	 * If nothing was received the handshake is sent again.
+	 *
+	 * @param ms Handshake timeout in milliseconds
+	 */
+	public void setHandshakeTimeout(int ms)
+	{
+		handshakeTimeout = ms;
+	}
+
+	/**
+	 * Set number of handshakes sent before the connection is restarted.
+	 *
+	 * @param attempts Handshake attempts, at least 1
+	 */
+	public void setHandshakeAttempts(int attempts)
+	{
+		handshakeAttempts = Math.max(attempts, 1);
+	}
+
+	/**
+	 * Get round-trip time of the last handshake.
+	 * Measured from sending the handshake to receiving the first packet of the host.
+	 *
+	 * @return Handshake round-trip time in nanoseconds or -1 if no handshake was confirmed yet
+	 */
+	public long getHandshakeRtt()
+	{
+		return handshakeRtt;
+	}
+
+	/**
+	 * Set number of VesselData periods without data after which the connection is stale.
+	 * A stale connection is reported to onKSPEthernetStale() and restarted, the period is
+	 * measured from the received VesselData. The connection is not monitored while the
+	 * host is not in flight.
+	 *
+	 * @param factor Multiple of the VesselData period, at least 2
+	 */
+	public void setStaleFactor(int factor)
+	{
+		staleFactor = Math.max(factor, 2);
+	}
+
+	/**
+	 * Get measured VesselData period of the current connection.
+	 *
+	 * @return Smoothed VesselData inter-arrival time in nanoseconds or -1 if not measured yet
+	 */
+	public long getVesselDataPeriod()
+	{
+		return dataPeriod;
+	}
+
+	/**
+	 * Get round-trip time to the host.
+	 * Measured from sending a ControlPacket that changes SAS, RCS, lights, gears or brakes
+	 * until the first VesselData reporting the new state, so it includes one host update.
+	 *
+	 * @return Smoothed round-trip time in nanoseconds or -1 if not measured yet
+	 */
+	public long getRtt()
+	{
+		return rtt;
+	}
+
+	/**
+	 * Enable the playout buffer.
+	 * Received VesselData is passed to the listeners on a steady clock with an adaptive delay
+	 * instead of immediately, so network jitter does not show up as stutter.
+	 *
+	 * @param mode PlayoutBuffer mode or null to pass VesselData immediately (default)
+	 */
+	public void setPlayoutMode(PlayoutBuffer.Mode mode)
+	{
+		playoutMode = mode;
+	}
+
+	/**
+	 * Set minimum delay of the playout buffer.
+	 *
+	 * @param ms Minimum playout delay in milliseconds
+	 */
+	public void setPlayoutMinDelay(int ms)
+	{
+		playoutMinDelay = ms;
+	}
+
+	/**
+	 * Get current delay of the playout buffer.
+	 *
+	 * @return Playout delay in nanoseconds or 0 if the playout buffer is disabled
+	 */
+	public long getPlayoutDelay()
+	{
+		return (playoutMode != null) ? playoutBuffer.getDelay() : 0;
+	}
+
+	/**
+	 * Get receive statistics of all connections since the client was created or the last
+	 * resetLinkMetrics() call.
+	 *
+	 * @return Snapshot of the link statistics
+	 */
+	public LinkMetrics.Snapshot getLinkMetrics()
+	{
+		return linkMetrics.snapshot();
+	}
+
+	/**
+	 * Clear receive statistics.
+	 */
+	public void resetLinkMetrics()
+	{
+		linkMetrics.reset();
+	}
+
+	/**
+	 * Record all received frames and sent ControlPackets.
+	 * The recorder is not closed by the client.
+	 *
+	 * @param recorder FlightRecorder or null to stop recording
+	 */
+	public void setFlightRecorder(FlightRecorder recorder)
+	{
+		this.recorder = recorder;
+		PacketHandler h = packetHandler;
+		if(h != null) h.setFlightRecorder(recorder);
+	}
+
+	/**
+	 * Replay a recording instead of connecting to a host.
+	 * While set, broadcasts and known hosts are ignored and the replay is used as connection.
+	 * Takes effect with the next connect.
+	 *
+	 * @param replay ReplayClient or null to connect to hosts again
+	 */
+	public void setReplay(ReplayClient replay)
+	{
+		this.replay = replay;
+	}
+
+	/**
+	 * Set number of direct reconnects to the last host.
+	 * After a connection loss the client dials the last host with exponential backoff and waits
+	 * for a broadcast only after this many failed attempts.
+	 *
+	 * @param attempts Reconnect attempts, 0 to always wait for a broadcast
+	 */
+	public void setReconnectAttempts(int attempts)
+	{
+		reconnectAttempts = attempts;
+	}
+
+	/**
+	 * Set hosts of previous connections.
+	 * While waiting for a broadcast the client tries to connect to all known hosts and uses
+	 * the first connection that is established or the first broadcast received.
+	 *
+	 * @param hosts Known hosts
+	 */
+	public void setKnownHosts(List<KnownHost> hosts)
+	{
+		knownHosts = hosts.toArray(new KnownHost[hosts.size()]);
+	}
+
+	/**
+	 * Get host of the current or last connection.
+	 * Can be stored and passed to setKnownHosts() on the next start.
+	 *
+	 * @return Host or null if the client was not connected yet
+	 */
+	public KnownHost getConnectedHost()
+	{
+		return connectedHost;
+	}
+
+	/**
+	 * Get time it took to get back to the active state after the last connection loss.
+	 *
+	 * @return Time to reconnect in milliseconds or -1 if there was no reconnect yet
+	 */
+	public long getReconnectTime()
+	{
+		return reconnectTime;
+	}
+
+	/**
+	 * Get HostState.
+	 *
+	 * @return HostState
+	 */
+	public HostState getHostState()
+	{
+		return hostState;
+	}
+
+	/**
+	 * Set HostState and notify listeners if changed.
+	 */
+	private void setHostState(HostState newState)
+	{
+		if(hostState != newState)
+		{
+			hostState = newState;
+			notifyHostStateChanged(hostState);
+		}
+	}
+
+	/**
+	 * Get String representing current client state.
+	 *
+	 * @return Current client state as String
+	 */
+	public String getState()
+	{
+		if(sm.isActive()) return sm.getActiveState().getName();
+		else return "Inactive";
+	}
+
+	/**
+	 * Check if client is initialized after constructor call.
+	 *
+	 * @return True if fully initialized
+	 */
+	public boolean isInitialized()
+	{
+		return sm.isActive() && sm.getActiveState() != S0_Initialize;
+	}
+
+	/**
+	 * Check if client is waiting for start command.
+	 *
+	 * @return True if client waits for start command
+	 */
+	public boolean isStopped()
+	{
+		return sm.isActive() && sm.getActiveState() == S1_WaitStart;
+	}
+
+	/**
+	 * Check if client is ready to receiving and sending data.
+	 *
+	 * @return True if client is able to receive and send data
+	 */
+	public boolean isActive()
+	{
+		return sm.isActive() && sm.getActiveState() == S5_Active;
+	}
+
+
+	/**
+	 * Host of a previous connection.
+	 */
+	public static class KnownHost
+	{
+		public final InetAddress address;
+		public final int port;
+		public final short M1, M2; //Handshake values of the host
+		public final long lastSeen; //System.currentTimeMillis() of the connection
+
+		/**
+		 * Create known host.
+		 *
+		 * @param address Host address
+		 * @param port Host port
+		 * @param M1 Handshake M1
+		 * @param M2 Handshake M2
+		 * @param lastSeen System.currentTimeMillis() of the connection
+		 */
+		public KnownHost(InetAddress address, int port, short M1, short M2, long lastSeen)
+		{
+			this.address = address;
+			this.port = port;
+			this.M1 = M1;
+			this.M2 = M2;
+			this.lastSeen = lastSeen;
+		}
+
+		/**
+		 * Check if both describe the same host.
+		 *
+		 * @param h Other host
+		 * @return True if address and port are equal
+		 */
+		public boolean isSameHost(KnownHost h)
+		{
+			return address.equals(h.address) && port == h.port;
+		}
+	}
+
+	/**
+	 * Connect to all known hosts, or start the replay if set.
+	 * Established connections are reported to the Statemachine as TcpEvents.
+	 */
+	private void startProbes()
+	{
+		ReplayClient r = replay;
+		if(r != null)
+		{
+			r.addTcpListener(tcpStateListener);
+			probes.add(r);
+			probeHosts.add(new KnownHost(r.getAddress(), r.getPort(), (short)0, (short)0, System.currentTimeMillis()));
+			r.startReceiveData();
+			return;
+		}
+		for(KnownHost h : knownHosts)
+		{
+			AsyncTcpClient probe = new AsyncTcpClient(h.address, h.port, selector);
+			probe.addTcpListener(tcpStateListener);
+			probes.add(probe);
+			probeHosts.add(h);
+			probe.startReceiveData();
+		}
+	}
+
+	/**
+	 * Cancel all remaining probe connections.
+	 */
+	private void cancelProbes()
+	{
+		for(AsyncTcpClient probe : probes)
+		{
+			probe.removeTcpListener(tcpStateListener);
+			probe.cancelReceiveData();
+		}
+		probes.clear();
+		probeHosts.clear();
+	}
+
+	/**
+	 * Dummy event provider to send Events to a Statenmachine.
+	 */
+	private static class StatemachineController extends EventProvider
+	{
+		public StatemachineController(Statemachine sm)
+		{
+			super();
+			addEventListener(sm);
+		}
+
+	};
+
+	/**
+	 * Give pooled VesselData of dropped events back to the pool.
+	 */
+	private class ReleaseDropped implements Statemachine.CoalescingPolicy
+	{
+		@Override
+		public boolean isCoalescable(AbstractEvent event)
+		{
+			return false;
+		}
+		@Override
+		public void onDropped(AbstractEvent event)
+		{
+			if(event instanceof PacketEvent && ((PacketEvent)event).getType() == PacketEvent.PacketEventType.VesselDataReceived)
+				((PacketEvent)event).getVesselData().release();
+		}
+	}
+	private final ReleaseDropped releaseDropped = new ReleaseDropped();
+
+	/**
+	 * Coalesce VesselDataReceived events.
+	 */
+	private final ReleaseDropped vesselDataCoalescing = new ReleaseDropped()
+	{
+		@Override
+		public boolean isCoalescable(AbstractEvent event)
+		{
+			return event instanceof PacketEvent && ((PacketEvent)event).getType() == PacketEvent.PacketEventType.VesselDataReceived;
+		}
+	};
+
+	/**
+	 * Forward connection changes of the TCP client to the Statemachine.
+	 * Received packets reach the Statemachine via the PacketHandler only.
+	 */
+	private final AsyncTcpClient.TcpListener tcpStateListener = new AsyncTcpClient.TcpListener()
+	{
+		@Override
+		public void onConnected(AsyncTcpClient client)
+		{
+			sm.onEvent(new TcpEvent(client, TcpEvent.TcpEventType.Connected));
+		}
+		@Override
+		public void onDisconnected(AsyncTcpClient client, Exception e)
+		{
+			sm.onEvent(new TcpEvent(client, TcpEvent.TcpEventType.Disconnected, e));
+		}
+		@Override
+		public void onReceived(AsyncTcpClient client, byte[] packet, int off, int len)
+		{
+		}
+	};
+
+	/**
+	 * Run the next Statemachine step immediately if controlData was changed in OnChange mode.
+	 */
+	private final ControlPacket.ChangeListener controlChangeListener = new ControlPacket.ChangeListener()
+	{
+		@Override
+		public void onControlPacketChanged(ControlPacket packet)
+		{
+			if(sendMode == SendMode.OnChange) sm.onEvent(ControlChangedCommand);
+		}
+	};
+
+	/**
+	 * Defines events that may be sent by a StatemachineController to a Statemachine
+	 */
+	private static class StatemachineCommand extends AbstractEvent
+	{
+		public StatemachineCommand(StatemachineController sender, StatemachineCommandType t)
+		{
+			super(sender, t.ordinal(), null);
+		}
+
+		private static final StatemachineCommandType[] types = StatemachineCommandType.values();
+
+		public StatemachineCommandType getType()
+		{
+			return types[id];
+		}
+	}
+
+	//Commands to send with the StatemachineController to the active state of the statemachine
+	private enum StatemachineCommandType {Start, Stop, Reset, ControlChanged}
+	private final StatemachineCommand StartCommand = new StatemachineCommand(smc, StatemachineCommandType.Start);
+	private final StatemachineCommand StopCommand = new StatemachineCommand(smc, StatemachineCommandType.Stop);
+	private final StatemachineCommand ResetCommand = new StatemachineCommand(smc, StatemachineCommandType.Reset);
+	private final StatemachineCommand ControlChangedCommand = new StatemachineCommand(smc, StatemachineCommandType.ControlChanged);
+
+
+	/**
+	 * KSPEthernetClient event listener interface.
+	 * Classes which want to receive data from the client should implement this.
+	 *
+	 * VesselData passed to onKSPEthernetInvalidate is recycled after the next packet was
+	 * received. Call VesselData.retain() to keep it longer and VesselData.release() when done.
+	 */
+	public interface KSPEthernetListener
+	{
+		void onKSPEthernetError(KSPEthernetClient sender, Exception e);
+		void onKSPEthernetInvalidate(KSPEthernetClient sender, VesselData vesselData);
+		void onKSPEthernetStateChanged(KSPEthernetClient sender, String state);
+		void onKSPEthernetHostStateChanged(KSPEthernetClient sender, HostState state);
+		void onKSPEthernetStale(KSPEthernetClient sender, long silence);
+	}
+
+	/**
+	 * KSPEthernetClient change listener interface.
+	 * Variant of onKSPEthernetInvalidate which also receives the fields that changed since the
+	 * previous VesselData, so unchanged values do not have to be redrawn.
+	 * The same VesselData rules as for KSPEthernetListener apply.
+	 */
+	public interface KSPEthernetChangeListener
+	{
+		/**
+		 * New VesselData received.
+		 *
+		 * @param sender KSPEthernetClient
+		 * @param vesselData VesselData
+		 * @param changed VesselData.MASK_ bits of all changed fields, MASK_ALL for the first
+		 *                VesselData of a connection
+		 */
+		void onKSPEthernetChanged(KSPEthernetClient sender, VesselData vesselData, long changed);
+	}
+
+	//Event listeners
+	private ListenerList<KSPEthernetListener> listeners = new ListenerList<KSPEthernetListener>(new KSPEthernetListener[0]);
+	private ListenerList<KSPEthernetChangeListener> changeListeners = new ListenerList<KSPEthernetChangeListener>(new KSPEthernetChangeListener[0]);
+
+	/**
+	 * Add KSPEthernetListener.
+	 *
+	 * @param l KSPEthernetListener
+	 */
+	public void addEventListener(KSPEthernetListener l)
+	{
+		listeners.add(l);
+	}
+
+	/**
+	 * Remove KSPEthernetListener.
+	 *
+	 * @param l KSPEthernetListener
+	 */
+	public void removeEventListener(KSPEthernetListener l)
+	{
+		listeners.remove(l);
+	}
+
+	/**
+	 * Add KSPEthernetChangeListener.
+	 *
+	 * @param l KSPEthernetChangeListener
+	 */
+	public void addChangeListener(KSPEthernetChangeListener l)
+	{
+		changeListeners.add(l);
+	}
+
+	/**
+	 * Remove KSPEthernetChangeListener.
+	 *
+	 * @param l KSPEthernetChangeListener
+	 */
+	public void removeChangeListener(KSPEthernetChangeListener l)
+	{
+		changeListeners.remove(l);
+	}
+
+	/**
+	 * Notify all listeners about an error.
+	 *
+	 * @param e Exception
+	 */
+	private void notifyError(Exception e)
+	{
+		for(KSPEthernetListener l : listeners.get()) l.onKSPEthernetError(this, e);
+	}
+
+	/**
+	 * Notify all listeners if new data was received.
+	 *
+	 * @param previous Previously received VesselData or null if all fields are new
+	 */
+	private void notifyInvalidate(VesselData previous)
+	{
+		for(KSPEthernetListener l : listeners.get()) l.onKSPEthernetInvalidate(this, vesselData);
+
+		KSPEthernetChangeListener[] cl = changeListeners.get();
+		if(cl.length == 0) return;
+		long changed = vesselData.changedFields(previous);
+		for(KSPEthernetChangeListener l : cl) l.onKSPEthernetChanged(this, vesselData, changed);
+	}
+
+	/**
+	 * Notify all listeners if the connection is stale.
+	 *
+	 * @param silence Time since the last VesselData in milliseconds
+	 */
+	private void notifyStale(long silence)
+	{
+		for(KSPEthernetListener l : listeners.get()) l.onKSPEthernetStale(this, silence);
+	}
+
+	/**
+	 * Notify all listeners if the client state has changed.
+	 *
+	 * @param s Client state as String
+	 */
+	private void notifyStateChanged(State s)
+	{
+		for(KSPEthernetListener l : listeners.get()) l.onKSPEthernetStateChanged(this, s.getName());
+	}
+
+	/**
+	 * Notify all listeners if the host state has changed.
+	 *
+	 * @param s HostState
+	 */
+	private void notifyHostStateChanged(HostState s)
+	{
+		for(KSPEthernetListener l : listeners.get()) l.onKSPEthernetHostStateChanged(this, s);
+	}
+
+
+	/* *************** *
+	 *   Statemachine  *
+	 * *************** */
+
+
+	/**
+	 * S0_Initialize
+	 *
+	 * Initialize broadcast client
+	 * Initialize packet handler
+	 * Jump to S1_WaitStart
+	 */
+	private State S0_Initialize = new State("Initialize", sm)
+	{
+		@Override
+		public void onEnter()
+		{
+			setHostState(HostState.Disconnected);
+			broadcastClient = new AsyncBroadcastClient(port, selector);
+			broadcastClient.addEventListener(sm);
+			packetHandler = new PacketHandler();
+			packetHandler.setVesselDataPool(vesselDataPool);
+			packetHandler.setLinkMetrics(linkMetrics);
+			packetHandler.setFlightRecorder(recorder);
+			packetHandler.setBroadcastClient(broadcastClient);
+			packetHandler.addEventListener(sm);
+		}
+		@Override
+		public State onExecute(AbstractEvent event)
+		{
+			return S1_WaitStart;
+		}
+		@Override
+		public void onExit()
+		{
+		}
+	};
+
+	/**
+	 * S1_WaitStart
+	 *
+	 * Wait for Start command
+	 * Then jump to S2_WaitBroadcast
+	 */
+	private State S1_WaitStart = new State("Wait for start command", sm)
+	{
+		@Override
+		public void onEnter()
+		{
+			setHostState(HostState.Disconnected);
+		}
+		@Override
+		public State onExecute(AbstractEvent event)
+		{
+			if(event == StartCommand) return S2_WaitBroadcast;
+			else return this;
+		}
+		@Override
+		public void onExit()
+		{
+		}
+	};
+
+	/**
+	 * S2_WaitBroadcast
+	 *
+	 * Connect to all known hosts
+	 * Wait for HandshakeReceived then jump to S3_Connect
+	 * If a known host accepts the connection first jump to S4_Handshake
+	 * On broadcastClient error jump to S0_Initialize
+	 * On Stop jump to S7_Stop
+	 */
+	private State S2_WaitBroadcast = new State("Wait for broadcast", sm)
+	{
+		@Override
+		public void onEnter()
+		{
+			setHostState(HostState.Disconnected);
+			broadcastClient.startReceiveBroadcast();
+			startProbes();
+		}
+		@Override
+		public State onExecute(AbstractEvent event)
+		{
+			//Check for Stop
+			if(event == StopCommand) return S7_Stop;
+
+			//Check for Handshake receive
+			if(event != null && event.sender == packetHandler)
+			{
+				PacketEvent packetEvent = (PacketEvent) event;
+				switch(packetEvent.getType())
+				{
+				case HandshakeReceived:
+					if(replay != null) break;
+					//Save current host state
+					setHostState(packetEvent.getHandshakePacket().getState());
+					//Save host from received packet
+					host = packetEvent.getHandshakePacket().sender;
+					hostPort = port;
+					hostM1 = packetEvent.getHandshakePacket().M1;
+					hostM2 = packetEvent.getHandshakePacket().M2;
+					return S3_Connect;
+				default:
+					break;
+				}
+			}
+
+			//Check for broadcast client error
+			if(event != null && event.sender == broadcastClient)
+			{
+				BroadcastEvent broadcastEvent = (BroadcastEvent) event;
+				switch(broadcastEvent.getType())
+				{
+					case Canceled:
+						Exception e = broadcastEvent.getException();
+						if(e!=null) notifyError(e);
+						return S0_Initialize;
+					default:
+						break;
+				}
+			}
+			//Check for known host connected
+			int i = (event != null) ? probes.indexOf(event.sender) : -1;
+			if(i >= 0 && ((TcpEvent) event).getType() == TcpEvent.TcpEventType.Connected)
+			{
+				KnownHost h = probeHosts.get(i);
+				probes.remove(i);
+				probeHosts.remove(i);
+				tcpClient = (AsyncTcpClient) event.sender;
+				tcpClient.setLinkMetrics(linkMetrics);
+				packetHandler.setTcpClient(tcpClient);
+				host = h.address;
+				hostPort = h.port;
+				hostM1 = h.M1;
+				hostM2 = h.M2;
+				return S4_Handshake;
+			}
+
+			if(!broadcastClient.isActive()) return S0_Initialize;
+			
+			return this;
+		}
+		@Override
+		public void onExit()
+		{
+			broadcastClient.cancelReceiveBroadcast();
+			cancelProbes();
+		}
+	};
+
+	/**
+	 * S3_Connect
+	 *
+	 * Initialize TCP connection
+	 * Wait for TCP connection accepted then jump to S4_Handshake
+	 * On tcpClient error or manual restart jump to S6_Restart
+	 * On Stop jump to S7_Stop
+	 */
+	private State S3_Connect = new State("Connect TCP client", sm)
+	{
+
+		@Override
+		public void onEnter()
+		{
+			ReplayClient r = replay;
+			tcpClient = (r != null) ? r : new AsyncTcpClient(host, hostPort, selector);
+			tcpClient.setLinkMetrics(linkMetrics);
+			packetHandler.setTcpClient(tcpClient);
+			tcpClient.addTcpListener(tcpStateListener);
+			tcpClient.startReceiveData();
+		}
+		@Override
+		public State onExecute(AbstractEvent event)
+		{
+			if(event == ResetCommand) return S6_Restart;
+			if(event == StopCommand) return S7_Stop;
+			
+			if(event != null && event.sender == tcpClient)
+			{
+				TcpEvent tcpEvent = (TcpEvent) event;
+				switch(tcpEvent.getType())
+				{
+				case Connected:
+					return S4_Handshake;
+				case Disconnected:
+					Exception e = tcpEvent.getException();
+					if(e!=null) notifyError(e);
+					return S6_Restart;
+				default:
+					break;
+				}
+			}
+			
+			return this;
+		}
+		@Override
+		public void onExit()
+		{
+		}
+		
+	};
+
+	/**
+	 * S4_Handshake
+	 *
+	 * Send Handshake packet once
+	 * Wait for the first StatusPacket or VesselData then jump to S5_Active
+	 * If nothing was received within the handshake timeout send the handshake again
+	 * On tcpClient error, handshake send error, manual restart or if all attempts timed out
+	 * jump to S6_Restart
+	 * On Stop jump to S7_Stop
+	 * If the handshake is not accepted the host will cancel the connection
+	 */
+	private State S4_Handshake = new State("Perform handshake", sm)
+	{
+		long sentAt; //System.nanoTime() of last sent handshake
+		int attempts; //Handshakes sent on this connection
+
+		@Override
+		public void onEnter()
+		{
+			attempts = 0;
+		}
+		@Override
+		public State onExecute(AbstractEvent event)
+		{
+			//Check for manual reset
+			if(event == ResetCommand) return S6_Restart;
+			//Check for stop
+			if(event == StopCommand) return S7_Stop;
+
+			//Check for tcpClient error
+			if(event != null && event.sender == tcpClient)
+			{
+				TcpEvent tcpEvent = (TcpEvent) event;
+				switch(tcpEvent.getType())
+				{
+				case Disconnected:
+					Exception e = tcpEvent.getException();
+					if(e!=null) notifyError(e);
+					return S6_Restart;
+				default:
+					break;
+				}
+			}
+
+			//First packet of the host confirms the handshake
+			//Checked before the timeout, a confirmation executed late must not fail or repeat the handshake
+			if(event != null && event.sender == packetHandler)
+			{
+				PacketEvent packetEvent = (PacketEvent) event;
+				switch(packetEvent.getType())
+				{
+					case StatusPacketReceived:
+						//No answer if the handshake was not sent yet
+						if(attempts == 0) break;
+						handshakeRtt = System.nanoTime() - sentAt;
+						setHostState(packetEvent.getStatusPacket().getState());
+						return S5_Active;
+					case VesselDataReceived:
+						//Not passed to the listeners, the next VesselData follows shortly
+						packetEvent.getVesselData().release();
+						if(attempts == 0) break;
+						handshakeRtt = System.nanoTime() - sentAt;
+						return S5_Active;
+					default:
+						break;
+				}
+			}
+
+			//Send handshake on enter and after every timeout
+			long now = System.nanoTime();
+			boolean timeout = attempts > 0 && now - sentAt >= handshakeTimeout*1000000L;
+			if(timeout && event != null)
+			{
+				//Decide in a step without event, a confirmation may still be queued behind this event
+				sm.scheduleStep(now);
+			}
+			else if(attempts == 0 || timeout)
+			{
+				if(attempts >= handshakeAttempts)
+				{
+					notifyError(new SocketTimeoutException("Handshake not confirmed by host"));
+					return S6_Restart;
+				}
+				try
+				{
+					if(handshakePacket == null)
+					{
+						HandshakePacket HP = new HandshakePacket();
+						HP.M1 = 3;
+						HP.M2 = 1;
+						HP.state = 4;
+						handshakePacket = HP.toPacket();
+					}
+				}
+				catch(PacketException e)
+				{
+					notifyError(e);
+					return S6_Restart;
+				}
+				tcpClient.sendData(handshakePacket);
+				sentAt = now;
+				attempts++;
+				sm.scheduleStep(sentAt + handshakeTimeout*1000000L);
+			}
+
+			return this;
+		}
+		@Override
+		public void onExit()
+		{
+		}
+		
+	};
+
+	/**
+	 * S5_Active
+	 *
+	 * Send data packet on absolute deadlines of the refresh rate or, in OnChange mode, if
+	 * controlData changed and at the heartbeat interval
+	 * Notify listeners if data was received, optionally delayed by the playout buffer
+	 * Measure VesselData period and round-trip time
+	 * On tcpClient error, data send error, stale connection or manual restart jump to S6_Restart
+	 * On Stop jump to S7_Stop
+	 * If everything is fine stay in active state
+	 */
+	private State S5_Active = new State("Active", sm)
+	{
+		long lastSend; //System.nanoTime() of last sent packet
+		long nextSend; //System.nanoTime() of next scheduled packet
+		boolean sent; //A packet was sent on this connection
+		byte[] lastPacket; //Last sent packet, compared in OnChange mode
+		boolean firstData; //Report all fields as changed for the first VesselData
+		long lastData; //System.nanoTime() of last VesselData, 0 if not monitored
+		int sentBits; //ECHO_BITS of the last sent packet
+		int echoBits; //ECHO_BITS waiting to be reported by the host, -1 if none
+		long echoSentAt; //System.nanoTime() of the packet with echoBits
+
+		@Override
+		public void onEnter()
+		{
+			lastSend = System.nanoTime();
+			nextSend = lastSend;
+			sent = false;
+			lastPacket = null;
+			firstData = true;
+			lastData = 0;
+			echoBits = -1;
+			dataPeriod = -1;
+			playoutBuffer.clear();
+			reconnectFailures = 0;
+			if(tcpClient != replay) connectedHost = new KnownHost(host, hostPort, hostM1, hostM2, System.currentTimeMillis());
+			if(disconnectedAt != 0) reconnectTime = (lastSend - disconnectedAt)/1000000L;
+			disconnectedAt = 0;
+		}
+		@Override
+		public State onExecute(AbstractEvent event)
+		{
+			//Check for manual restart
+			if(event == ResetCommand) return S6_Restart;
+			//Check for stop
+			if(event == StopCommand) return S7_Stop;
+
+			//Send scheduled packets on absolute deadlines, so step delays do not add up
+			//Steps are triggered by events and scheduleStep()
+			long now = System.nanoTime();
+			boolean due = now - nextSend >= 0;
+			long wake = nextSend;
+			try
+			{
+				byte[] packet = null;
+				long interval;
+				if(sendMode == SendMode.Periodic)
+				{
+					interval = refresh*1000000L;
+					if(due) packet = controlData.toPacket();
+				}
+				else
+				{
+					interval = heartbeatInterval*1000000L;
+					controlBuffer.clear();
+					controlData.encodeTo(controlBuffer);
+					if(due) packet = controlFrame.clone();
+					else if(!Arrays.equals(controlFrame, lastPacket))
+					{
+						//Send changes immediately, but not faster than the minimum send interval
+						long earliest = lastSend + minSendInterval*1000000L;
+						if(now - earliest >= 0) packet = controlFrame.clone();
+						else if(earliest - wake < 0) wake = earliest;
+					}
+				}
+				if(packet != null)
+				{
+					//Wait for changed control states to show up in VesselData
+					int bits = controlData.MainControls & ECHO_BITS;
+					if(sent && bits != sentBits)
+					{
+						echoBits = bits;
+						echoSentAt = now;
+					}
+					sentBits = bits;
+					if(due && sent) sendJitter.record(Math.abs(now - lastSend - interval));
+					if(due) nextSend += interval;
+					if(!due || now - nextSend >= 0) nextSend = now + interval; //Skip missed deadlines instead of sending a burst
+					wake = nextSend;
+					lastSend = now;
+					lastPacket = packet;
+					sent = true;
+					//Abort and stage are not repeated by the next packet, never replace them
+					tcpClient.sendLatest(packet, ControlPacket.hasTriggers(packet));
+					FlightRecorder r = recorder;
+					if(r != null) r.sent(packet);
+					sentControlPackets++;
+					//Only the triggers that were sent, a trigger set meanwhile goes with the next packet
+					controlData.resetTriggers(packet);
+				}
+			}
+			catch(PacketException e)
+			{
+				notifyError(e);
+				return S6_Restart;
+			}
+
+			//Check liveness, a half-open connection may not be closed for minutes
+			if(lastData != 0 && dataPeriod > 0)
+			{
+				long staleTimeout = Math.max(staleFactor*dataPeriod, MIN_STALE_TIMEOUT*1000000L);
+				long silence = now - lastData;
+				if(silence >= staleTimeout)
+				{
+					notifyStale(silence/1000000L);
+					return S6_Restart;
+				}
+				//Wake up in time to detect a stale connection
+				if(lastData + staleTimeout - wake < 0) wake = lastData + staleTimeout;
+			}
+			if(echoBits >= 0 && now - echoSentAt >= ECHO_TIMEOUT*1000000L) echoBits = -1;
+
+			//Playout buffer settings may be changed from any thread
+			PlayoutBuffer.Mode mode = playoutMode;
+			if(mode != null)
+			{
+				playoutBuffer.setMode(mode);
+				playoutBuffer.setMinDelay(playoutMinDelay);
+			}
+			else if(!playoutBuffer.isEmpty()) playoutBuffer.clear();
+
+			//Check for received data
+			if(event != null && event.sender == packetHandler)
+			{
+				PacketEvent packetEvent = (PacketEvent) event;
+				switch(packetEvent.getType())
+				{
+				case VesselDataReceived:
+					VesselData data = packetEvent.getVesselData();
+					long t = (data.received != 0) ? data.received : System.nanoTime();
+					if(lastData != 0) dataPeriod = (dataPeriod < 0) ? t - lastData : dataPeriod + (t - lastData - dataPeriod)/8;
+					lastData = t;
+					if(echoBits >= 0 && echoBits == controlState(data))
+					{
+						rtt = (rtt < 0) ? t - echoSentAt : rtt + (t - echoSentAt - rtt)/8;
+						echoBits = -1;
+					}
+					if(mode != null) playoutBuffer.add(data, t);
+					else present(data);
+					break;
+				case StatusPacketReceived:
+					setHostState(packetEvent.getStatusPacket().getState());
+					//Host may stop sending VesselData
+					if(hostState != HostState.InFlight)
+					{
+						lastData = 0;
+						dataPeriod = -1;
+					}
+					break;
+				default:
+					break;
+				}
+			}			
+
+			//Check for tcpClient error
+			if(event != null && event.sender == tcpClient)
+			{
+				TcpEvent tcpEvent = (TcpEvent) event;
+				switch(tcpEvent.getType())
+				{
+				case Disconnected:
+					Exception e = tcpEvent.getException();
+					if(e!=null) notifyError(e);
+					return S6_Restart;
+				default:
+					break;
+				}
+			}
+
+			//Pass buffered VesselData on when it is due
+			if(mode != null)
+			{
+				VesselData data;
+				while((data = playoutBuffer.poll(System.nanoTime())) != null) present(data);
+				if(!playoutBuffer.isEmpty() && playoutBuffer.nextPlayout() - wake < 0) wake = playoutBuffer.nextPlayout();
+			}
+			sm.scheduleStep(wake);
+
+			return this;
+		}
+		@Override
+		public void onExit()
+		{
+			disconnectedAt = System.nanoTime();
+			playoutBuffer.clear();
+		}
+
+		/**
+		 * Pass VesselData to the listeners.
+		 *
+		 * @param data VesselData, released with the next call
+		 */
+		void present(VesselData data)
+		{
+			VesselData old = vesselData;
+			vesselData = data;
+			notifyInvalidate(firstData ? null : old);
+			firstData = false;
+			old.release();
+		}
+
+		/**
+		 * Get control states reported by the host in ECHO_BITS layout.
+		 *
+		 * @param data VesselData
+		 * @return MainControls bits
+		 */
+		int controlState(VesselData data)
+		{
+			int bits = 0;
+			if(data.getSAS()) bits |= (1<<7);
+			if(data.getRCS()) bits |= (1<<6);
+			if(data.getLight()) bits |= (1<<5);
+			if(data.getGears()) bits |= (1<<4);
+			if(data.getBrakes()) bits |= (1<<3);
+			return bits;
+		}
+		
+	};
+
+	/**
+	 * S6_Restart
+	 *
+	 * Stop active tcpClient
+	 * Jump to S8_WaitReconnect to dial the last host again
+	 * Jump to S2_WaitBroadcast if there is no host or all reconnect attempts failed
+	 */
+	private State S6_Restart = new State("Restart TCP client", sm)
+	{
+		@Override
+		public void onEnter()
+		{
+			setHostState(HostState.Disconnected);
+			if(tcpClient != null)
+			{
+				tcpClient.removeTcpListener(tcpStateListener);
+				tcpClient.cancelReceiveData();
+				tcpClient = null;
+			}
+		}
+		@Override
+		public State onExecute(AbstractEvent event)
+		{
+			if(host != null && reconnectFailures < reconnectAttempts)
+			{
+				reconnectFailures++;
+				return S8_WaitReconnect;
+			}
+			reconnectFailures = 0;
+			return S2_WaitBroadcast;
+		}
+		@Override
+		public void onExit()
+		{
+		}
+		
+	};
+
+	/**
+	 * S7_Stop
+	 *
+	 * Stop active tcpClient
+	 * Jump to S1_WaitStart
+	 */
+	private State S7_Stop = new State("Shutdown TCP client", sm)
+	{
+		@Override
+		public void onEnter()
+		{
+			setHostState(HostState.Disconnected);
+			//A stopped client does not reconnect
+			disconnectedAt = 0;
+			reconnectFailures = 0;
+			if(tcpClient != null)
+			{
+				tcpClient.removeTcpListener(tcpStateListener);
+				tcpClient.cancelReceiveData();
+				tcpClient = null;
+			}
+		}
+		@Override
+		public State onExecute(AbstractEvent event)
+		{
+			return S1_WaitStart;
+		}
+		@Override
+		public void onExit()
+		{
+		}
+		
+	};
+
+	/**
+	 * S8_WaitReconnect
+	 *
+	 * Wait for the reconnect backoff, then jump to S3_Connect to dial the last host
+	 * The backoff doubles with every failed attempt and is randomized to avoid reconnect storms
+	 * On manual restart jump to S6_Restart
+	 * On Stop jump to S7_Stop
+	 */
+	private State S8_WaitReconnect = new State("Wait for reconnect", sm)
+	{
+		long deadline; //System.nanoTime() of the next attempt
+
+		@Override
+		public void onEnter()
+		{
+			setHostState(HostState.Disconnected);
+			long delay = Math.min((long)RECONNECT_BASE_DELAY << Math.min(reconnectFailures-1, 16), RECONNECT_MAX_DELAY);
+			//Equal jitter: half fixed, half random
+			delay = delay/2 + (long)(reconnectJitter.nextDouble()*(delay/2));
+			deadline = System.nanoTime() + delay*1000000L;
+			sm.scheduleStep(deadline);
+		}
+		@Override
+		public State onExecute(AbstractEvent event)
+		{
+			if(event == ResetCommand) return S6_Restart;
+			if(event == StopCommand) return S7_Stop;
+
+			if(System.nanoTime() - deadline >= 0) return S3_Connect;
+			return this;
+		}
+		@Override
+		public void onExit()
+		{
+		}
+
+	};
+
+}
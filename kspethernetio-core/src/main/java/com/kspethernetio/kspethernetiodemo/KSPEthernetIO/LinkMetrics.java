@@ -0,0 +1,209 @@
+package com.kspethernetio.kspethernetiodemo.KSPEthernetIO;
+
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.PacketException;
+
+/**
+ * Receive statistics of a link.
+ * Counts frames per packet ID, received bytes, packet errors and decoder resyncs and records
+ * the inter-arrival time of frames. Rates are measured over windows of one second.
+ *
+ * Recording does not allocate and is cheap enough to be always on. It is done on the
+ * receiving thread, snapshot() may be called from any thread.
+ */
+public class LinkMetrics
+{
+	private static final long WINDOW = 1000000000L; //Rate window in nanoseconds
+
+	//Totals
+	private final long[] frames = new long[256];
+	private long bytes = 0;
+	private long checksumErrors = 0;
+	private long headerErrors = 0;
+	private long lengthErrors = 0;
+	private long otherErrors = 0;
+	private long resyncs = 0;
+	private final Histogram interArrival = new Histogram();
+	private long lastFrame = 0; //System.nanoTime() of last frame, 0 if none
+
+	//Current rate window
+	private long windowStart = System.nanoTime();
+	private final long[] windowFrames = new long[256];
+	private long windowBytes = 0;
+
+	//Rates of the last completed window
+	private final double[] framesPerSecond = new double[256];
+	private double bytesPerSecond = 0;
+
+	/**
+	 * Count a valid frame.
+	 *
+	 * @param id Packet ID
+	 * @param now System.nanoTime() of arrival
+	 */
+	public synchronized void onFrame(int id, long now)
+	{
+		roll(now);
+		id &= 0xff;
+		frames[id]++;
+		windowFrames[id]++;
+		if(lastFrame != 0) interArrival.record(now - lastFrame);
+		lastFrame = now;
+	}
+
+	/**
+	 * Count received bytes, decoder resyncs and frames rejected by the decoder.
+	 *
+	 * @param n Received bytes
+	 * @param skipped Bytes skipped by the decoder to find the next frame header
+	 * @param rejected Frames dropped by the decoder because of a checksum error
+	 */
+	public synchronized void onRead(int n, long skipped, long rejected)
+	{
+		roll(System.nanoTime());
+		bytes += n;
+		windowBytes += n;
+		resyncs += skipped;
+		checksumErrors += rejected;
+	}
+
+	/**
+	 * Count a rejected frame.
+	 *
+	 * @param e Packet error
+	 */
+	public synchronized void onError(PacketException e)
+	{
+		switch(e.getReason())
+		{
+			case Checksum:
+				checksumErrors++;
+				break;
+			case Header:
+				headerErrors++;
+				break;
+			case Length:
+				lengthErrors++;
+				break;
+			default:
+				otherErrors++;
+				break;
+		}
+	}
+
+	/**
+	 * Clear all statistics.
+	 */
+	public synchronized void reset()
+	{
+		for(int i=0; i<256; i++)
+		{
+			frames[i] = 0;
+			windowFrames[i] = 0;
+			framesPerSecond[i] = 0;
+		}
+		bytes = 0;
+		checksumErrors = 0;
+		headerErrors = 0;
+		lengthErrors = 0;
+		otherErrors = 0;
+		resyncs = 0;
+		interArrival.reset();
+		lastFrame = 0;
+		windowStart = System.nanoTime();
+		windowBytes = 0;
+		bytesPerSecond = 0;
+	}
+
+	/**
+	 * Get copy of the current statistics.
+	 *
+	 * @return Snapshot
+	 */
+	public synchronized Snapshot snapshot()
+	{
+		roll(System.nanoTime());
+		return new Snapshot(this);
+	}
+
+	/**
+	 * Complete the rate window if it has expired.
+	 * Rates are averaged over the whole time since the window started, so a window without
+	 * traffic results in lower rates instead of keeping the last ones.
+	 *
+	 * @param now System.nanoTime()
+	 */
+	private void roll(long now)
+	{
+		long elapsed = now - windowStart;
+		if(elapsed < WINDOW) return;
+		for(int i=0; i<256; i++)
+		{
+			framesPerSecond[i] = windowFrames[i]*1e9/elapsed;
+			windowFrames[i] = 0;
+		}
+		bytesPerSecond = windowBytes*1e9/elapsed;
+		windowBytes = 0;
+		windowStart = now;
+	}
+
+	/**
+	 * Statistics at the time of the snapshot.
+	 */
+	public static class Snapshot
+	{
+		private final long[] frames;
+		private final double[] framesPerSecond;
+		public final long bytes;
+		public final double bytesPerSecond;
+		public final long checksumErrors;
+		public final long headerErrors;
+		public final long lengthErrors;
+		public final long otherErrors;
+		public final long resyncs; //Bytes skipped to find a frame header
+		public final Histogram interArrival; //Time between two frames in nanoseconds
+
+		private Snapshot(LinkMetrics m)
+		{
+			frames = m.frames.clone();
+			framesPerSecond = m.framesPerSecond.clone();
+			bytes = m.bytes;
+			bytesPerSecond = m.bytesPerSecond;
+			checksumErrors = m.checksumErrors;
+			headerErrors = m.headerErrors;
+			lengthErrors = m.lengthErrors;
+			otherErrors = m.otherErrors;
+			resyncs = m.resyncs;
+			interArrival = m.interArrival.copy();
+		}
+
+		/**
+		 * Get number of valid frames.
+		 *
+		 * @param id Packet ID, e.g. DataPackets.VDid
+		 * @return Frames
+		 */
+		public long getFrames(int id)
+		{
+			return frames[id & 0xff];
+		}
+
+		/**
+		 * Get frame rate of the last completed window.
+		 *
+		 * @param id Packet ID, e.g. DataPackets.VDid
+		 * @return Frames per second
+		 */
+		public double getFramesPerSecond(int id)
+		{
+			return framesPerSecond[id & 0xff];
+		}
+
+		@Override
+		public String toString()
+		{
+			return String.format("VD %.1f/s SP %.1f/s %.0f B/s errors %d/%d/%d/%d resyncs %d interArrival %s",
+					getFramesPerSecond(DataPackets.VDid), getFramesPerSecond(DataPackets.SPid), bytesPerSecond,
+					checksumErrors, headerErrors, lengthErrors, otherErrors, resyncs, interArrival);
+		}
+	}
+}
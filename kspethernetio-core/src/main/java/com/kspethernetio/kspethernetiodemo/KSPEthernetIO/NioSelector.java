@@ -0,0 +1,249 @@
+package com.kspethernetio.kspethernetiodemo.KSPEthernetIO;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Single selector thread for all non-blocking channels of a client.
+ * The thread sleeps until a registered channel is ready, a scheduled timer expires or a task
+ * is queued with execute(). There is no polling.
+ *
+ * Channels must only be registered and closed on the selector thread, use execute() to run
+ * code there. All ChannelHandler callbacks are called on the selector thread.
+ */
+public class NioSelector
+{
+	private String name;
+
+	private Selector selector = null;
+	private Thread thread = null;
+	private volatile boolean closed = false;
+
+	//Tasks queued from any thread, executed on the selector thread
+	private ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+
+	//Timers, only accessed on the selector thread
+	private List<Timer> timers = new ArrayList<Timer>();
+
+	/**
+	 * Channel handler.
+	 * Called on the selector thread whenever a registered channel is ready.
+	 */
+	public interface ChannelHandler
+	{
+		void onSelected(SelectionKey key);
+	}
+
+	/**
+	 * Create new selector.
+	 * The selector thread is started with the first execute() call.
+	 *
+	 * @param name Thread name
+	 */
+	public NioSelector(String name)
+	{
+		this.name = name;
+	}
+
+	/**
+	 * Run task on the selector thread.
+	 * Tasks are executed in the order they were queued.
+	 *
+	 * @param task Task
+	 */
+	public void execute(Runnable task)
+	{
+		if(closed) return;
+		tasks.add(task);
+		if(!startThread()) selector.wakeup();
+	}
+
+	/**
+	 * Run task on the selector thread after a delay.
+	 * Must be called on the selector thread.
+	 *
+	 * @param task Task
+	 * @param delay Delay in milliseconds
+	 * @return Timer to cancel the task
+	 */
+	public Timer schedule(Runnable task, long delay)
+	{
+		Timer t = new Timer(task, System.nanoTime() + delay*1000000L);
+		timers.add(t);
+		return t;
+	}
+
+	/**
+	 * Register channel on the selector.
+	 * Must be called on the selector thread.
+	 *
+	 * @param channel Non-blocking channel
+	 * @param ops Interest set
+	 * @param handler Called when the channel is ready
+	 * @return SelectionKey
+	 * @throws ClosedChannelException Channel is closed
+	 */
+	public SelectionKey register(SelectableChannel channel, int ops, ChannelHandler handler) throws ClosedChannelException
+	{
+		return channel.register(selector, ops, handler);
+	}
+
+	/**
+	 * Stop the selector thread after all queued tasks were executed.
+	 * Channels still registered are not closed.
+	 */
+	public void close()
+	{
+		execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				closed = true;
+			}
+		});
+	}
+
+	/**
+	 * Check if the current thread is the selector thread.
+	 *
+	 * @return True if called on the selector thread
+	 */
+	public boolean inSelectorThread()
+	{
+		return Thread.currentThread() == thread;
+	}
+
+	/**
+	 * Start selector thread if not running.
+	 *
+	 * @return True if the thread was started by this call
+	 */
+	private synchronized boolean startThread()
+	{
+		if(thread != null) return false;
+		try
+		{
+			selector = Selector.open();
+		}
+		catch(IOException e)
+		{
+			throw new IllegalStateException("Selector not available", e);
+		}
+		thread = new Thread(loop, name);
+		thread.setDaemon(true);
+		thread.start();
+		return true;
+	}
+
+	/**
+	 * Selector loop.
+	 * Runs queued tasks, expired timers and ready channel handlers.
+	 */
+	private Runnable loop = new Runnable()
+	{
+		@Override
+		public void run()
+		{
+			while(!closed)
+			{
+				Runnable task;
+				while(!closed && (task = tasks.poll()) != null) task.run();
+				if(closed) break;
+
+				long timeout = runTimers();
+
+				try
+				{
+					if(!tasks.isEmpty()) selector.selectNow();
+					else selector.select(timeout);
+				}
+				catch(IOException e)
+				{
+					break;
+				}
+
+				Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+				while(it.hasNext())
+				{
+					SelectionKey key = it.next();
+					it.remove();
+					try
+					{
+						if(key.isValid()) ((ChannelHandler)key.attachment()).onSelected(key);
+					}
+					catch(CancelledKeyException e)
+					{
+						//Channel was closed by the handler
+					}
+				}
+			}
+
+			try { selector.close(); }
+			catch(IOException e) {}
+		}
+	};
+
+	/**
+	 * Run all expired timers.
+	 *
+	 * @return Milliseconds until the next timer expires or 0 if there is no timer
+	 */
+	private long runTimers()
+	{
+		long next = 0;
+		long now = System.nanoTime();
+		for(int i=0; i<timers.size(); i++)
+		{
+			Timer t = timers.get(i);
+			if(t.cancelled)
+			{
+				timers.remove(i--);
+			}
+			else if(t.deadline - now <= 0)
+			{
+				timers.remove(i--);
+				t.task.run();
+			}
+			else
+			{
+				long ms = (t.deadline - now)/1000000L + 1;
+				if(next == 0 || ms < next) next = ms;
+			}
+		}
+		return next;
+	}
+
+	/**
+	 * Scheduled task.
+	 */
+	public static class Timer
+	{
+		private Runnable task;
+		private long deadline;
+		private boolean cancelled = false;
+
+		private Timer(Runnable task, long deadline)
+		{
+			this.task = task;
+			this.deadline = deadline;
+		}
+
+		/**
+		 * Cancel timer.
+		 * Must be called on the selector thread.
+		 */
+		public void cancel()
+		{
+			cancelled = true;
+		}
+	}
+}
@@ -0,0 +1,424 @@
+package com.kspethernetio.kspethernetiodemo.KSPEthernetIO;
+
+import java.net.DatagramPacket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.AsyncBroadcastClient.BroadcastEvent;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.AsyncBroadcastClient.BroadcastEvent.BroadcastEventType;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.AsyncTcpClient.TcpListener;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.HandshakePacket;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.PacketException;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.VesselData;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.VesselDataPool;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.StatusPacket;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.Events.AbstractEvent;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.Events.EventListener;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.Events.EventProvider;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.Events.ListenerList;
+
+/**
+ * PacketHandler is connected to TcpClient. Provides events whenever a VesselData or Handshake
+ * was received.
+ * The events can be received by an EventListener or, without allocating an event per packet,
+ * by a PacketListener.
+ */
+public class PacketHandler extends EventProvider implements EventListener
+{
+	private AsyncTcpClient tcpClient = null;
+	private AsyncBroadcastClient broadcastClient = null;
+	private VesselDataPool vesselDataPool = null;
+
+	//Typed listeners
+	private ListenerList<PacketListener> packetListeners = new ListenerList<PacketListener>(new PacketListener[0]);
+
+	//Receive statistics of the TCP client
+	private volatile LinkMetrics linkMetrics = null;
+
+	//Records the received frames of the TCP client
+	private volatile FlightRecorder recorder = null;
+
+	//Little endian wrapper of the TCP receive buffer
+	private ByteBuffer wrapper = null;
+
+	/**
+	 * Initialize new PacketHandler.
+	 * To receive data and broadcasts an AsyncTcpClient and an AsyncBroadcastClient
+	 * have to be connected via setTcpClient() and setBroadcastClient().
+	 */
+	public PacketHandler()
+	{
+		super();
+	}
+
+	/**
+	 * Set or remove an AsyncTcpClient. The client is not automatically started.
+	 *
+	 * @param client AsyncTcpClient or null
+	 */
+	public void setTcpClient(AsyncTcpClient client)
+	{
+		if(tcpClient != null) tcpClient.removeTcpListener(tcpListener);
+		tcpClient = client;
+		if(tcpClient != null) tcpClient.addTcpListener(tcpListener);
+	}
+
+	/**
+	 * Set or remove an AsyncBroadcastClient. The client is not automatically started.
+	 *
+	 * @param client AsyncBroadcastClient or null
+	 */
+	public void setBroadcastClient(AsyncBroadcastClient client)
+	{
+		if(broadcastClient != null) broadcastClient.removeEventListener(this);
+		broadcastClient = client;
+		broadcastClient.addEventListener(this);
+	}
+
+	/**
+	 * Set or remove a VesselDataPool.
+	 * If set, received VesselData is taken from the pool and has to be released by the
+	 * receiver of the VesselDataReceived event. Otherwise a new VesselData is created for
+	 * each packet.
+	 *
+	 * @param pool VesselDataPool or null
+	 */
+	public void setVesselDataPool(VesselDataPool pool)
+	{
+		vesselDataPool = pool;
+	}
+
+	/**
+	 * Set statistics to record received frames and packet errors of the TCP client.
+	 *
+	 * @param metrics LinkMetrics or null
+	 */
+	public void setLinkMetrics(LinkMetrics metrics)
+	{
+		linkMetrics = metrics;
+	}
+
+	/**
+	 * Set recorder for the raw frames received by the TCP client.
+	 *
+	 * @param recorder FlightRecorder or null
+	 */
+	public void setFlightRecorder(FlightRecorder recorder)
+	{
+		this.recorder = recorder;
+	}
+
+	/**
+	 * Add PacketListener.
+	 *
+	 * @param l PacketListener
+	 */
+	public void addPacketListener(PacketListener l)
+	{
+		packetListeners.add(l);
+	}
+
+	/**
+	 * Remove PacketListener.
+	 *
+	 * @param l PacketListener
+	 */
+	public void removePacketListener(PacketListener l)
+	{
+		packetListeners.remove(l);
+	}
+
+	/**
+	 * Broadcast event listener.
+	 *
+	 * @param event BroadcastEvent
+	 */
+	@Override
+	public void onEvent(AbstractEvent event)
+	{
+		if(event.sender == broadcastClient) broadcastEvent((BroadcastEvent) event);
+	}
+
+	/**
+	 * Handle broadcast event.
+	 * Read received data and try to convert to HandshakePacket.
+	 * Triggers HandshakeReceived event if successful.
+	 *
+	 * @param event BroadcastEvent
+	 */
+	private void broadcastEvent(BroadcastEvent event)
+	{
+		if(event.getType() == BroadcastEventType.Received)
+		{
+			try
+			{
+				DatagramPacket packet = event.getData();
+				HandshakePacket HP = HandshakePacket.fromPacket(
+						ByteBuffer.wrap(packet.getData()).order(ByteOrder.LITTLE_ENDIAN),
+						packet.getOffset(), packet.getLength());
+				HP.sender = packet.getAddress();
+
+				for(PacketListener l : packetListeners.get()) l.onHandshake(this, HP);
+				if(hasEventListeners()) notifyEvent(new PacketEvent(this, PacketEvent.PacketEventType.HandshakeReceived, HP));
+			}
+			catch(PacketException e)
+			{
+				packetError(e);
+			}
+		}
+	}
+
+	/**
+	 * Handle packets received by the TCP client.
+	 * Packets are decoded directly from the receive buffer.
+	 * Triggers VesselDataReceived or StatusPacketReceived if successful.
+	 */
+	private TcpListener tcpListener = new TcpListener()
+	{
+		@Override
+		public void onConnected(AsyncTcpClient client)
+		{
+		}
+		@Override
+		public void onDisconnected(AsyncTcpClient client, Exception e)
+		{
+		}
+		@Override
+		public void onReceived(AsyncTcpClient client, byte[] packet, int off, int len)
+		{
+			LinkMetrics m = linkMetrics;
+			FlightRecorder r = recorder;
+			long now = (m != null || r != null) ? System.nanoTime() : 0;
+			//Record every frame before decoding, including invalid ones
+			if(r != null) r.record(FlightRecorder.RECEIVED, now, packet, off, len);
+			try
+			{
+				int id = DataPackets.getPacketID(packet, off, len);
+				switch(id)
+				{
+					case DataPackets.VDid:
+						vesselDataReceived(packet, off, len);
+						break;
+					case DataPackets.SPid:
+						if(wrapper == null || wrapper.array() != packet)
+							wrapper = ByteBuffer.wrap(packet).order(ByteOrder.LITTLE_ENDIAN);
+						StatusPacket SP = StatusPacket.fromPacket(wrapper, off, len);
+						for(PacketListener l : packetListeners.get()) l.onStatus(PacketHandler.this, SP);
+						if(hasEventListeners()) notifyEvent(new PacketEvent(PacketHandler.this, PacketEvent.PacketEventType.StatusPacketReceived, SP));
+						break;
+					default:
+						//Ignore unkown packet
+						break;
+				}
+				if(m != null) m.onFrame(id, now);
+			}
+			catch(PacketException e)
+			{
+				if(m != null) m.onError(e);
+				packetError(e);
+			}
+		}
+	};
+
+	/**
+	 * Decode VesselData and notify listeners.
+	 * PacketListeners get the VesselData during the call, the VesselDataReceived event
+	 * receives the reference of the PacketHandler.
+	 *
+	 * @param packet Buffer containing the packet
+	 * @param off Offset of the packet header
+	 * @param len Packet length
+	 * @throws PacketException Packet read error
+	 */
+	private void vesselDataReceived(byte[] packet, int off, int len) throws PacketException
+	{
+		VesselData VDP;
+		if(vesselDataPool != null) VDP = vesselDataPool.obtain();
+		else VDP = new VesselData();
+		try
+		{
+			VesselData.decodeInto(packet, off, len, VDP);
+			VDP.received = System.nanoTime();
+		}
+		catch(PacketException e)
+		{
+			VDP.release();
+			throw e;
+		}
+		for(PacketListener l : packetListeners.get()) l.onVesselData(this, VDP);
+		if(hasEventListeners()) notifyEvent(new PacketEvent(this, PacketEvent.PacketEventType.VesselDataReceived, VDP));
+		else VDP.release();
+	}
+
+	/**
+	 * Notify listeners about a packet error.
+	 *
+	 * @param e Exception
+	 */
+	private void packetError(PacketException e)
+	{
+		for(PacketListener l : packetListeners.get()) l.onPacketError(this, e);
+		if(hasEventListeners()) notifyEvent(new PacketEvent(this, PacketEvent.PacketEventType.PacketError, e));
+	}
+
+	/**
+	 * Typed packet listener.
+	 * Alternative to PacketEvents without allocating an event per packet.
+	 * All functions are called on the receiving thread.
+	 */
+	public interface PacketListener
+	{
+		/**
+		 * Handshake broadcast received.
+		 *
+		 * @param sender PacketHandler
+		 * @param packet HandshakePacket
+		 */
+		void onHandshake(PacketHandler sender, HandshakePacket packet);
+
+		/**
+		 * VesselData received.
+		 * The VesselData may be recycled after the call returns. Call VesselData.retain()
+		 * to keep it and VesselData.release() when done.
+		 *
+		 * @param sender PacketHandler
+		 * @param data VesselData
+		 */
+		void onVesselData(PacketHandler sender, VesselData data);
+
+		/**
+		 * StatusPacket received.
+		 *
+		 * @param sender PacketHandler
+		 * @param packet StatusPacket
+		 */
+		void onStatus(PacketHandler sender, StatusPacket packet);
+
+		/**
+		 * Invalid packet received.
+		 *
+		 * @param sender PacketHandler
+		 * @param e Exception
+		 */
+		void onPacketError(PacketHandler sender, PacketException e);
+	}
+
+	/**
+	 * Packet event
+	 */
+	public static class PacketEvent extends AbstractEvent
+	{
+		public enum PacketEventType {HandshakeReceived, VesselDataReceived, StatusPacketReceived, PacketError}
+		private static final PacketEventType[] types = PacketEventType.values();
+
+		/**
+		 * Create PacketEvent with HandshakePacket.
+		 *
+		 * @param sender PacketHandler
+		 * @param t PacketEventType
+		 * @param arg HandshakePacket
+		 */
+		public PacketEvent(PacketHandler sender, PacketEventType t, HandshakePacket arg)
+		{
+			super(sender, t.ordinal(), arg);
+		}
+
+		/**
+		 * Create PacketEvent with VesselData.
+		 *
+		 * @param sender PacketHandler
+		 * @param t PacketEventType
+		 * @param arg VesselData
+		 */
+		public PacketEvent(PacketHandler sender, PacketEventType t, VesselData arg)
+		{
+			super(sender, t.ordinal(), arg);
+		}
+
+		/**
+		 * Create PacketEvent with StatusPacket.
+		 *
+		 * @param sender PacketHandler
+		 * @param t PacketEventType
+		 * @param arg StatusPacket
+		 */
+		public PacketEvent(PacketHandler sender, PacketEventType t, StatusPacket arg)
+		{
+			super(sender, t.ordinal(), arg);
+		}
+
+		/**
+		 * Create PacketEvent with Exception.
+		 *
+		 * @param sender PacketHandler
+		 * @param t PacketEventType
+		 * @param arg Exception
+		 */
+		public PacketEvent(PacketHandler sender, PacketEventType t, Exception arg)
+		{
+			super(sender, t.ordinal(), arg);
+		}
+
+		/**
+		 * Create PacketEvent without argument.
+		 *
+		 * @param sender PacketHandler
+		 * @param t PacketEventType
+		 */
+		public PacketEvent(PacketHandler sender, PacketEventType t)
+		{
+			super(sender, t.ordinal(), null);
+		}
+
+		/**
+		 * Get Packet event identifier.
+		 *
+		 * @return PacketEventType
+		 */
+		public PacketEventType getType()
+		{
+			return types[id];
+		}
+
+		/**
+		 * Get HandshakePacket from HandshakeReceived event.
+		 *
+		 * @return HandshakePacket
+		 */
+		public HandshakePacket getHandshakePacket()
+		{
+			return (HandshakePacket)arg;
+		}
+
+		/**
+		 * Get VesselData from VesselDataReceived event.
+		 *
+		 * @return VesselData
+		 */
+		public VesselData getVesselData()
+		{
+			return (VesselData)arg;
+		}
+
+		/**
+		 * Get StatusPacket from StatusPacketReceived event.
+		 *
+		 * @return StatusPacket
+		 */
+		public StatusPacket getStatusPacket()
+		{
+			return (StatusPacket)arg;
+		}
+
+		/**
+		 * Get Exception from PacketError event.
+		 *
+		 * @return Exception
+		 */
+		public Exception getException()
+		{
+			return (Exception)arg;
+		}
+	}
+
+}
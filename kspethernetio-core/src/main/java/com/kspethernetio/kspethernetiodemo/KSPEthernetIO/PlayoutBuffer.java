@@ -0,0 +1,205 @@
+package com.kspethernetio.kspethernetiodemo.KSPEthernetIO;
+
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.VesselData;
+
+/**
+ * Adaptive playout buffer for VesselData.
+ *
+ * Frames are timestamped on arrival and released on a steady clock, spaced by the measured
+ * VesselData period, so network jitter does not show up as stutter. The playout delay is
+ * adapted to the jitter estimated from the arrival times (RFC 3550 interarrival jitter):
+ *  - LowLatency: delay = max(minDelay, 2*jitter)
+ *  - Smooth: delay = max(minDelay, period + 4*jitter)
+ * A frame is never released before its arrival and never later than its arrival plus the
+ * playout delay.
+ *
+ * Not thread safe, all functions except the getters must be called on the same thread.
+ * The buffer owns the VesselData references passed to add() until they are returned by poll()
+ * or released by clear().
+ */
+public class PlayoutBuffer
+{
+	private static final int CAPACITY = 16;
+
+	/**
+	 * Playout mode.
+	 */
+	public enum Mode {LowLatency, Smooth}
+
+	private Mode mode;
+	private long minDelay; //Nanoseconds
+
+	//Ring buffer of waiting frames
+	private final VesselData[] frames = new VesselData[CAPACITY];
+	private final long[] playout = new long[CAPACITY]; //System.nanoTime() to release the frame
+	private int head = 0;
+	private int size = 0;
+
+	//Estimation, all in nanoseconds
+	private long lastArrival = 0;
+	private long lastPlayout = 0;
+	private volatile long period = 0;
+	private volatile long jitter = 0;
+	private volatile long delay = 0;
+	private volatile long dropped = 0;
+
+	/**
+	 * Create playout buffer.
+	 *
+	 * @param mode Playout mode
+	 * @param minDelay Minimum playout delay in milliseconds
+	 */
+	public PlayoutBuffer(Mode mode, int minDelay)
+	{
+		this.mode = mode;
+		this.minDelay = minDelay*1000000L;
+		delay = this.minDelay;
+	}
+
+	/**
+	 * Set playout mode.
+	 *
+	 * @param mode Playout mode
+	 */
+	public void setMode(Mode mode)
+	{
+		this.mode = mode;
+	}
+
+	/**
+	 * Set minimum playout delay.
+	 *
+	 * @param minDelay Minimum playout delay in milliseconds
+	 */
+	public void setMinDelay(int minDelay)
+	{
+		this.minDelay = minDelay*1000000L;
+	}
+
+	/**
+	 * Add received frame.
+	 * If the buffer is full the oldest frame is released and dropped.
+	 *
+	 * @param data VesselData, the reference is taken over by the buffer
+	 * @param arrival System.nanoTime() of arrival
+	 */
+	public void add(VesselData data, long arrival)
+	{
+		if(lastArrival != 0)
+		{
+			long d = arrival - lastArrival;
+			if(period == 0) period = d;
+			else period += (d - period)/16;
+			jitter += (Math.abs(d - period) - jitter)/16;
+		}
+		lastArrival = arrival;
+		if(mode == Mode.Smooth) delay = Math.max(minDelay, period + 4*jitter);
+		else delay = Math.max(minDelay, 2*jitter);
+
+		//Steady spacing, but within arrival and arrival+delay
+		long t = (lastPlayout != 0) ? lastPlayout + period : arrival + delay;
+		if(t - arrival < 0) t = arrival;
+		if(t - (arrival + delay) > 0) t = arrival + delay;
+
+		if(size == CAPACITY)
+		{
+			frames[head].release();
+			frames[head] = null;
+			head = (head+1)%CAPACITY;
+			size--;
+			dropped++;
+		}
+		int i = (head+size)%CAPACITY;
+		frames[i] = data;
+		playout[i] = t;
+		size++;
+		lastPlayout = t;
+	}
+
+	/**
+	 * Take the next frame if it is due.
+	 *
+	 * @param now System.nanoTime()
+	 * @return VesselData or null if no frame is due, the caller has to release it
+	 */
+	public VesselData poll(long now)
+	{
+		if(size == 0 || now - playout[head] < 0) return null;
+		VesselData d = frames[head];
+		frames[head] = null;
+		head = (head+1)%CAPACITY;
+		size--;
+		return d;
+	}
+
+	/**
+	 * Check if frames are waiting.
+	 *
+	 * @return True if not empty
+	 */
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	/**
+	 * Get release time of the next frame.
+	 * Only valid if the buffer is not empty.
+	 *
+	 * @return System.nanoTime() of the next playout
+	 */
+	public long nextPlayout()
+	{
+		return playout[head];
+	}
+
+	/**
+	 * Release all waiting frames and restart the estimation.
+	 */
+	public void clear()
+	{
+		while(size > 0)
+		{
+			frames[head].release();
+			frames[head] = null;
+			head = (head+1)%CAPACITY;
+			size--;
+		}
+		head = 0;
+		lastArrival = 0;
+		lastPlayout = 0;
+		period = 0;
+		jitter = 0;
+		delay = minDelay;
+	}
+
+	/**
+	 * Get current playout delay.
+	 *
+	 * @return Delay in nanoseconds
+	 */
+	public long getDelay()
+	{
+		return delay;
+	}
+
+	/**
+	 * Get estimated arrival jitter.
+	 *
+	 * @return Jitter in nanoseconds
+	 */
+	public long getJitter()
+	{
+		return jitter;
+	}
+
+	/**
+	 * Get number of frames dropped because the buffer was full.
+	 *
+	 * @return Dropped frames
+	 */
+	public long getDropped()
+	{
+		return dropped;
+	}
+}
@@ -0,0 +1,327 @@
+package com.kspethernetio.kspethernetiodemo.KSPEthernetIO;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a FlightRecorder recording instead of connecting to a host.
+ * Delivers the recorded frames through the same listeners and events as AsyncTcpClient, so it
+ * can be passed wherever an AsyncTcpClient is expected, e.g. to PacketHandler.setTcpClient()
+ * or KSPEthernetClient.setReplay().
+ *
+ * Frames are paced by their recorded receive time, scaled by the replay speed. A speed of 0
+ * replays as fast as possible, which measures the throughput of everything behind the client.
+ * Sent data is discarded and recorded ControlPackets are skipped.
+ *
+ * Every connection plays on its own thread, all events are delivered on that thread.
+ * startReceiveData() continues at the position of the last cancel. At the end of the
+ * recording the connection is closed with an EOFException and the next connection starts
+ * from the beginning. Note that KSPEthernetClient reconnects if a pause is longer than its
+ * stale timeout, the replay then continues at the same position.
+ */
+public class ReplayClient extends AsyncTcpClient
+{
+	public static final double AS_FAST_AS_POSSIBLE = 0;
+	public static final double REAL_TIME = 1;
+
+	private static final long PAUSE_POLL = 100000000L; //Nanoseconds
+
+	private final File directory;
+	private final String name;
+
+	private final AtomicBoolean active = new AtomicBoolean(false);
+	private volatile Thread thread = null; //Thread of the current connection
+
+	//Playback control
+	private volatile double speed = REAL_TIME;
+	private volatile boolean paused = false;
+	private volatile long seekTarget = -1; //Nanoseconds from recording start, -1 if none
+	private volatile long position = 0; //Nanoseconds from recording start of the last frame
+
+	//Statistics
+	private volatile LinkMetrics linkMetrics = null;
+	private volatile long frames = 0;
+	private volatile long discarded = 0;
+
+	/**
+	 * Create replay of a recording.
+	 *
+	 * @param directory Directory of the segment files
+	 * @param name Segment file name prefix
+	 */
+	public ReplayClient(File directory, String name)
+	{
+		super((InetAddress) null, 0, null);
+		this.directory = directory;
+		this.name = name;
+	}
+
+	/**
+	 * Set replay speed.
+	 *
+	 * @param speed Factor of the recorded speed, REAL_TIME or AS_FAST_AS_POSSIBLE
+	 */
+	public void setSpeed(double speed)
+	{
+		this.speed = Math.max(0, speed);
+		Thread t = thread;
+		if(t != null) LockSupport.unpark(t);
+	}
+
+	/**
+	 * Get replay speed.
+	 *
+	 * @return Factor of the recorded speed, 0 is as fast as possible
+	 */
+	public double getSpeed()
+	{
+		return speed;
+	}
+
+	/**
+	 * Pause replay.
+	 * The connection stays open, no frames are delivered until resume() is called.
+	 */
+	public void pause()
+	{
+		paused = true;
+	}
+
+	/**
+	 * Continue paused replay.
+	 */
+	public void resume()
+	{
+		paused = false;
+		Thread t = thread;
+		if(t != null) LockSupport.unpark(t);
+	}
+
+	/**
+	 * Check if the replay is paused.
+	 *
+	 * @return True if paused
+	 */
+	public boolean isPaused()
+	{
+		return paused;
+	}
+
+	/**
+	 * Continue replay at another position.
+	 * Takes effect immediately if connected, otherwise with the next connection.
+	 *
+	 * @param ms Milliseconds from the start of the recording
+	 */
+	public void seek(long ms)
+	{
+		position = ms*1000000L;
+		seekTarget = position;
+		Thread t = thread;
+		if(t != null) LockSupport.unpark(t);
+	}
+
+	/**
+	 * Get replay position.
+	 *
+	 * @return Milliseconds from the start of the recording to the last delivered frame
+	 */
+	public long getPosition()
+	{
+		return position/1000000L;
+	}
+
+	/**
+	 * Get number of delivered frames.
+	 *
+	 * @return Frames since the client was created
+	 */
+	public long getFrames()
+	{
+		return frames;
+	}
+
+	/**
+	 * Get number of sendData() and sendLatest() calls while connected.
+	 *
+	 * @return Discarded frames
+	 */
+	public long getDiscardedFrames()
+	{
+		return discarded;
+	}
+
+	@Override
+	public void setLinkMetrics(LinkMetrics metrics)
+	{
+		linkMetrics = metrics;
+	}
+
+	@Override
+	public void startReceiveData()
+	{
+		//If already connected do nothing
+		if(active.getAndSet(true)) return;
+		Thread t = new Thread(new Playback(position), "Replay");
+		thread = t;
+		t.start();
+	}
+
+	@Override
+	public void cancelReceiveData()
+	{
+		if(!active.getAndSet(false)) return;
+		Thread t = thread;
+		if(t != null) LockSupport.unpark(t);
+	}
+
+	@Override
+	public boolean isActive()
+	{
+		return active.get();
+	}
+
+	@Override
+	public void sendData(byte[] data)
+	{
+		if(isActive()) discarded++;
+	}
+
+	@Override
+	public void sendLatest(byte[] data)
+	{
+		if(isActive()) discarded++;
+	}
+
+	@Override
+	public void sendLatest(byte[] data, boolean keep)
+	{
+		if(isActive()) discarded++;
+	}
+
+	/**
+	 * Replay of one connection.
+	 */
+	private class Playback implements Runnable
+	{
+		private long start; //Nanoseconds from recording start to begin with
+		private FlightRecorder.Reader reader = null;
+		private long first = 0; //Recorded time of the first record
+		private boolean loaded = false; //Reader holds a record that was not delivered yet
+
+		Playback(long start)
+		{
+			this.start = start;
+		}
+
+		@Override
+		public void run()
+		{
+			Exception error = null;
+			try
+			{
+				open(start);
+				if(isCurrent()) notifyConnected();
+
+				//Recording position and System.nanoTime() the pacing is based on
+				double anchorSpeed = -1;
+				long anchorTime = 0;
+				long anchorPosition = 0;
+				while(active.get() && isCurrent())
+				{
+					long target = seekTarget;
+					if(target >= 0)
+					{
+						seekTarget = -1;
+						open(target);
+						anchorSpeed = -1;
+					}
+					if(paused)
+					{
+						LockSupport.parkNanos(PAUSE_POLL);
+						anchorSpeed = -1;
+						continue;
+					}
+					if(!loaded)
+					{
+						error = new EOFException("End of recording");
+						position = 0;
+						break;
+					}
+
+					long p = reader.getTime() - first;
+					double s = speed;
+					if(s != anchorSpeed)
+					{
+						anchorSpeed = s;
+						anchorTime = System.nanoTime();
+						anchorPosition = p;
+					}
+					if(s > 0)
+					{
+						long wait = anchorTime + (long)((p - anchorPosition)/s) - System.nanoTime();
+						if(wait > 0)
+						{
+							//Wakes early on speed, pause, seek or cancel
+							LockSupport.parkNanos(wait);
+							continue;
+						}
+					}
+
+					if(reader.getType() == FlightRecorder.RECEIVED)
+					{
+						LinkMetrics m = linkMetrics;
+						if(m != null) m.onRead(reader.getLength(), 0, 0);
+						notifyReceived(reader.getData(), 0, reader.getLength());
+						frames++;
+					}
+					position = p;
+					loaded = reader.next();
+				}
+			}
+			catch(IOException e)
+			{
+				error = e;
+			}
+			finally
+			{
+				if(reader != null) reader.close();
+			}
+
+			//A playback started after cancelReceiveData() owns the connection now
+			if(!isCurrent()) return;
+			//Closed by the end of the recording, an error or cancelReceiveData()
+			if(error != null) active.set(false);
+			notifyDisconnected(error);
+		}
+
+		/**
+		 * Check if this playback is the one of the current connection.
+		 *
+		 * @return False if replaced by a newer playback
+		 */
+		private boolean isCurrent()
+		{
+			return thread == Thread.currentThread();
+		}
+
+		/**
+		 * Open the recording at a position.
+		 *
+		 * @param target Nanoseconds from recording start
+		 * @throws IOException Recording invalid
+		 */
+		private void open(long target) throws IOException
+		{
+			if(reader != null) reader.close();
+			reader = new FlightRecorder.Reader(directory, name);
+			loaded = reader.next();
+			if(loaded) first = reader.getTime();
+			while(loaded && reader.getTime() - first < target) loaded = reader.next();
+		}
+	}
+}
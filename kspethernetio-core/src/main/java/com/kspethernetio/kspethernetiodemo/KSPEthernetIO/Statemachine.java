@@ -0,0 +1,631 @@
+package com.kspethernetio.kspethernetiodemo.KSPEthernetIO;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.Events.AbstractEvent;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.Events.EventListener;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.Events.ListenerList;
+
+/**
+ * Statemachine can start and stop a statemachine made of State-Objects.
+ * Provides a Listener interface to recognize statechanges.
+ * Acts as EventListener to forward AbstractEvents to the States.
+ *
+ * All steps run on one long-lived executor thread. A step is executed immediately when an
+ * event is received and passes all pending events to the active State in FIFO order.
+ * Without events the thread sleeps. States which implement timers request a step at an
+ * absolute deadline with scheduleStep(). An optional periodic tick executes the active
+ * State without event for States that poll.
+ * 
+ * @author Josh Perske
+ */
+public class Statemachine implements EventListener
+{	
+	private String name; 
+	
+	private static final int NO_TICK = 0;
+	private static final int STANDARD_EVENT_QUEUE_SIZE = 256;
+	private int stepDelay;
+	
+	//State data
+	private volatile State current;
+	private volatile boolean stop;
+
+	//Step executor, created on start() and shut down when the Statemachine stops
+	private volatile ScheduledThreadPoolExecutor executor = null;
+	private volatile Thread stepThread = null;
+	private AtomicBoolean stepPending = new AtomicBoolean(false);
+	private ScheduledFuture<?> scheduledStep = null; //Only accessed on the executor thread
+	private long scheduledDeadline;
+	
+	//List of all states
+	private int nextStateID = 1;
+	private List<State> states = new ArrayList<State>();
+	
+	/**
+	 * Create a new Statemachine without timer tick.
+	 * @param name Name of the Statemachine
+	 */
+	public Statemachine(String name)
+	{
+		this(name, NO_TICK);
+	}
+
+	/**
+	 * Create a new Statemachine.
+	 * @param name Name of the Statemachine
+	 * @param delay Period of the timer tick calling onExecute() without event in milliseconds,
+	 *              0 for no tick
+	 */
+	public Statemachine(String name, int delay)
+	{
+		this.current = null;
+		this.stop = true;
+		this.name = name;
+		
+		stepDelay = delay;
+	}
+	
+	/**
+	 * State as part of a Statemachine.
+	 * Each State provides the functions
+	 *  - onEnter
+	 *  - onExecute
+	 *  - onExit
+	 * These functions are called automatically after starting the statemachine
+	 */
+	public static abstract class State
+	{
+		private String name;
+		private Statemachine parent;
+		private int id;
+		
+		/**
+		 * Create a new State and assign to a Statemachine.
+		 * @param name State name
+		 * @param parent Statemachine
+		 */
+		public State(String name, Statemachine parent)
+		{
+			this.name = name;
+			this.parent = parent;
+			//Add to parent statemachine
+			id = parent.nextStateID;
+			parent.nextStateID++;
+			parent.states.add(this);
+		}
+		
+		/**
+		 * Returns the State name
+		 * @return State name
+		 */
+		public String getName()
+		{
+			return name;
+		}
+		/**
+		 * Returns the State ID > 0
+		 * @return ID > 0
+		 */
+		public int getID()
+		{
+			return id;
+		}
+		/**
+		 * Returns the parent Statemachine
+		 * @return Statemachine
+		 */
+		public Statemachine getStatemachine()
+		{
+			return parent;
+		}
+		/**
+		 * Return the name of the State, its ID and the parent Statemachine
+		 * @return String with State data
+		 */
+		@Override
+		public String toString()
+		{
+			return "State \"" + name + "\" (ID:" + Integer.toString(id) + ") in \"" + parent.getName();
+		}
+		
+		/**
+		 * Once called when the State is entered.
+		 */
+		public abstract void onEnter();
+		/**
+		 * Cyclic called while the State is active.
+		 * Returns the next state. If return value is 'null',
+		 * the Statemachine is stopped and the Finished event
+		 * is triggered. If return value is 'this' the
+		 * Statemachnine stays in current state.
+		 * @param event null or ActionEvent
+		 * @return Next State
+		 */
+		public abstract State onExecute(AbstractEvent event);
+		/**
+		 * Once called when the State is finished.
+		 */
+		public abstract void onExit();
+	}
+
+	/**
+	 * Start the Statemachine with initial State.
+	 * Does nothing if statemachine is already active.
+	 * If a stop is still pending, waits until the last step of the previous run is finished.
+	 * @param initial The initial state after start()
+	 */
+	public void start(State initial)
+	{
+		if(initial == null || !awaitStopped()) return;
+		synchronized(this)
+		{
+			//Check if statemachine is active or still stopping
+			if(isActive() || executor != null) return;
+			//Start statemachine
+			current = initial;
+			stop = false;
+			clearEventStack();
+			triggerStatemachineStarted();
+			current.onEnter();
+			startExecutor();
+			triggerNextStep();
+		}
+	}
+	/**
+	 * Start the Statemachine at State with given id.
+	 * Does nothing if statemachine is already active.
+	 * @param id The id of the initial state
+	 */
+	public void start(int id)
+	{
+		start(getState(id));
+	}
+	/**
+	 * Stop the Statemachine.
+	 * Does nothing if statemachine is not active.
+	 */
+	public void stop()
+	{
+		if(isActive())
+		{
+			stop = true;
+			triggerNextStep();
+		}
+	}
+	/**
+	 * Returns true if the Statemachine is active.
+	 * @return true if active
+	 */
+	public boolean isActive()
+	{
+		return !stop;	
+	}
+
+	/**
+	 * Returns the active State or null.
+	 * @return The active State or null.
+	 */
+	public State getActiveState()
+	{
+		return current;
+	}
+	/**
+	 * Returns the active State ID.
+	 * Return -1 if the Statemachine is not active.
+	 * @return The active State ID or -1.
+	 */
+	public int getActiveStateID()
+	{
+		if(current != null) return current.getID();
+		return -1;
+	}
+	/**
+	 * Returns the State with the given ID.
+	 * @return The State or null.
+	 */
+	public State getState(int id)
+	{
+		for(State s : states)
+			if(s.getID() == id) return s;
+		return null;
+	}
+	
+	
+	/**
+	 * Returns the name of the Statemachine
+	 * @return Name of the Statemachine
+	 */
+	public String getName()
+	{
+		return name;
+	}
+	/**
+	 * Returns a string with the Statemachine data and a list of the States.
+	 * @return String representing the Statemachine.
+	 */
+	@Override
+	public String toString()
+	{
+		String str = "Statemachine \"" + name + "\" is ";
+		if(isActive()) str += "active";
+		else str += "inactive";
+		for(State s : states)
+		{
+			if(current == s) str+="\n > ";
+			else str+="\n   ";
+			str+=s.getName()+" (ID:"+s.getID()+")";
+		}
+		return str;
+	}
+	
+	/**
+	 * Wait until the executor of a stopped Statemachine has terminated.
+	 * Returns immediately if the Statemachine is active or not stopping.
+	 * @return False if called from a step of the stopping Statemachine or interrupted
+	 */
+	private boolean awaitStopped()
+	{
+		ScheduledThreadPoolExecutor e = executor;
+		if(e == null || isActive()) return true;
+		if(Thread.currentThread() == stepThread) return false;
+		try
+		{
+			e.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+			return true;
+		}
+		catch(InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	/**
+	 * Create step executor and start the timer tick if enabled.
+	 */
+	private void startExecutor()
+	{
+		stepPending.set(false);
+		ScheduledThreadPoolExecutor e = new ScheduledThreadPoolExecutor(1, new ThreadFactory()
+		{
+			@Override
+			public Thread newThread(Runnable r)
+			{
+				Thread t = new Thread(r, name);
+				t.setDaemon(true);
+				stepThread = t;
+				return t;
+			}
+		});
+		//Steps still queued on shutdown must not run after a restart
+		e.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+		if(stepDelay > 0) e.scheduleWithFixedDelay(runStep, stepDelay, stepDelay, TimeUnit.MILLISECONDS);
+		executor = e;
+	}
+
+	/**
+	 * Shut down step executor.
+	 * Called from the executor thread after the last step.
+	 */
+	private void stopExecutor()
+	{
+		ScheduledExecutorService e = executor;
+		executor = null;
+		if(scheduledStep != null) scheduledStep.cancel(false);
+		scheduledStep = null;
+		if(e != null) e.shutdown();
+	}
+
+	/**
+	 * Execute a step at an absolute deadline.
+	 * Must be called from a State. Only the latest deadline is kept, an earlier requested
+	 * step that has not been executed yet is cancelled.
+	 *
+	 * @param deadline System.nanoTime() of the step
+	 */
+	public void scheduleStep(long deadline)
+	{
+		ScheduledExecutorService e = executor;
+		if(e == null) return;
+		if(scheduledStep != null)
+		{
+			if(scheduledDeadline == deadline && !scheduledStep.isDone()) return;
+			scheduledStep.cancel(false);
+		}
+		scheduledDeadline = deadline;
+		try
+		{
+			scheduledStep = e.schedule(scheduledTrigger, deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+		}
+		catch(RejectedExecutionException ex)
+		{
+			//Statemachine was stopped meanwhile
+			scheduledStep = null;
+		}
+	}
+
+	/**
+	 * Execute a step requested with scheduleStep().
+	 */
+	private Runnable scheduledTrigger = new Runnable()
+	{
+		@Override
+		public void run()
+		{
+			triggerNextStep();
+		}
+	};
+
+	/**
+	 * Register the next step to be executed as soon as possible.
+	 * Does nothing if a step is already pending.
+	 */
+	private void triggerNextStep()
+	{
+		ScheduledExecutorService e = executor;
+		if(e == null || stepPending.getAndSet(true)) return;
+		try
+		{
+			e.execute(runStep);
+		}
+		catch(RejectedExecutionException ex)
+		{
+			//Statemachine was stopped meanwhile
+			stepPending.set(false);
+		}
+	}
+
+	/**
+	 * Execution of the next step.
+	 * Runs on the executor thread, triggered by an event, scheduleStep() or the timer tick.
+	 */
+	private Runnable runStep = new Runnable()
+	{		
+		@Override
+		public void run()
+		{
+			stepPending.set(false);
+			if(current == null) return;
+
+			//Check if stop is requested
+			if(!isActive())
+			{
+				//stop
+				current.onExit();
+				clearEventStack();
+				current = null;
+				stopExecutor();
+				triggerStatemachineStopped();
+			}
+			else
+			{
+				//Execute all pending events, or once without event on timer tick
+				AbstractEvent event = nextEvent();
+				State next;
+				do
+				{
+					next = current.onExecute(event);
+					//A requested stop is handled by the next step, triggered by stop()
+					if(next != current || !isActive()) break;
+					event = nextEvent();
+				}
+				while(event != null);
+
+				if(next == null)
+				{
+					//Statemachine is finished
+					current.onExit();
+					clearEventStack();
+					current = null;
+					stop = true;
+					stopExecutor();
+					triggerStatemachineFinished();
+				}
+				else if(next != current)
+				{
+					State old = current;
+					//State changed
+					current.onExit();
+					clearEventStack();
+					current = next;
+					current.onEnter();
+					triggerStatemachineStateChanged(old, current);
+					//Execute new state immediately
+					triggerNextStep();
+				}
+			}
+		}
+	};
+	
+	
+	/**
+	 * Listeners
+	 */
+	private ListenerList<StatemachineListener> listeners = new ListenerList<StatemachineListener>(new StatemachineListener[0]);
+	/**
+	 * Add a new StatemachineListener
+	 * @param l New Listener
+	 */
+	public void addStatemachineListener(StatemachineListener l)
+	{
+		listeners.add(l);
+	}
+	/**
+	 * Remove a StatemachineListener
+	 * @param l Listener to remove
+	 */
+	public void removeStatemachineListener(StatemachineListener l)
+	{
+		listeners.remove(l);
+	}
+	
+	/**
+	 * Listener trigger functions
+	 */	
+	private void triggerStatemachineStarted()
+	{
+		for(StatemachineListener l : listeners.get()) l.statemachineStarted(this);
+	}
+	private void triggerStatemachineFinished()
+	{
+		for(StatemachineListener l : listeners.get()) l.statemachineFinished(this);
+	}
+	private void triggerStatemachineStopped()
+	{
+		for(StatemachineListener l : listeners.get()) l.statemachineStopped(this);
+	}
+	private void triggerStatemachineStateChanged(State os, State ns)
+	{
+		for(StatemachineListener l : listeners.get()) l.statemachineStateChanged(this, os, ns);
+	}
+	
+	/**
+	 * StatemachineListener prototype
+	 */
+	public static interface StatemachineListener
+	{
+		public void statemachineStarted(Statemachine sm);
+		public void statemachineFinished(Statemachine sm);
+		public void statemachineStopped(Statemachine sm);
+		public void statemachineStateChanged(Statemachine sm, State os, State ns);
+	}
+
+	/**
+	 * Coalescing policy for the event queue.
+	 * Of all queued coalescable events only the latest one is passed to the State. It takes
+	 * the queue position of the oldest unprocessed coalescable event.
+	 */
+	public static interface CoalescingPolicy
+	{
+		/**
+		 * Check if only the latest event of this kind has to be kept.
+		 * Called on the thread delivering the event.
+		 * @param event Incoming event
+		 * @return True if the event may replace older queued events
+		 */
+		public boolean isCoalescable(AbstractEvent event);
+		/**
+		 * Called for every event that is removed from the queue without being executed.
+		 * @param event Replaced or dropped event
+		 */
+		public void onDropped(AbstractEvent event);
+	}
+
+	/**
+	 * Set coalescing policy.
+	 * @param policy CoalescingPolicy or null to keep all events
+	 */
+	public void setCoalescingPolicy(CoalescingPolicy policy)
+	{
+		coalescingPolicy = policy;
+	}
+	/**
+	 * Set maximum number of queued events.
+	 * If the queue is full new events are dropped.
+	 * @param size Queue capacity
+	 */
+	public void setEventQueueSize(int size)
+	{
+		eventQueueSize = size;
+	}
+	/**
+	 * Returns the number of events waiting for execution.
+	 * @return Queue depth
+	 */
+	public int getEventQueueDepth()
+	{
+		return eventQueueDepth.get();
+	}
+	/**
+	 * Returns the number of events dropped because the queue was full.
+	 * @return Dropped events
+	 */
+	public long getDroppedEvents()
+	{
+		return droppedEvents.get();
+	}
+	/**
+	 * Returns the number of events replaced by a newer coalescable event.
+	 * @return Coalesced events
+	 */
+	public long getCoalescedEvents()
+	{
+		return coalescedEvents.get();
+	}
+
+	/**
+	 * Forward Events to the States.
+	 * Multiple producers add events, the executor thread is the only consumer.
+	 * A coalescable event is kept in latestCoalesced, the queue only holds a marker for it.
+	 */
+	private static final AbstractEvent COALESCED = new AbstractEvent(null, -1, null) {};
+	private ConcurrentLinkedQueue<AbstractEvent> eventQueue = new ConcurrentLinkedQueue<AbstractEvent>();
+	private AtomicReference<AbstractEvent> latestCoalesced = new AtomicReference<AbstractEvent>(null);
+	private AtomicInteger eventQueueDepth = new AtomicInteger(0);
+	private AtomicLong droppedEvents = new AtomicLong(0);
+	private AtomicLong coalescedEvents = new AtomicLong(0);
+	private volatile int eventQueueSize = STANDARD_EVENT_QUEUE_SIZE;
+	private volatile CoalescingPolicy coalescingPolicy = null;
+
+	private AbstractEvent nextEvent()
+	{
+		AbstractEvent e = eventQueue.poll();
+		if(e == null) return null;
+		eventQueueDepth.decrementAndGet();
+		if(e == COALESCED) e = latestCoalesced.getAndSet(null);
+		return e;
+	}
+	private void clearEventStack()
+	{
+		AbstractEvent e;
+		while((e = nextEvent()) != null) dropped(e);
+	}
+	private void dropped(AbstractEvent e)
+	{
+		CoalescingPolicy p = coalescingPolicy;
+		if(p != null) p.onDropped(e);
+	}
+	@Override
+	public void onEvent(AbstractEvent event)
+	{
+		CoalescingPolicy p = coalescingPolicy;
+		if(p != null && p.isCoalescable(event))
+		{
+			AbstractEvent old = latestCoalesced.getAndSet(event);
+			if(old != null)
+			{
+				//Marker is already queued
+				coalescedEvents.incrementAndGet();
+				dropped(old);
+				triggerNextStep();
+				return;
+			}
+			event = COALESCED;
+		}
+
+		//The marker is never dropped, there is at most one in the queue
+		if(eventQueueDepth.incrementAndGet() > eventQueueSize && event != COALESCED)
+		{
+			eventQueueDepth.decrementAndGet();
+			droppedEvents.incrementAndGet();
+			dropped(event);
+			return;
+		}
+		eventQueue.add(event);
+		triggerNextStep();
+	}
+}
@@ -0,0 +1,322 @@
+package com.kspethernetio.kspethernetiodemo.KSPEthernetIO;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.ControlPacket;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.HandshakePacket;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.PacketException;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.StatusPacket;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.VesselData;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.VesselDataPool;
+
+public class DataPacketsTest
+{
+	/**
+	 * VesselData with every field set to a distinct value within the range of the packet.
+	 */
+	private static VesselData vesselData()
+	{
+		VesselData VD = new VesselData();
+		VD.id = DataPackets.VDid;
+		VD.AP = 81234.5f;
+		VD.PE = 79876.25f;
+		VD.SemiMajorAxis = 680555.4f;
+		VD.SemiMinorAxis = 680554.1f;
+		VD.VVI = -2.5f;
+		VD.e = 0.00101f;
+		VD.inc = 6f;
+		VD.G = 8.62f;
+		VD.TAp = 1234;
+		VD.TPe = 567;
+		VD.TrueAnomaly = 123.4f;
+		VD.Density = 0.001f;
+		VD.period = 1849;
+		VD.RAlt = 80011f;
+		VD.Alt = 80012f;
+		VD.Vsurf = 2140.5f;
+		VD.Lat = -1.5f;
+		VD.Lon = 74.6f;
+		VD.LiquidFuelTot = 3600;
+		VD.LiquidFuel = 1800.5f;
+		VD.OxidizerTot = 4400;
+		VD.Oxidizer = 2200.5f;
+		VD.EChargeTot = 300;
+		VD.ECharge = 150.25f;
+		VD.MonoPropTot = 120;
+		VD.MonoProp = 60.5f;
+		VD.IntakeAirTot = 10;
+		VD.IntakeAir = 5;
+		VD.SolidFuelTot = 400;
+		VD.SolidFuel = 100;
+		VD.XenonGasTot = 700;
+		VD.XenonGas = 350;
+		VD.LiquidFuelTotS = 360;
+		VD.LiquidFuelS = 180;
+		VD.OxidizerTotS = 440;
+		VD.OxidizerS = 220;
+		VD.MissionTime = 0xFFFFFFF0L;
+		VD.deltaTime = 0.05f;
+		VD.VOrbit = 2279.5f;
+		VD.MNTime = 3600;
+		VD.MNDeltaV = 120.5f;
+		VD.Pitch = 0xFFFF;
+		VD.Roll = 0x8000;
+		VD.Heading = 16384;
+		VD.ActionGroups = (1<<0) | (1<<4) | (1<<15);
+		VD.SOINumber = 131;
+		VD.MaxOverHeat = 42;
+		VD.MachNumber = 6.5f;
+		VD.IAS = 12.5f;
+		VD.CurrentStage = 1;
+		VD.TotalStage = 3;
+		VD.TargetDist = 50000;
+		VD.TargetV = -12.5f;
+		VD.NavballSASMode = 0x32;
+		VD.ProgradePitch = 0xbeef;
+		VD.ProgradeHeading = 0x1234;
+		VD.ManeuverPitch = 1;
+		VD.ManeuverHeading = 2;
+		VD.TargetPitch = 3;
+		VD.TargetHeading = 4;
+		VD.NormalHeading = 5;
+		VD.vesselSync = 7;
+		return VD;
+	}
+
+	private static ControlPacket controlPacket()
+	{
+		ControlPacket CP = new ControlPacket();
+		CP.setSAS(true);
+		CP.setRCS(true);
+		CP.setActionGroup(2, true);
+		CP.setSASMode(DataPackets.SASMode.Prograde);
+		CP.Pitch = -1000;
+		CP.Roll = 40;
+		CP.Yaw = 1000;
+		CP.TX = -1;
+		CP.TY = 2;
+		CP.TZ = -3;
+		CP.WheelSteer = 500;
+		CP.Throttle = 650;
+		CP.WheelThrottle = 1000;
+		CP.vesselSync = 7;
+		return CP;
+	}
+
+	private static void assertControlEquals(ControlPacket a, ControlPacket b)
+	{
+		assertEquals(a.id, b.id);
+		assertEquals(a.MainControls, b.MainControls);
+		assertEquals(a.Mode, b.Mode);
+		assertEquals(Arrays.toString(a.ControlGroup), Arrays.toString(b.ControlGroup));
+		assertEquals(a.NavballSASMode, b.NavballSASMode);
+		assertEquals(a.AdditionalControlByte1, b.AdditionalControlByte1);
+		assertEquals(a.Pitch, b.Pitch);
+		assertEquals(a.Roll, b.Roll);
+		assertEquals(a.Yaw, b.Yaw);
+		assertEquals(a.TX, b.TX);
+		assertEquals(a.TY, b.TY);
+		assertEquals(a.TZ, b.TZ);
+		assertEquals(a.WheelSteer, b.WheelSteer);
+		assertEquals(a.Throttle, b.Throttle);
+		assertEquals(a.WheelThrottle, b.WheelThrottle);
+		assertEquals(a.vesselSync, b.vesselSync);
+	}
+
+	private static PacketException.Reason rejectReason(byte[] frame)
+	{
+		try
+		{
+			VesselData.fromPacket(frame);
+		}
+		catch(PacketException e)
+		{
+			return e.getReason();
+		}
+		fail("Frame not rejected");
+		return null;
+	}
+
+	@Test
+	public void vesselDataRoundTrip() throws PacketException
+	{
+		VesselData VD = vesselData();
+		byte[] frame = VD.toPacket();
+		assertEquals(VesselData.PayloadSize+4, frame.length);
+
+		VesselData decoded = VesselData.fromPacket(frame);
+		assertEquals(0, decoded.changedFields(VD));
+		assertArrayEquals(frame, decoded.toPacket());
+	}
+
+	@Test
+	public void unsigned32FieldsWithTopBitSet() throws PacketException
+	{
+		//The Serializer of older versions sign extended these fields
+		long[] values = {0x80000000L, 0x80000001L, 0xFFFFFFFFL, 0x7FFFFFFFL};
+		for(long v : values)
+		{
+			VesselData VD = vesselData();
+			VD.MissionTime = v;
+			VD.MNTime = v ^ 0x7F000000L;
+			VesselData decoded = VesselData.fromPacket(VD.toPacket());
+			assertEquals(v, decoded.MissionTime);
+			assertEquals(v ^ 0x7F000000L, decoded.MNTime);
+		}
+	}
+
+	@Test
+	public void vesselDataDecodeIntoAtOffset() throws PacketException
+	{
+		byte[] frame = vesselData().toPacket();
+		byte[] buf = new byte[frame.length+10];
+		System.arraycopy(frame, 0, buf, 7, frame.length);
+
+		VesselData target = new VesselData();
+		VesselData.decodeInto(buf, 7, frame.length, target);
+		assertEquals(0, target.changedFields(vesselData()));
+	}
+
+	@Test
+	public void encodeToAdvancesPosition() throws PacketException
+	{
+		ByteBuffer buf = ByteBuffer.allocate(300);
+		buf.position(5);
+		vesselData().encodeTo(buf);
+		assertEquals(5+VesselData.PayloadSize+4, buf.position());
+		assertArrayEquals(vesselData().toPacket(), Arrays.copyOfRange(buf.array(), 5, buf.position()));
+	}
+
+	@Test
+	public void controlPacketRoundTrip() throws PacketException
+	{
+		ControlPacket CP = controlPacket();
+		byte[] frame = CP.toPacket();
+		assertEquals(ControlPacket.PayloadSize+4, frame.length);
+
+		ControlPacket decoded = ControlPacket.fromPacket(frame);
+		assertControlEquals(CP, decoded);
+		assertArrayEquals(frame, decoded.toPacket());
+	}
+
+	@Test
+	public void triggersOfEncodedPacket() throws PacketException
+	{
+		ControlPacket CP = controlPacket();
+		assertFalse(ControlPacket.hasTriggers(CP.toPacket()));
+		CP.setStage();
+		assertTrue(ControlPacket.hasTriggers(CP.toPacket()));
+		CP.resetStage();
+		CP.setAbort();
+		assertTrue(ControlPacket.hasTriggers(CP.toPacket()));
+	}
+
+	@Test
+	public void triggerSetAfterEncodingIsKept() throws PacketException
+	{
+		ControlPacket CP = controlPacket();
+		CP.setStage();
+		byte[] sent = CP.toPacket();
+		//Pressed while the packet was sent
+		CP.setAbort();
+		CP.resetTriggers(sent);
+
+		assertEquals(1<<1, CP.MainControls & 0b11);
+		CP.resetTriggers(CP.toPacket());
+		assertFalse(ControlPacket.hasTriggers(CP.toPacket()));
+		assertEquals(controlPacket().MainControls, CP.MainControls);
+	}
+
+	@Test
+	public void handshakeAndStatusRoundTrip() throws PacketException
+	{
+		HandshakePacket HP = new HandshakePacket();
+		HP.M1 = 3;
+		HP.M2 = 1;
+		HP.state = 4;
+		HandshakePacket hp = HandshakePacket.fromPacket(HP.toPacket());
+		assertEquals(DataPackets.HSPid, hp.id);
+		assertEquals(3, hp.M1);
+		assertEquals(1, hp.M2);
+		assertEquals(4, hp.state);
+
+		StatusPacket SP = new StatusPacket();
+		SP.state = 1;
+		StatusPacket sp = StatusPacket.fromPacket(SP.toPacket());
+		assertEquals(DataPackets.SPid, sp.id);
+		assertEquals(1, sp.state);
+	}
+
+	@Test
+	public void payloadRoundTrip() throws PacketException
+	{
+		byte[] frame = vesselData().toPacket();
+		byte[] payload = DataPackets.getPayload(frame);
+		assertEquals(VesselData.PayloadSize, payload.length);
+		assertEquals(DataPackets.VDid, payload[0]);
+		assertArrayEquals(frame, DataPackets.fromPayload(payload));
+		assertEquals(DataPackets.VDid, DataPackets.getPacketID(frame));
+	}
+
+	@Test
+	public void rejectsCorruptedFrames() throws PacketException
+	{
+		byte[] frame = vesselData().toPacket();
+
+		byte[] checksum = frame.clone();
+		checksum[100] ^= 0x10;
+		assertSame(PacketException.Reason.Checksum, rejectReason(checksum));
+
+		byte[] header = frame.clone();
+		header[1] = 0;
+		assertSame(PacketException.Reason.Header, rejectReason(header));
+
+		//Valid frame with a payload too short for VesselData
+		byte[] shortPayload = DataPackets.fromPayload(Arrays.copyOf(DataPackets.getPayload(frame), 20));
+		assertSame(PacketException.Reason.Length, rejectReason(shortPayload));
+
+		assertSame(PacketException.Reason.Length, rejectReason(new byte[]{(byte)0xbe, (byte)0xef, 0}));
+	}
+
+	@Test
+	public void rejectedFrameLeavesTargetUnchanged() throws PacketException
+	{
+		VesselData target = vesselData();
+		byte[] frame = new VesselData().toPacket();
+		frame[50] ^= 1;
+		try
+		{
+			VesselData.decodeInto(frame, 0, frame.length, target);
+			fail("Frame not rejected");
+		}
+		catch(PacketException e)
+		{
+			assertEquals(0, target.changedFields(vesselData()));
+		}
+	}
+
+	@Test
+	public void poolReusesReleasedData()
+	{
+		VesselDataPool pool = new VesselDataPool(2);
+		VesselData a = pool.obtain();
+		a.retain();
+		a.release();
+		VesselData b = pool.obtain();
+		//a is still referenced
+		assertNotSame(a, b);
+		a.release();
+		assertSame(a, pool.obtain());
+	}
+}
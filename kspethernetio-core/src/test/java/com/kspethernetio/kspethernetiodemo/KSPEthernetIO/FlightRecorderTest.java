@@ -0,0 +1,130 @@
+package com.kspethernetio.kspethernetiodemo.KSPEthernetIO;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FlightRecorderTest
+{
+	private static final int MIN_SEGMENT = FlightRecorder.SEGMENT_HEADER + FlightRecorder.RECORD_HEADER + 0xFFFF + 1;
+
+	private File directory;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		directory = File.createTempFile("recorder", "");
+		assertTrue(directory.delete());
+		assertTrue(directory.mkdir());
+	}
+
+	@After
+	public void tearDown()
+	{
+		File[] files = directory.listFiles();
+		if(files != null) for(File f : files) f.delete();
+		directory.delete();
+	}
+
+	private static byte[] data(int i, int len)
+	{
+		byte[] d = new byte[len];
+		for(int k=0; k<len; k++) d[k] = (byte)(i + k);
+		return d;
+	}
+
+	@Test
+	public void writeAndRead() throws IOException
+	{
+		FlightRecorder r = new FlightRecorder(directory, "test");
+		byte[] buf = new byte[300];
+		for(int i=0; i<100; i++)
+		{
+			byte[] d = data(i, 10 + i);
+			System.arraycopy(d, 0, buf, 5, d.length);
+			r.record((i%4 == 0) ? FlightRecorder.SENT : FlightRecorder.RECEIVED, 1000L*i, buf, 5, d.length);
+		}
+		r.close();
+		assertNull(r.getException());
+		assertEquals(100, r.getRecords());
+		assertEquals(0, r.getDropped());
+
+		FlightRecorder.Reader reader = new FlightRecorder.Reader(directory, "test");
+		for(int i=0; i<100; i++)
+		{
+			assertTrue(reader.next());
+			assertEquals((i%4 == 0) ? FlightRecorder.SENT : FlightRecorder.RECEIVED, reader.getType());
+			assertEquals(1000L*i, reader.getTime());
+			assertEquals(10 + i, reader.getLength());
+			assertArrayEquals(data(i, 10 + i), Arrays.copyOf(reader.getData(), reader.getLength()));
+			assertEquals(0, reader.getSegment());
+		}
+		assertFalse(reader.next());
+		assertEquals(FlightRecorder.END, reader.getType());
+		reader.close();
+	}
+
+	@Test
+	public void rollsSegments() throws IOException
+	{
+		FlightRecorder r = new FlightRecorder(directory, "roll", MIN_SEGMENT);
+		int n = 150;
+		for(int i=0; i<n; i++)
+		{
+			byte[] d = data(i, 1000);
+			r.record(FlightRecorder.RECEIVED, i, d, 0, d.length);
+		}
+		r.close();
+		assertEquals(0, r.getDropped());
+		assertTrue(FlightRecorder.getSegmentFile(directory, "roll", 2).exists());
+
+		FlightRecorder.Reader reader = new FlightRecorder.Reader(directory, "roll");
+		int lastSegment = 0;
+		for(int i=0; i<n; i++)
+		{
+			assertTrue(reader.next());
+			assertEquals(i, reader.getTime());
+			assertArrayEquals(data(i, 1000), Arrays.copyOf(reader.getData(), reader.getLength()));
+			assertTrue(reader.getSegment() >= lastSegment);
+			lastSegment = reader.getSegment();
+		}
+		assertFalse(reader.next());
+		assertTrue(lastSegment >= 2);
+		reader.close();
+	}
+
+	@Test
+	public void newRecordingReplacesOldSegments() throws IOException
+	{
+		FlightRecorder r = new FlightRecorder(directory, "old", MIN_SEGMENT);
+		byte[] d = data(0, 1000);
+		for(int i=0; i<150; i++) r.record(FlightRecorder.RECEIVED, i, d, 0, d.length);
+		r.close();
+
+		r = new FlightRecorder(directory, "old", MIN_SEGMENT);
+		r.record(FlightRecorder.SENT, 42, d, 0, 10);
+		r.close();
+
+		FlightRecorder.Reader reader = new FlightRecorder.Reader(directory, "old");
+		assertTrue(reader.next());
+		assertEquals(42, reader.getTime());
+		assertFalse(reader.next());
+		reader.close();
+	}
+
+	@Test(expected = IOException.class)
+	public void missingRecording() throws IOException
+	{
+		new FlightRecorder.Reader(directory, "missing");
+	}
+}
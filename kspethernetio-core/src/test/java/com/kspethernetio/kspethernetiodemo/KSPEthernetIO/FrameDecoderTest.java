@@ -0,0 +1,186 @@
+package com.kspethernetio.kspethernetiodemo.KSPEthernetIO;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.FrameDecoder;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.HandshakePacket;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.PacketException;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.StatusPacket;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.VesselData;
+
+public class FrameDecoderTest
+{
+	private FrameDecoder decoder;
+	private List<byte[]> frames;
+	private FrameDecoder.FrameListener collect = new FrameDecoder.FrameListener()
+	{
+		@Override
+		public void onFrame(byte[] frame, int off, int len)
+		{
+			//The frame buffer is reused by the decoder
+			frames.add(Arrays.copyOfRange(frame, off, off+len));
+		}
+	};
+
+	private byte[] status, handshake, vesselData;
+
+	@Before
+	public void setUp() throws PacketException
+	{
+		decoder = new FrameDecoder();
+		frames = new ArrayList<byte[]>();
+
+		StatusPacket SP = new StatusPacket();
+		SP.state = 1;
+		status = SP.toPacket();
+		HandshakePacket HP = new HandshakePacket();
+		HP.M1 = 3;
+		HP.M2 = 1;
+		HP.state = 1;
+		handshake = HP.toPacket();
+		VesselData VD = new VesselData();
+		VD.id = DataPackets.VDid;
+		VD.Alt = 80000;
+		VD.ProgradePitch = 0xbeef; //Header bytes inside the payload
+		vesselData = VD.toPacket();
+	}
+
+	private static byte[] concat(byte[]... parts)
+	{
+		int n = 0;
+		for(byte[] p : parts) n += p.length;
+		byte[] s = new byte[n];
+		int off = 0;
+		for(byte[] p : parts)
+		{
+			System.arraycopy(p, 0, s, off, p.length);
+			off += p.length;
+		}
+		return s;
+	}
+
+	@Test
+	public void decodesSeveralFramesOfOneRead()
+	{
+		byte[] stream = concat(status, vesselData, handshake);
+		decoder.decode(stream, 0, stream.length, collect);
+
+		assertEquals(3, frames.size());
+		assertArrayEquals(status, frames.get(0));
+		assertArrayEquals(vesselData, frames.get(1));
+		assertArrayEquals(handshake, frames.get(2));
+		assertEquals(0, decoder.getResyncs());
+	}
+
+	@Test
+	public void decodesFramesSplitAtEveryPosition()
+	{
+		byte[] stream = concat(vesselData, status, vesselData);
+		for(int chunk=1; chunk<=stream.length; chunk++)
+		{
+			frames.clear();
+			for(int off=0; off<stream.length; off+=chunk)
+				decoder.decode(stream, off, Math.min(chunk, stream.length-off), collect);
+
+			assertEquals("chunk "+chunk, 3, frames.size());
+			assertArrayEquals(vesselData, frames.get(0));
+			assertArrayEquals(status, frames.get(1));
+			assertArrayEquals(vesselData, frames.get(2));
+		}
+	}
+
+	@Test
+	public void resynchronizesOnGarbage()
+	{
+		//0x00 and 0x13 are skipped, 0xbe followed by 0x13 is a false header start
+		byte[] garbage = {0x00, (byte)0xbe, 0x13};
+		byte[] stream = concat(garbage, status, garbage, vesselData);
+		decoder.decode(stream, 0, stream.length, collect);
+
+		assertEquals(2, frames.size());
+		assertArrayEquals(status, frames.get(0));
+		assertArrayEquals(vesselData, frames.get(1));
+		assertEquals(4, decoder.getResyncs());
+	}
+
+	@Test
+	public void repeatedFirstHeaderByteStartsFrame()
+	{
+		byte[] stream = concat(new byte[]{(byte)0xbe}, status);
+		decoder.decode(stream, 0, stream.length, collect);
+
+		assertEquals(1, frames.size());
+		assertArrayEquals(status, frames.get(0));
+		assertEquals(1, decoder.getResyncs());
+	}
+
+	@Test
+	public void corruptedSizeDoesNotSwallowNextFrames()
+	{
+		for(int size=0; size<256; size++)
+		{
+			if(size == status[2]) continue;
+			byte[] corrupted = status.clone();
+			corrupted[2] = (byte)size;
+			//Enough frames behind, so even the largest size completes
+			byte[] stream = concat(corrupted, vesselData, handshake, vesselData);
+			frames.clear();
+			decoder.reset();
+			decoder.decode(stream, 0, stream.length, collect);
+
+			assertEquals("size "+size, 3, frames.size());
+			assertArrayEquals(vesselData, frames.get(0));
+			assertArrayEquals(handshake, frames.get(1));
+			assertArrayEquals(vesselData, frames.get(2));
+		}
+	}
+
+	@Test
+	public void falseHeaderInNoiseIsRescanned()
+	{
+		//False header with a size spanning both frames
+		byte[] noise = {0x11, (byte)0xbe, (byte)0xef, 0x40, 0x22};
+		byte[] stream = concat(noise, status, vesselData);
+		decoder.decode(stream, 0, stream.length, collect);
+
+		assertEquals(2, frames.size());
+		assertArrayEquals(status, frames.get(0));
+		assertArrayEquals(vesselData, frames.get(1));
+		assertEquals(1, decoder.getChecksumErrors());
+		//0x11, the false header and its size and 0x22
+		assertEquals(5, decoder.getResyncs());
+	}
+
+	@Test
+	public void rescanAcrossReads()
+	{
+		byte[] corrupted = status.clone();
+		corrupted[2] = 100;
+		byte[] stream = concat(corrupted, vesselData, status);
+		for(int off=0; off<stream.length; off+=7)
+			decoder.decode(stream, off, Math.min(7, stream.length-off), collect);
+
+		assertEquals(2, frames.size());
+		assertArrayEquals(vesselData, frames.get(0));
+		assertArrayEquals(status, frames.get(1));
+	}
+
+	@Test
+	public void resetDropsPartialFrame()
+	{
+		decoder.decode(vesselData, 0, 100, collect);
+		decoder.reset();
+		decoder.decode(status, 0, status.length, collect);
+
+		assertEquals(1, frames.size());
+		assertArrayEquals(status, frames.get(0));
+	}
+}
@@ -0,0 +1,98 @@
+package com.kspethernetio.kspethernetiodemo.KSPEthernetIO;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class HistogramTest
+{
+	@Test
+	public void emptyHistogram()
+	{
+		Histogram h = new Histogram();
+		assertEquals(0, h.getCount());
+		assertEquals(0, h.getMax());
+		assertEquals(0, h.getMean());
+		assertEquals(0, h.getPercentile(50));
+	}
+
+	@Test
+	public void smallValuesAreExact()
+	{
+		Histogram h = new Histogram();
+		for(int v=0; v<8; v++) h.record(v);
+
+		assertEquals(8, h.getCount());
+		assertEquals(7, h.getMax());
+		assertEquals(0, h.getPercentile(0));
+		assertEquals(3, h.getPercentile(50));
+		assertEquals(6, h.getPercentile(85));
+		assertEquals(7, h.getPercentile(100));
+	}
+
+	@Test
+	public void valuesShareLogBuckets()
+	{
+		Histogram h = new Histogram();
+		//16 and 17 fall into the same bucket [16, 18)
+		h.record(16);
+		h.record(17);
+		assertEquals(16, h.getPercentile(100));
+		assertEquals(17, h.getMax());
+	}
+
+	@Test
+	public void largeValuesWithinBucketPrecision()
+	{
+		long[] values = {1000, 123456, 20000000L, 987654321L, Long.MAX_VALUE/3};
+		for(long v : values)
+		{
+			Histogram h = new Histogram();
+			h.record(v);
+			h.record(0);
+			long p = h.getPercentile(100);
+			assertTrue(v+" -> "+p, p <= v && v - p <= v/8);
+			assertEquals(v, h.getMax());
+		}
+	}
+
+	@Test
+	public void percentilesOfUniformDistribution()
+	{
+		Histogram h = new Histogram();
+		for(int v=1; v<=1000; v++) h.record(v*1000L);
+
+		assertEquals(500500, h.getMean());
+		assertEquals(1000000, h.getMax());
+		long p50 = h.getPercentile(50);
+		long p99 = h.getPercentile(99);
+		assertTrue("p50 "+p50, Math.abs(p50 - 500000) <= 500000/8);
+		assertTrue("p99 "+p99, Math.abs(p99 - 990000) <= 990000/8);
+		assertTrue(p50 < p99);
+	}
+
+	@Test
+	public void negativeValuesAreRecordedAsZero()
+	{
+		Histogram h = new Histogram();
+		h.record(-5);
+		assertEquals(1, h.getCount());
+		assertEquals(0, h.getPercentile(100));
+	}
+
+	@Test
+	public void copyAndReset()
+	{
+		Histogram h = new Histogram();
+		h.record(10);
+		Histogram c = h.copy();
+		h.reset();
+		h.record(3);
+
+		assertEquals(1, c.getCount());
+		assertEquals(10, c.getMax());
+		assertEquals(1, h.getCount());
+		assertEquals(3, h.getMax());
+	}
+}
@@ -0,0 +1,223 @@
+package com.kspethernetio.kspethernetiodemo.KSPEthernetIO;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.HostState;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.PacketException;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.StatusPacket;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.VesselData;
+
+public class KSPEthernetClientTest
+{
+	private static final long MS = 1000000L;
+	private static final int TIMEOUT = 50; //Handshake timeout in milliseconds
+
+	private KSPEthernetClient client;
+	private final BlockingQueue<String> states = new LinkedBlockingQueue<String>();
+	private final List<Exception> errors = new ArrayList<Exception>();
+	private volatile int handshakesAtError = -1;
+	private volatile long errorAt = 0;
+
+	/**
+	 * Host connected without network, answering the first handshake after a delay.
+	 * The answer is delivered on the thread sending the handshake, like a packet that arrives
+	 * while the Statemachine is busy.
+	 */
+	private static class FakeHost extends ReplayClient
+	{
+		private final AtomicBoolean connected = new AtomicBoolean(false);
+		private final long answerDelay; //Milliseconds, -1 to never answer
+		private final List<Long> handshakes = new ArrayList<Long>();
+
+		FakeHost(long answerDelay)
+		{
+			super(null, null);
+			this.answerDelay = answerDelay;
+		}
+
+		@Override
+		public void startReceiveData()
+		{
+			if(!connected.getAndSet(true)) notifyConnected();
+		}
+
+		@Override
+		public void cancelReceiveData()
+		{
+			if(connected.getAndSet(false)) notifyDisconnected(null);
+		}
+
+		@Override
+		public boolean isActive()
+		{
+			return connected.get();
+		}
+
+		@Override
+		public void sendData(byte[] data)
+		{
+			if(!isActive() || DataPackets.getPacketID(data) != DataPackets.HSPid) return;
+			int n;
+			synchronized(this)
+			{
+				handshakes.add(System.nanoTime());
+				n = handshakes.size();
+			}
+			if(n != 1 || answerDelay < 0) return;
+			try
+			{
+				Thread.sleep(answerDelay);
+				StatusPacket SP = new StatusPacket();
+				SP.state = 1;
+				byte[] frame = SP.toPacket();
+				notifyReceived(frame, 0, frame.length);
+			}
+			catch(InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			catch(PacketException e)
+			{
+				throw new IllegalStateException(e);
+			}
+		}
+
+		synchronized List<Long> handshakes()
+		{
+			return new ArrayList<Long>(handshakes);
+		}
+	}
+
+	private final KSPEthernetClient.KSPEthernetListener listener = new KSPEthernetClient.KSPEthernetListener()
+	{
+		@Override
+		public void onKSPEthernetError(KSPEthernetClient sender, Exception e)
+		{
+			synchronized(errors)
+			{
+				errors.add(e);
+			}
+			if(handshakesAtError < 0 && host != null)
+			{
+				handshakesAtError = host.handshakes().size();
+				errorAt = System.nanoTime();
+			}
+		}
+		@Override
+		public void onKSPEthernetInvalidate(KSPEthernetClient sender, VesselData vesselData) { }
+		@Override
+		public void onKSPEthernetStateChanged(KSPEthernetClient sender, String state) { states.add(state); }
+		@Override
+		public void onKSPEthernetHostStateChanged(KSPEthernetClient sender, HostState state) { }
+		@Override
+		public void onKSPEthernetStale(KSPEthernetClient sender, long silence) { }
+	};
+
+	private volatile FakeHost host;
+
+	/**
+	 * Free UDP port for the broadcast client.
+	 */
+	private static int freePort() throws IOException
+	{
+		DatagramSocket s = new DatagramSocket(0);
+		int port = s.getLocalPort();
+		s.close();
+		return port;
+	}
+
+	@Before
+	public void setUp() throws Exception
+	{
+		client = new KSPEthernetClient(freePort(), 20);
+		client.addEventListener(listener);
+		client.setHandshakeTimeout(TIMEOUT);
+		client.setReconnectAttempts(0);
+		long end = System.currentTimeMillis() + 2000;
+		while(!client.isInitialized() && System.currentTimeMillis() < end) Thread.sleep(5);
+		assertTrue(client.isInitialized());
+	}
+
+	@After
+	public void tearDown()
+	{
+		client.destroy();
+	}
+
+	private void connect(FakeHost h)
+	{
+		host = h;
+		client.setReplay(h);
+		client.start();
+	}
+
+	private void awaitState(String state) throws InterruptedException
+	{
+		long end = System.nanoTime() + 2000*MS;
+		String s;
+		while((s = states.poll(end - System.nanoTime(), TimeUnit.NANOSECONDS)) != null)
+		{
+			if(s.equals(state)) return;
+		}
+		fail("State "+state+" not reached");
+	}
+
+	@Test
+	public void lateConfirmationOfLastAttempt() throws InterruptedException
+	{
+		client.setHandshakeAttempts(1);
+		//Executed after the handshake timeout expired
+		connect(new FakeHost(3*TIMEOUT));
+		awaitState("Active");
+
+		assertTrue(errors.isEmpty());
+		assertEquals(1, host.handshakes().size());
+		assertTrue(client.getHandshakeRtt() >= 3*TIMEOUT*MS);
+	}
+
+	@Test
+	public void lateConfirmationIsNotRepeated() throws InterruptedException
+	{
+		client.setHandshakeAttempts(3);
+		connect(new FakeHost(3*TIMEOUT));
+		awaitState("Active");
+
+		assertTrue(errors.isEmpty());
+		assertEquals(1, host.handshakes().size());
+		assertTrue(client.getHandshakeRtt() >= 3*TIMEOUT*MS);
+	}
+
+	@Test
+	public void restartAfterAllAttemptsTimedOut() throws InterruptedException
+	{
+		client.setHandshakeAttempts(3);
+		long start = System.nanoTime();
+		connect(new FakeHost(-1));
+		awaitState("Restart TCP client");
+
+		synchronized(errors)
+		{
+			assertEquals(1, errors.size());
+			assertTrue(errors.get(0) instanceof SocketTimeoutException);
+		}
+		assertEquals(3, handshakesAtError);
+		//Every attempt waited for the full timeout
+		assertTrue(errorAt - start >= 3*TIMEOUT*MS);
+	}
+}
@@ -0,0 +1,117 @@
+package com.kspethernetio.kspethernetiodemo.KSPEthernetIO;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.VesselData;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.VesselDataPool;
+
+public class PlayoutBufferTest
+{
+	private static final long MS = 1000000L;
+	private static final long START = 1000*MS; //0 is not a valid arrival time
+	private static final long PERIOD = 20*MS;
+
+	private VesselDataPool pool;
+
+	@Before
+	public void setUp()
+	{
+		pool = new VesselDataPool(32);
+	}
+
+	private VesselData frame(long missionTime)
+	{
+		VesselData d = pool.obtain();
+		d.MissionTime = missionTime;
+		return d;
+	}
+
+	@Test
+	public void releasesInOrderWithinArrivalAndDelay()
+	{
+		PlayoutBuffer b = new PlayoutBuffer(PlayoutBuffer.Mode.Smooth, 5);
+		long[] arrival = new long[10];
+		long[] latest = new long[10];
+		for(int i=0; i<10; i++)
+		{
+			//Jittered arrival, but in order
+			arrival[i] = START + i*PERIOD + ((i%3 == 0) ? 8*MS : 0);
+			b.add(frame(i), arrival[i]);
+			latest[i] = arrival[i] + b.getDelay();
+		}
+
+		for(int i=0; i<10; i++)
+		{
+			long t = b.nextPlayout();
+			assertTrue(t >= arrival[i] && t <= latest[i]);
+			assertNull(b.poll(t - 1));
+			VesselData d = b.poll(t);
+			assertEquals(i, d.MissionTime);
+			d.release();
+		}
+		assertTrue(b.isEmpty());
+		assertNull(b.poll(Long.MAX_VALUE));
+		assertEquals(0, b.getDropped());
+	}
+
+	@Test
+	public void notReleasedBeforeArrival()
+	{
+		PlayoutBuffer b = new PlayoutBuffer(PlayoutBuffer.Mode.LowLatency, 5);
+		b.add(frame(0), START);
+		assertNull(b.poll(START - 1));
+		assertTrue(b.nextPlayout() - START >= 0);
+		assertTrue(b.nextPlayout() - START <= 5*MS);
+		assertEquals(0, b.poll(START + 5*MS).MissionTime);
+	}
+
+	@Test
+	public void steadySpacingFromMeasuredPeriod()
+	{
+		PlayoutBuffer b = new PlayoutBuffer(PlayoutBuffer.Mode.Smooth, 5);
+		long last = 0;
+		for(int i=0; i<20; i++)
+		{
+			b.add(frame(i), START + i*PERIOD);
+			long t = b.nextPlayout();
+			VesselData d = b.poll(t);
+			if(i > 1) assertEquals(PERIOD, t - last);
+			last = t;
+			d.release();
+		}
+		assertEquals(0, b.getJitter());
+	}
+
+	@Test
+	public void fullBufferDropsOldest()
+	{
+		PlayoutBuffer b = new PlayoutBuffer(PlayoutBuffer.Mode.Smooth, 5);
+		VesselData first = frame(0);
+		b.add(first, START);
+		for(int i=1; i<=16; i++) b.add(frame(i), START + i*PERIOD);
+
+		assertEquals(1, b.getDropped());
+		//The dropped frame was released back to the pool
+		assertSame(first, pool.obtain());
+		assertEquals(1, b.poll(Long.MAX_VALUE).MissionTime);
+	}
+
+	@Test
+	public void clearReleasesFrames()
+	{
+		PlayoutBuffer b = new PlayoutBuffer(PlayoutBuffer.Mode.Smooth, 5);
+		VesselData d = frame(0);
+		b.add(d, START);
+		b.clear();
+
+		assertTrue(b.isEmpty());
+		assertEquals(5*MS, b.getDelay());
+		assertSame(d, pool.obtain());
+	}
+}
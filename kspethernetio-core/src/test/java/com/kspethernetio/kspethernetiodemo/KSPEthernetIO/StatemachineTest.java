@@ -0,0 +1,376 @@
+package com.kspethernetio.kspethernetiodemo.KSPEthernetIO;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.Events.AbstractEvent;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.Statemachine.State;
+
+public class StatemachineTest
+{
+	private Statemachine sm;
+	private Recorder recorder;
+
+	/**
+	 * Event with a number.
+	 */
+	private static class TestEvent extends AbstractEvent
+	{
+		TestEvent(int id)
+		{
+			super(null, id, null);
+		}
+	}
+
+	/**
+	 * State recording all executions.
+	 */
+	private static class Recorder extends State
+	{
+		final List<AbstractEvent> events = new ArrayList<AbstractEvent>();
+		final List<Thread> threads = new ArrayList<Thread>();
+		volatile State next = this;
+		final AtomicInteger running = new AtomicInteger(0);
+		volatile boolean overlap = false;
+		//Blocks the step without event until released
+		volatile CountDownLatch gate = null;
+
+		Recorder(Statemachine sm)
+		{
+			super("Recorder", sm);
+		}
+
+		@Override
+		public void onEnter()
+		{
+		}
+		@Override
+		public State onExecute(AbstractEvent event)
+		{
+			if(running.incrementAndGet() != 1) overlap = true;
+			synchronized(this)
+			{
+				events.add(event);
+				threads.add(Thread.currentThread());
+				notifyAll();
+			}
+			running.decrementAndGet();
+			CountDownLatch g = gate;
+			if(g != null && event == null)
+			{
+				try
+				{
+					g.await();
+				}
+				catch(InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+			}
+			return next;
+		}
+		@Override
+		public void onExit()
+		{
+		}
+
+		synchronized int executions()
+		{
+			return events.size();
+		}
+
+		synchronized List<AbstractEvent> received()
+		{
+			List<AbstractEvent> r = new ArrayList<AbstractEvent>();
+			for(AbstractEvent e : events) if(e != null) r.add(e);
+			return r;
+		}
+
+		synchronized List<Integer> receivedIDs()
+		{
+			List<Integer> r = new ArrayList<Integer>();
+			for(AbstractEvent e : received()) r.add(e.getID());
+			return r;
+		}
+
+		synchronized void await(int n) throws InterruptedException
+		{
+			long end = System.currentTimeMillis() + 2000;
+			while(events.size() < n && System.currentTimeMillis() < end) wait(10);
+			assertTrue("executions "+events.size(), events.size() >= n);
+		}
+
+		synchronized void awaitReceived(int n) throws InterruptedException
+		{
+			long end = System.currentTimeMillis() + 2000;
+			while(received().size() < n && System.currentTimeMillis() < end) wait(10);
+			assertEquals(n, received().size());
+		}
+	}
+
+	@Before
+	public void setUp()
+	{
+		sm = new Statemachine("Test");
+		recorder = new Recorder(sm);
+	}
+
+	@After
+	public void tearDown()
+	{
+		sm.stop();
+	}
+
+	@Test
+	public void executesEventsInOrderOnOneThread() throws InterruptedException
+	{
+		sm.start(recorder);
+		recorder.await(1);
+		List<TestEvent> sent = new ArrayList<TestEvent>();
+		for(int i=0; i<100; i++)
+		{
+			TestEvent e = new TestEvent(i);
+			sent.add(e);
+			sm.onEvent(e);
+		}
+		//A step may find its events already executed by the previous one and run without event
+		recorder.awaitReceived(100);
+
+		assertEquals(sent, recorder.received());
+		synchronized(recorder)
+		{
+			for(Thread t : recorder.threads) assertSame(recorder.threads.get(0), t);
+		}
+		assertFalse(recorder.overlap);
+	}
+
+	@Test
+	public void sleepsWithoutEvents() throws InterruptedException
+	{
+		sm.start(recorder);
+		recorder.await(1);
+		Thread.sleep(200);
+
+		//Only the step on start
+		assertEquals(1, recorder.executions());
+		assertNull(recorder.events.get(0));
+	}
+
+	@Test
+	public void tickExecutesWithoutEvents() throws InterruptedException
+	{
+		Statemachine ticking = new Statemachine("Tick", 10);
+		Recorder r = new Recorder(ticking);
+		ticking.start(r);
+		try
+		{
+			r.await(5);
+		}
+		finally
+		{
+			ticking.stop();
+		}
+	}
+
+	@Test
+	public void newStateIsExecutedImmediately() throws InterruptedException
+	{
+		Recorder second = new Recorder(sm);
+		recorder.next = second;
+		sm.start(recorder);
+
+		//Entered and executed without further event
+		second.await(1);
+		assertSame(second, sm.getActiveState());
+	}
+
+	@Test
+	public void finishesWhenStateReturnsNull() throws InterruptedException
+	{
+		final CountDownLatch finished = new CountDownLatch(1);
+		sm.addStatemachineListener(new Statemachine.StatemachineListener()
+		{
+			@Override
+			public void statemachineStarted(Statemachine sm) { }
+			@Override
+			public void statemachineFinished(Statemachine sm) { finished.countDown(); }
+			@Override
+			public void statemachineStopped(Statemachine sm) { }
+			@Override
+			public void statemachineStateChanged(Statemachine sm, State os, State ns) { }
+		});
+		recorder.next = null;
+		sm.start(recorder);
+
+		assertTrue(finished.await(2, TimeUnit.SECONDS));
+		assertFalse(sm.isActive());
+		assertNull(sm.getActiveState());
+	}
+
+	@Test
+	public void restartDoesNotOverlapSteps() throws InterruptedException
+	{
+		for(int i=0; i<50; i++)
+		{
+			sm.start(recorder);
+			for(int k=0; k<10; k++) sm.onEvent(new TestEvent(k));
+			sm.stop();
+		}
+		sm.start(recorder);
+		int n = recorder.received().size();
+		sm.onEvent(new TestEvent(0));
+		recorder.awaitReceived(n+1);
+
+		assertTrue(sm.isActive());
+		assertFalse(recorder.overlap);
+	}
+
+	/**
+	 * Coalescing policy for event ids >= 100, recording dropped events.
+	 */
+	private static class TestPolicy implements Statemachine.CoalescingPolicy
+	{
+		final List<Integer> dropped = new ArrayList<Integer>();
+
+		@Override
+		public boolean isCoalescable(AbstractEvent event)
+		{
+			return event.getID() >= 100;
+		}
+		@Override
+		public synchronized void onDropped(AbstractEvent event)
+		{
+			dropped.add(event.getID());
+		}
+	}
+
+	@Test
+	public void coalescedEventKeepsOldestPosition() throws InterruptedException
+	{
+		TestPolicy policy = new TestPolicy();
+		sm.setCoalescingPolicy(policy);
+		recorder.gate = new CountDownLatch(1);
+		sm.start(recorder);
+		recorder.await(1);
+
+		int[] ids = {1, 100, 2, 101, 102, 3};
+		for(int id : ids) sm.onEvent(new TestEvent(id));
+		assertEquals(4, sm.getEventQueueDepth());
+		recorder.gate.countDown();
+		recorder.awaitReceived(4);
+
+		assertEquals(Arrays.asList(1, 102, 2, 3), recorder.receivedIDs());
+		assertEquals(2, sm.getCoalescedEvents());
+		assertEquals(0, sm.getDroppedEvents());
+		assertEquals(Arrays.asList(100, 101), policy.dropped);
+	}
+
+	@Test
+	public void fullQueueDropsNewEvents() throws InterruptedException
+	{
+		TestPolicy policy = new TestPolicy();
+		sm.setCoalescingPolicy(policy);
+		sm.setEventQueueSize(5);
+		recorder.gate = new CountDownLatch(1);
+		sm.start(recorder);
+		recorder.await(1);
+
+		for(int id=0; id<8; id++) sm.onEvent(new TestEvent(id));
+		//The coalesced marker is never dropped
+		sm.onEvent(new TestEvent(100));
+		recorder.gate.countDown();
+		recorder.awaitReceived(6);
+
+		assertEquals(Arrays.asList(0, 1, 2, 3, 4, 100), recorder.receivedIDs());
+		assertEquals(3, sm.getDroppedEvents());
+		assertEquals(Arrays.asList(5, 6, 7), policy.dropped);
+		assertEquals(0, sm.getEventQueueDepth());
+	}
+
+	/**
+	 * State requesting steps at given deadlines on its first execution.
+	 */
+	private static class Scheduler extends State
+	{
+		final long[] delays;
+		final List<Long> steps = new ArrayList<Long>();
+		long start;
+
+		Scheduler(Statemachine sm, long... delays)
+		{
+			super("Scheduler", sm);
+			this.delays = delays;
+		}
+
+		@Override
+		public void onEnter()
+		{
+		}
+		@Override
+		public State onExecute(AbstractEvent event)
+		{
+			long now = System.nanoTime();
+			synchronized(this)
+			{
+				if(steps.isEmpty())
+				{
+					start = now;
+					for(long d : delays) getStatemachine().scheduleStep(start + d);
+				}
+				steps.add(now - start);
+			}
+			return this;
+		}
+		@Override
+		public void onExit()
+		{
+		}
+
+		synchronized List<Long> steps()
+		{
+			return new ArrayList<Long>(steps);
+		}
+	}
+
+	@Test
+	public void scheduledStepAtDeadline() throws InterruptedException
+	{
+		long delay = TimeUnit.MILLISECONDS.toNanos(50);
+		Scheduler s = new Scheduler(sm, delay);
+		sm.start(s);
+		Thread.sleep(200);
+
+		List<Long> steps = s.steps();
+		assertEquals(2, steps.size());
+		assertTrue("step at "+steps.get(1), steps.get(1) >= delay);
+	}
+
+	@Test
+	public void laterScheduleReplacesEarlierDeadline() throws InterruptedException
+	{
+		long early = TimeUnit.MILLISECONDS.toNanos(150);
+		long late = TimeUnit.MILLISECONDS.toNanos(50);
+		//Only the last requested deadline is kept
+		Scheduler s = new Scheduler(sm, early, late);
+		sm.start(s);
+		Thread.sleep(300);
+
+		List<Long> steps = s.steps();
+		assertEquals(2, steps.size());
+		assertTrue("step at "+steps.get(1), steps.get(1) >= late && steps.get(1) < early);
+	}
+}
@@ -0,0 +1,128 @@
+package com.kspethernetio.kspethernetiodemo.KSPEthernetIO.jmh;
+
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.ControlPacket;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.HandshakePacket;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.PacketException;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.StatusPacket;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.VesselData;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.VesselDataPool;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decode throughput of every packet type.
+ * VesselData is decoded round robin from all captured frames, so the branch predictor and the
+ * JIT don't see one constant input.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class DecodeBenchmark
+{
+	private Frames frames;
+	private int next = 0;
+
+	//All VesselData frames in one buffer, as decodeInto() sees the reused receive buffer
+	private byte[] buffer;
+	private int[] offsets;
+	private VesselData target = new VesselData();
+	private VesselDataPool pool = new VesselDataPool(4);
+
+	@Setup
+	public void setup() throws IOException
+	{
+		frames = Frames.load();
+		offsets = new int[frames.vesselData.length];
+		buffer = frames.vesselDataBuffer(offsets);
+	}
+
+	private int next()
+	{
+		if(++next == frames.vesselData.length) next = 0;
+		return next;
+	}
+
+	/**
+	 * Allocating decode of a standalone frame.
+	 */
+	@Benchmark
+	public VesselData vesselDataFromPacket() throws PacketException
+	{
+		return VesselData.fromPacket(frames.vesselData[next()]);
+	}
+
+	/**
+	 * Decode into a reused VesselData, the receive path without pool.
+	 */
+	@Benchmark
+	public VesselData vesselDataDecodeInto() throws PacketException
+	{
+		int i = next();
+		VesselData.decodeInto(buffer, offsets[i], frames.vesselData[i].length, target);
+		return target;
+	}
+
+	/**
+	 * Decode into a pooled VesselData and release it, the receive path of the PacketHandler.
+	 */
+	@Benchmark
+	public long vesselDataPooled() throws PacketException
+	{
+		int i = next();
+		VesselData data = pool.obtain();
+		VesselData.decodeInto(buffer, offsets[i], frames.vesselData[i].length, data);
+		long t = data.MissionTime;
+		data.release();
+		return t;
+	}
+
+	@Benchmark
+	public byte[] getPayload() throws PacketException
+	{
+		return DataPackets.getPayload(frames.vesselData[next()]);
+	}
+
+	/**
+	 * Header and checksum validation only.
+	 */
+	@Benchmark
+	public int checkPacket() throws PacketException
+	{
+		int i = next();
+		return DataPackets.checkPacket(buffer, offsets[i], frames.vesselData[i].length);
+	}
+
+	@Benchmark
+	public HandshakePacket handshakeFromPacket() throws PacketException
+	{
+		return HandshakePacket.fromPacket(frames.hostHandshake);
+	}
+
+	@Benchmark
+	public StatusPacket statusFromPacket() throws PacketException
+	{
+		return StatusPacket.fromPacket(frames.status);
+	}
+
+	@Benchmark
+	public ControlPacket controlFromPacket() throws PacketException
+	{
+		return ControlPacket.fromPacket(frames.control);
+	}
+}
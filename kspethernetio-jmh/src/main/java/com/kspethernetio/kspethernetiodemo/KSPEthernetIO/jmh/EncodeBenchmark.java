@@ -0,0 +1,123 @@
+package com.kspethernetio.kspethernetiodemo.KSPEthernetIO.jmh;
+
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.ControlPacket;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.HandshakePacket;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.PacketException;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.StatusPacket;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.VesselData;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode throughput of every packet type.
+ * The packets are decoded from the captured frames, so they carry realistic values.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class EncodeBenchmark
+{
+	private VesselData[] vesselData;
+	private int next = 0;
+	private byte[][] payloads;
+	private HandshakePacket handshake;
+	private StatusPacket status;
+	private ControlPacket control;
+
+	//Reused send buffer
+	private ByteBuffer buffer = ByteBuffer.allocate(DataPackets.MaxPayloadSize+4);
+
+	@Setup
+	public void setup() throws IOException, PacketException
+	{
+		Frames frames = Frames.load();
+		vesselData = new VesselData[frames.vesselData.length];
+		payloads = new byte[frames.vesselData.length][];
+		for(int i=0; i<vesselData.length; i++)
+		{
+			vesselData[i] = VesselData.fromPacket(frames.vesselData[i]);
+			payloads[i] = DataPackets.getPayload(frames.vesselData[i]);
+		}
+		handshake = HandshakePacket.fromPacket(frames.clientHandshake);
+		status = StatusPacket.fromPacket(frames.status);
+		control = ControlPacket.fromPacket(frames.control);
+	}
+
+	private int next()
+	{
+		if(++next == vesselData.length) next = 0;
+		return next;
+	}
+
+	@Benchmark
+	public byte[] vesselDataToPacket() throws PacketException
+	{
+		return vesselData[next()].toPacket();
+	}
+
+	/**
+	 * Encode into a reused buffer without allocation.
+	 */
+	@Benchmark
+	public ByteBuffer vesselDataEncodeTo() throws PacketException
+	{
+		buffer.clear();
+		vesselData[next()].encodeTo(buffer);
+		return buffer;
+	}
+
+	@Benchmark
+	public byte[] fromPayload() throws PacketException
+	{
+		return DataPackets.fromPayload(payloads[next()]);
+	}
+
+	@Benchmark
+	public byte[] handshakeToPacket() throws PacketException
+	{
+		return handshake.toPacket();
+	}
+
+	@Benchmark
+	public byte[] statusToPacket() throws PacketException
+	{
+		return status.toPacket();
+	}
+
+	/**
+	 * Allocating encode, the periodic send mode of the KSPEthernetClient.
+	 */
+	@Benchmark
+	public byte[] controlToPacket() throws PacketException
+	{
+		return control.toPacket();
+	}
+
+	/**
+	 * Encode into a reused buffer, the on change send mode of the KSPEthernetClient.
+	 */
+	@Benchmark
+	public ByteBuffer controlEncodeTo() throws PacketException
+	{
+		buffer.clear();
+		control.encodeTo(buffer);
+		return buffer;
+	}
+}
@@ -0,0 +1,113 @@
+package com.kspethernetio.kspethernetiodemo.KSPEthernetIO.jmh;
+
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.FrameDecoder;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.PacketException;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.VesselData;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splitting the TCP byte stream into frames.
+ * The stream of Frames.STREAM_FRAMES captured frames is fed to the FrameDecoder in chunks of
+ * the given size, like reads of the socket. Scores are frames per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class FrameDecoderBenchmark
+{
+	//1: byte by byte, 7: frames split at odd positions, 1460: one TCP segment, 16384: coalesced reads
+	@Param({"1", "7", "1460", "16384"})
+	public int chunk;
+
+	//Garbage before every 8th frame, which has to be skipped
+	@Param({"false", "true"})
+	public boolean noise;
+
+	private byte[] stream;
+	private FrameDecoder decoder = new FrameDecoder();
+	private VesselData target = new VesselData();
+	private Blackhole blackhole;
+
+	private FrameDecoder.FrameListener splitListener = new FrameDecoder.FrameListener()
+	{
+		@Override
+		public void onFrame(byte[] frame, int off, int len)
+		{
+			blackhole.consume(DataPackets.getPacketID(frame, off, len));
+		}
+	};
+
+	private FrameDecoder.FrameListener decodeListener = new FrameDecoder.FrameListener()
+	{
+		@Override
+		public void onFrame(byte[] frame, int off, int len)
+		{
+			try
+			{
+				if(DataPackets.getPacketID(frame, off, len) == DataPackets.VDid)
+				{
+					VesselData.decodeInto(frame, off, len, target);
+					blackhole.consume(target.MissionTime);
+				}
+			}
+			catch(PacketException e)
+			{
+				blackhole.consume(e);
+			}
+		}
+	};
+
+	@Setup
+	public void setup() throws IOException
+	{
+		stream = Frames.load().stream(noise);
+	}
+
+	private void feed(FrameDecoder.FrameListener l)
+	{
+		for(int off=0; off<stream.length; off+=chunk)
+			decoder.decode(stream, off, Math.min(chunk, stream.length-off), l);
+	}
+
+	/**
+	 * Split only.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(Frames.STREAM_FRAMES)
+	public void split(Blackhole bh)
+	{
+		blackhole = bh;
+		feed(splitListener);
+	}
+
+	/**
+	 * Split and decode VesselData, the full receive path without the socket.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(Frames.STREAM_FRAMES)
+	public void splitAndDecode(Blackhole bh)
+	{
+		blackhole = bh;
+		feed(decodeListener);
+	}
+}
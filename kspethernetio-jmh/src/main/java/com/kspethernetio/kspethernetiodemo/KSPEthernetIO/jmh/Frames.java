@@ -0,0 +1,160 @@
+package com.kspethernetio.kspethernetiodemo.KSPEthernetIO.jmh;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Captured frames used by the benchmarks.
+ * Loaded from frames.txt, one frame per line as packet type and hex data.
+ * Also builds corrupted copies and a byte stream as it arrives on the TCP connection.
+ */
+public class Frames
+{
+	public static final int STREAM_FRAMES = 64; //Frames in stream(), every 16th is a StatusPacket
+
+	public final byte[][] vesselData;
+	public final byte[] hostHandshake;
+	public final byte[] clientHandshake;
+	public final byte[] status;
+	public final byte[] control;
+
+	private Frames(List<byte[]> vd, List<byte[]> hs, byte[] sp, byte[] cp)
+	{
+		vesselData = vd.toArray(new byte[vd.size()][]);
+		hostHandshake = hs.get(0);
+		clientHandshake = hs.get(1);
+		status = sp;
+		control = cp;
+	}
+
+	/**
+	 * Load captured frames.
+	 *
+	 * @return Frames
+	 * @throws IOException Resource missing or invalid
+	 */
+	public static Frames load() throws IOException
+	{
+		InputStream in = Frames.class.getResourceAsStream("frames.txt");
+		if(in == null) throw new IOException("frames.txt not found");
+
+		List<byte[]> vd = new ArrayList<byte[]>();
+		List<byte[]> hs = new ArrayList<byte[]>();
+		byte[] sp = null, cp = null;
+		BufferedReader r = new BufferedReader(new InputStreamReader(in, "US-ASCII"));
+		try
+		{
+			String line;
+			while((line = r.readLine()) != null)
+			{
+				line = line.trim();
+				if(line.isEmpty() || line.startsWith("#")) continue;
+				String[] s = line.split("\\s+");
+				if(s.length != 2) throw new IOException("Invalid line: "+line);
+				byte[] frame = fromHex(s[1]);
+				if(s[0].equals("VD")) vd.add(frame);
+				else if(s[0].equals("HS")) hs.add(frame);
+				else if(s[0].equals("SP")) sp = frame;
+				else if(s[0].equals("CP")) cp = frame;
+				else throw new IOException("Unknown packet type: "+s[0]);
+			}
+		}
+		finally
+		{
+			r.close();
+		}
+		if(vd.isEmpty() || hs.size() < 2 || sp == null || cp == null) throw new IOException("frames.txt incomplete");
+		return new Frames(vd, hs, sp, cp);
+	}
+
+	/**
+	 * Concatenate all VesselData frames into one buffer.
+	 *
+	 * @param offsets Filled with the offset of each frame, length of vesselData
+	 * @return Buffer
+	 */
+	public byte[] vesselDataBuffer(int[] offsets)
+	{
+		int n = 0;
+		for(byte[] f : vesselData) n += f.length;
+		byte[] buf = new byte[n];
+		int off = 0;
+		for(int i=0; i<vesselData.length; i++)
+		{
+			offsets[i] = off;
+			System.arraycopy(vesselData[i], 0, buf, off, vesselData[i].length);
+			off += vesselData[i].length;
+		}
+		return buf;
+	}
+
+	/**
+	 * Copy of a VesselData frame corrupted the way it is seen on a noisy link.
+	 *
+	 * @param reason Checksum: one payload byte flipped, Header: first header byte wrong,
+	 *               Length: payload cut short by 8 bytes with valid size and checksum
+	 * @return Corrupted frame
+	 */
+	public byte[] corrupted(String reason)
+	{
+		byte[] f = vesselData[0].clone();
+		if(reason.equals("Checksum")) f[f.length/2] ^= 0x10;
+		else if(reason.equals("Header")) f[0] = 0;
+		else if(reason.equals("Length"))
+		{
+			f = Arrays.copyOf(f, f.length-8);
+			int size = f.length-4;
+			byte checksum = (byte)size;
+			for(int i=0; i<size; i++) checksum ^= f[3+i];
+			f[2] = (byte)size;
+			f[f.length-1] = checksum;
+		}
+		else throw new IllegalArgumentException("Unknown reason: "+reason);
+		return f;
+	}
+
+	/**
+	 * Byte stream of STREAM_FRAMES frames as received on the TCP connection.
+	 *
+	 * @param noise True to put garbage before every 8th frame, which the decoder has to skip
+	 * @return Stream
+	 */
+	public byte[] stream(boolean noise)
+	{
+		byte[] garbage = {0x00, (byte)0xbe, 0x13}; //Includes a false header start
+		List<byte[]> parts = new ArrayList<byte[]>();
+		int n = 0;
+		for(int i=0; i<STREAM_FRAMES; i++)
+		{
+			if(noise && i%8 == 7)
+			{
+				parts.add(garbage);
+				n += garbage.length;
+			}
+			byte[] f = (i%16 == 0) ? status : vesselData[i%vesselData.length];
+			parts.add(f);
+			n += f.length;
+		}
+		byte[] s = new byte[n];
+		int off = 0;
+		for(byte[] p : parts)
+		{
+			System.arraycopy(p, 0, s, off, p.length);
+			off += p.length;
+		}
+		return s;
+	}
+
+	private static byte[] fromHex(String s) throws IOException
+	{
+		if(s.length()%2 != 0) throw new IOException("Invalid hex: "+s);
+		byte[] b = new byte[s.length()/2];
+		for(int i=0; i<b.length; i++) b[i] = (byte)Integer.parseInt(s.substring(2*i, 2*i+2), 16);
+		return b;
+	}
+}
@@ -0,0 +1,79 @@
+package com.kspethernetio.kspethernetiodemo.KSPEthernetIO.jmh;
+
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.PacketException;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.VesselData;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rejection of corrupted VesselData frames.
+ * Every rejected frame throws a PacketException, so this is dominated by the cost of the
+ * exception and shows up as allocation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class RejectBenchmark
+{
+	@Param({"Checksum", "Header", "Length"})
+	public String reason;
+
+	private byte[] frame;
+	private VesselData target = new VesselData();
+
+	@Setup
+	public void setup() throws IOException
+	{
+		frame = Frames.load().corrupted(reason);
+	}
+
+	/**
+	 * Header and checksum validation, Length frames pass this check.
+	 */
+	@Benchmark
+	public Object checkPacket()
+	{
+		try
+		{
+			return DataPackets.checkPacket(frame, 0, frame.length);
+		}
+		catch(PacketException e)
+		{
+			return e.getReason();
+		}
+	}
+
+	/**
+	 * Decode into a reused VesselData as the PacketHandler does, the target stays unchanged.
+	 */
+	@Benchmark
+	public Object vesselDataDecodeInto()
+	{
+		try
+		{
+			VesselData.decodeInto(frame, 0, frame.length, target);
+			return target;
+		}
+		catch(PacketException e)
+		{
+			return e.getReason();
+		}
+	}
+}
@@ -0,0 +1,570 @@
+package com.kspethernetio.kspethernetiodemo.KSPEthernetIO.sim;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.LockSupport;
+
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.ControlPacket;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.FrameDecoder;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.FrameDecoder.FrameListener;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.HandshakePacket;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.PacketException;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.StatusPacket;
+import com.kspethernetio.kspethernetiodemo.KSPEthernetIO.DataPackets.VesselData;
+
+/**
+ * Standalone KSPEthernetIO host to test and benchmark clients without KSP.
+ * Runs on a plain JVM and behaves like the plugin:
+ *  - Broadcasts a HandshakePacket every second
+ *  - Accepts TCP clients, waits for their HandshakePacket and streams a StatusPacket followed
+ *    by VesselData of a synthetic Kerbin orbit at a fixed rate
+ *  - Logs received ControlPackets and reports SAS, RCS, lights, gears, brakes, action groups
+ *    and SAS mode back in the VesselData
+ *
+ * Network faults can be injected into the stream to the client:
+ *  - Fragmentation: frames are written in small pieces
+ *  - Coalescing: several frames are written at once
+ *  - Corruption: a random byte of a frame is changed
+ *  - Latency: frames are delayed by a fixed time plus random jitter, keeping their order
+ */
+public class HostSimulator
+{
+	private static final String USAGE =
+			"Usage: HostSimulator [options]\n"+
+			"  --port <port>           Broadcast and TCP port (default 2342)\n"+
+			"  --broadcast <address>   Broadcast address (default 255.255.255.255)\n"+
+			"  --rate <hz>             VesselData rate, 1 - 1000 (default 20)\n"+
+			"  --warp <factor>         Speed of the orbit simulation (default 1)\n"+
+			"  --fragment <bytes>      Write frames in pieces of at most this size\n"+
+			"  --coalesce <frames>     Write this many frames at once\n"+
+			"  --corrupt <probability> Corrupt one byte of a frame with this probability, 0 - 1\n"+
+			"  --latency <ms>          Delay all frames\n"+
+			"  --jitter <ms>           Add a random delay of up to this time\n"+
+			"  --verbose               Log every ControlPacket, not only changes\n";
+
+	private static final int BROADCAST_INTERVAL = 1000; //Milliseconds
+	private static final int STATUS_INTERVAL = 5000; //Milliseconds between ControlPacket statistics
+
+	//Kerbin and an orbit from 80 km to 120 km
+	private static final double RADIUS = 600000;
+	private static final double MU = 3.5316e12;
+	private static final double ROTATION = 2*Math.PI/21549.425; //Sidereal rotation in rad/s
+	private static final double SEMI_MAJOR_AXIS = RADIUS + 100000;
+	private static final double ECCENTRICITY = 20000/SEMI_MAJOR_AXIS;
+	private static final double INCLINATION = 6;
+
+	//Options
+	private int port = 2342;
+	private InetAddress broadcast;
+	private int rate = 20;
+	private double warp = 1;
+	private int fragment = 0;
+	private int coalesce = 1;
+	private double corrupt = 0;
+	private int latency = 0;
+	private int jitter = 0;
+	private boolean verbose = false;
+
+	private final long start = System.nanoTime();
+
+	/**
+	 * Run simulator until the process is terminated.
+	 *
+	 * @param args Options, see USAGE
+	 */
+	public static void main(String[] args)
+	{
+		HostSimulator sim = new HostSimulator();
+		try
+		{
+			sim.parse(args);
+		}
+		catch(IllegalArgumentException e)
+		{
+			System.err.println(e.getMessage());
+			System.err.print(USAGE);
+			System.exit(1);
+		}
+		try
+		{
+			sim.run();
+		}
+		catch(IOException e)
+		{
+			System.err.println(e.toString());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Read command line options.
+	 *
+	 * @param args Options
+	 * @throws IllegalArgumentException Invalid option
+	 */
+	private void parse(String[] args)
+	{
+		try
+		{
+			broadcast = InetAddress.getByName("255.255.255.255");
+			for(int i=0; i<args.length; i++)
+			{
+				String a = args[i];
+				if(a.equals("--verbose"))
+				{
+					verbose = true;
+					continue;
+				}
+				if(i+1 >= args.length) throw new IllegalArgumentException("Missing value of "+a);
+				String v = args[++i];
+				if(a.equals("--port")) port = Integer.parseInt(v);
+				else if(a.equals("--broadcast")) broadcast = InetAddress.getByName(v);
+				else if(a.equals("--rate")) rate = Integer.parseInt(v);
+				else if(a.equals("--warp")) warp = Double.parseDouble(v);
+				else if(a.equals("--fragment")) fragment = Integer.parseInt(v);
+				else if(a.equals("--coalesce")) coalesce = Integer.parseInt(v);
+				else if(a.equals("--corrupt")) corrupt = Double.parseDouble(v);
+				else if(a.equals("--latency")) latency = Integer.parseInt(v);
+				else if(a.equals("--jitter")) jitter = Integer.parseInt(v);
+				else throw new IllegalArgumentException("Unknown option "+a);
+			}
+		}
+		catch(NumberFormatException e)
+		{
+			throw new IllegalArgumentException("Invalid number: "+e.getMessage());
+		}
+		catch(IOException e)
+		{
+			throw new IllegalArgumentException("Invalid address: "+e.getMessage());
+		}
+		if(rate < 1 || rate > 1000) throw new IllegalArgumentException("Rate out of range");
+		if(coalesce < 1) throw new IllegalArgumentException("Coalesce out of range");
+		if(corrupt < 0 || corrupt > 1) throw new IllegalArgumentException("Corrupt probability out of range");
+		if(fragment < 0 || latency < 0 || jitter < 0) throw new IllegalArgumentException("Negative value");
+	}
+
+	/**
+	 * Start broadcasting and accept clients.
+	 *
+	 * @throws IOException Server socket error
+	 */
+	private void run() throws IOException
+	{
+		ServerSocket server = new ServerSocket(port);
+		log(String.format(Locale.US, "Listening on port %d, broadcast to %s, %d Hz", port, broadcast.getHostAddress(), rate));
+
+		Thread b = new Thread(broadcaster, "Broadcast");
+		b.setDaemon(true);
+		b.start();
+
+		while(true)
+		{
+			Socket s = server.accept();
+			s.setTcpNoDelay(true);
+			new Thread(new Connection(s), "Client "+s.getRemoteSocketAddress()).start();
+		}
+	}
+
+	/**
+	 * Send HandshakePacket broadcasts.
+	 */
+	private Runnable broadcaster = new Runnable()
+	{
+		@Override
+		public void run()
+		{
+			try
+			{
+				DatagramSocket socket = new DatagramSocket();
+				socket.setBroadcast(true);
+				HandshakePacket HP = new HandshakePacket();
+				HP.M1 = 3;
+				HP.M2 = 1;
+				HP.state = 1; //InFlight
+				byte[] packet = HP.toPacket();
+				DatagramPacket datagram = new DatagramPacket(packet, packet.length, broadcast, port);
+				while(true)
+				{
+					socket.send(datagram);
+					Thread.sleep(BROADCAST_INTERVAL);
+				}
+			}
+			catch(Exception e)
+			{
+				log("Broadcast stopped: "+e);
+			}
+		}
+	};
+
+	/**
+	 * Print message with the time since start.
+	 *
+	 * @param msg Message
+	 */
+	private void log(String msg)
+	{
+		System.out.println(String.format(Locale.US, "%9.3f %s", (System.nanoTime()-start)/1e9, msg));
+	}
+
+	/**
+	 * Set orbit and attitude of the simulated vessel.
+	 *
+	 * @param vd Target
+	 * @param t Mission time in seconds
+	 */
+	private static void simulate(VesselData vd, double t)
+	{
+		double a = SEMI_MAJOR_AXIS, e = ECCENTRICITY;
+		double n = Math.sqrt(MU/(a*a*a)); //Mean motion
+		double period = 2*Math.PI/n;
+		double M = (n*t) % (2*Math.PI);
+
+		//Kepler's equation
+		double E = M;
+		for(int i=0; i<5; i++) E -= (E - e*Math.sin(E) - M)/(1 - e*Math.cos(E));
+		double nu = 2*Math.atan2(Math.sqrt(1+e)*Math.sin(E/2), Math.sqrt(1-e)*Math.cos(E/2));
+		double r = a*(1 - e*Math.cos(E));
+		double v = Math.sqrt(MU*(2/r - 1/a));
+		double vvi = Math.sqrt(MU/(a*(1-e*e)))*e*Math.sin(nu);
+		double flightPath = Math.asin(vvi/v);
+		double heading = 90 - INCLINATION*Math.cos(nu);
+
+		vd.AP = (float)(a*(1+e) - RADIUS);
+		vd.PE = (float)(a*(1-e) - RADIUS);
+		vd.SemiMajorAxis = (float)a;
+		vd.SemiMinorAxis = (float)(a*Math.sqrt(1-e*e));
+		vd.VVI = (float)vvi;
+		vd.e = (float)e;
+		vd.inc = (float)INCLINATION;
+		vd.G = (float)(MU/(r*r));
+		vd.TAp = (int)(((Math.PI - M + 2*Math.PI) % (2*Math.PI))/n);
+		vd.TPe = (int)((2*Math.PI - M)/n);
+		vd.TrueAnomaly = (float)Math.toDegrees(nu);
+		vd.period = (int)period;
+		vd.Alt = (float)(r - RADIUS);
+		vd.RAlt = vd.Alt;
+		vd.VOrbit = (float)v;
+		vd.Vsurf = (float)(v - ROTATION*r*Math.cos(Math.toRadians(INCLINATION)));
+		vd.Lat = (float)(INCLINATION*Math.sin(nu));
+		vd.Lon = (float)(((Math.toDegrees(nu - ROTATION*t) % 360) + 540) % 360 - 180);
+		vd.MissionTime = (long)t;
+
+		//Resources slowly drain and recharge
+		vd.LiquidFuelTot = 3600;
+		vd.LiquidFuel = (float)(3600*Math.exp(-t/20000));
+		vd.OxidizerTot = 4400;
+		vd.Oxidizer = vd.LiquidFuel*4400/3600;
+		vd.EChargeTot = 300;
+		vd.ECharge = (float)(150 + 150*Math.cos(t/100));
+		vd.MonoPropTot = 120;
+		vd.MonoProp = 120;
+		vd.LiquidFuelTotS = 360;
+		vd.LiquidFuelS = vd.LiquidFuel/10;
+		vd.OxidizerTotS = 440;
+		vd.OxidizerS = vd.Oxidizer/10;
+		vd.SOINumber = 130;
+		vd.CurrentStage = 1;
+		vd.TotalStage = 3;
+
+		//Slowly rolling vessel holding prograde, a maneuver node and a target
+		vd.Roll = angle(30*Math.sin(t/10));
+		vd.Pitch = angle(Math.toDegrees(flightPath) + 5*Math.sin(t/7));
+		vd.Heading = angle(heading + 5*Math.cos(t/7));
+		vd.ProgradePitch = (short)angle(Math.toDegrees(flightPath));
+		vd.ProgradeHeading = (short)angle(heading);
+		vd.ManeuverPitch = (short)angle(10);
+		vd.ManeuverHeading = (short)angle(heading + 30);
+		vd.TargetPitch = (short)angle(-20);
+		vd.TargetHeading = (short)angle(heading - 45);
+		vd.NormalHeading = angle(heading - 90);
+		vd.TargetDist = (float)(50000 + 40000*Math.cos(t/300));
+		vd.TargetV = (float)(40000/300*Math.sin(t/300));
+		vd.vesselSync = 1;
+	}
+
+	/**
+	 * Convert degrees to UInt16 angle.
+	 *
+	 * @param deg Angle in degrees
+	 * @return Angle, 65535 is a full turn
+	 */
+	private static int angle(double deg)
+	{
+		return (int)Math.round(deg/360*65535) & 0xFFFF;
+	}
+
+	/**
+	 * Connection to one client.
+	 * Receives on the connection thread, sends VesselData on a streamer thread and writes on a
+	 * writer thread which injects the faults.
+	 */
+	private class Connection implements Runnable
+	{
+		private final Socket socket;
+		private final String name;
+		private final Random random = new Random();
+		private volatile boolean open = true;
+		private volatile boolean handshake = false;
+
+		//Control states reported back in VesselData
+		private volatile int actionGroups = 0;
+		private volatile int navballSASMode = 1<<4; //Orbit
+
+		//Received ControlPackets
+		private String lastControl = null;
+		private long controlPackets = 0;
+		private long lastStatus = System.nanoTime();
+
+		//Frames waiting for the writer, with their due time
+		private final LinkedBlockingQueue<Chunk> queue = new LinkedBlockingQueue<Chunk>();
+		private long lastDue = 0;
+		private byte[] pending = new byte[0];
+		private int pendingFrames = 0;
+
+		Connection(Socket socket)
+		{
+			this.socket = socket;
+			name = socket.getRemoteSocketAddress().toString();
+		}
+
+		@Override
+		public void run()
+		{
+			log(name+" connected");
+			Thread streamer = new Thread(stream, "Stream "+name);
+			Thread writer = new Thread(write, "Write "+name);
+			streamer.start();
+			writer.start();
+			try
+			{
+				InputStream in = socket.getInputStream();
+				FrameDecoder decoder = new FrameDecoder();
+				byte[] buf = new byte[1024];
+				int n;
+				while((n = in.read(buf)) > 0) decoder.decode(buf, 0, n, frameListener);
+				log(name+" closed by client");
+			}
+			catch(IOException e)
+			{
+				if(open) log(name+" "+e);
+			}
+			close();
+			streamer.interrupt();
+			writer.interrupt();
+		}
+
+		private void close()
+		{
+			open = false;
+			try { socket.close(); }
+			catch(IOException e) {}
+		}
+
+		//Little endian wrapper of the decoder frame buffer
+		private ByteBuffer wrapper = null;
+
+		/**
+		 * Handle frames of the client.
+		 */
+		private FrameListener frameListener = new FrameListener()
+		{
+			@Override
+			public void onFrame(byte[] frame, int off, int len)
+			{
+				try
+				{
+					if(wrapper == null || wrapper.array() != frame)
+						wrapper = ByteBuffer.wrap(frame).order(ByteOrder.LITTLE_ENDIAN);
+					switch(DataPackets.getPacketID(frame, off, len))
+					{
+						case DataPackets.HSPid:
+							HandshakePacket HP = HandshakePacket.fromPacket(wrapper, off, len);
+							log(name+" handshake "+HP);
+							handshake = true;
+							break;
+						case DataPackets.CPid:
+							control(ControlPacket.fromPacket(wrapper, off, len));
+							break;
+						default:
+							log(name+" unknown packet "+DataPackets.getPacketID(frame, off, len));
+							break;
+					}
+				}
+				catch(PacketException e)
+				{
+					log(name+" "+e.getMessage());
+				}
+			}
+		};
+
+		/**
+		 * Log ControlPacket and take over the control states.
+		 *
+		 * @param CP ControlPacket
+		 */
+		private void control(ControlPacket CP)
+		{
+			controlPackets++;
+			String s = CP.toString();
+			if(verbose || !s.equals(lastControl)) log(name+" "+s);
+			lastControl = s;
+			long now = System.nanoTime();
+			if(now - lastStatus > STATUS_INTERVAL*1000000L)
+			{
+				log(String.format(Locale.US, "%s %.1f ControlPackets/s", name, controlPackets*1e9/(now-lastStatus)));
+				controlPackets = 0;
+				lastStatus = now;
+			}
+
+			//MainControls bits SAS RCS Lights Gear Brakes to ActionGroups bits 0-4
+			int ag = 0;
+			for(int i=0; i<5; i++) if((CP.MainControls & (1<<(7-i))) != 0) ag |= (1<<i);
+			for(int i=0; i<10; i++) if(CP.ControlGroup[i+1]) ag |= (1<<(i+6));
+			actionGroups = ag;
+			//Zero modes are ignored by the plugin
+			int mode = navballSASMode;
+			if((CP.NavballSASMode & 0xF0) != 0) mode = (mode & 0x0F) | (CP.NavballSASMode & 0xF0);
+			if((CP.NavballSASMode & 0x0F) != 0) mode = (mode & 0xF0) | (CP.NavballSASMode & 0x0F);
+			navballSASMode = mode;
+		}
+
+		/**
+		 * Send StatusPacket and VesselData at the configured rate after the handshake.
+		 */
+		private Runnable stream = new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					while(!handshake)
+					{
+						if(!open) return;
+						Thread.sleep(1);
+					}
+					StatusPacket SP = new StatusPacket();
+					SP.state = 1; //InFlight
+					send(SP.toPacket());
+
+					VesselData vd = new VesselData();
+					vd.id = DataPackets.VDid;
+					long interval = 1000000000L/rate;
+					long next = System.nanoTime();
+					while(open)
+					{
+						simulate(vd, warp*(next - start)/1e9);
+						vd.deltaTime = (float)(warp/rate);
+						vd.ActionGroups = actionGroups;
+						vd.NavballSASMode = (short)navballSASMode;
+						send(vd.toPacket());
+
+						next += interval;
+						long wait = next - System.nanoTime();
+						if(wait > 0) LockSupport.parkNanos(wait);
+						else next = System.nanoTime(); //Skip missed frames
+						if(Thread.interrupted()) return;
+					}
+				}
+				catch(InterruptedException e)
+				{
+				}
+				catch(PacketException e)
+				{
+					log(name+" "+e.getMessage());
+					close();
+				}
+			}
+		};
+
+		/**
+		 * Queue frame for the writer, corrupted and coalesced as configured.
+		 *
+		 * @param frame Frame
+		 */
+		private void send(byte[] frame)
+		{
+			if(corrupt > 0 && random.nextDouble() < corrupt)
+			{
+				int i = random.nextInt(frame.length);
+				frame[i] ^= (byte)(1 + random.nextInt(255));
+			}
+
+			byte[] p = new byte[pending.length + frame.length];
+			System.arraycopy(pending, 0, p, 0, pending.length);
+			System.arraycopy(frame, 0, p, pending.length, frame.length);
+			pending = p;
+			if(++pendingFrames < coalesce) return;
+
+			long due = System.nanoTime() + latency*1000000L;
+			if(jitter > 0) due += (long)(random.nextDouble()*jitter*1000000L);
+			if(due - lastDue < 0) due = lastDue; //TCP keeps the order
+			lastDue = due;
+			queue.add(new Chunk(pending, due));
+			pending = new byte[0];
+			pendingFrames = 0;
+		}
+
+		/**
+		 * Write queued data when it is due, fragmented as configured.
+		 */
+		private Runnable write = new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					OutputStream out = socket.getOutputStream();
+					while(open)
+					{
+						Chunk c = queue.take();
+						long wait = c.due - System.nanoTime();
+						if(wait > 0) Thread.sleep(wait/1000000L, (int)(wait%1000000L));
+						int step = (fragment > 0) ? fragment : c.data.length;
+						for(int i=0; i<c.data.length; i+=step)
+						{
+							out.write(c.data, i, Math.min(step, c.data.length-i));
+							out.flush();
+						}
+					}
+				}
+				catch(InterruptedException e)
+				{
+				}
+				catch(IOException e)
+				{
+					if(open) log(name+" "+e);
+					close();
+				}
+			}
+		};
+	}
+
+	/**
+	 * Data waiting to be written.
+	 */
+	private static class Chunk
+	{
+		final byte[] data;
+		final long due; //System.nanoTime()
+
+		Chunk(byte[] data, long due)
+		{
+			this.data = data;
+			this.due = due;
+		}
+	}
+}